@@ -0,0 +1,30 @@
+package ht.bench;
+
+import java.lang.reflect.*;
+import java.nio.file.*;
+import java.util.function.*;
+
+// The compiler's classes sit in the default package, which code in a
+// package cannot name, so every case comes from BenchmarkCases.operation as
+// a LongSupplier. The lookup runs once per trial; a measured operation is
+// one interface call on top of the work itself.
+final class Cases {
+
+    private Cases() {
+    }
+
+    static LongSupplier operation(String benchmark, int size) throws Exception {
+        Method operation = Class.forName("BenchmarkCases").getMethod("operation", String.class, int.class, Path.class);
+        try {
+            return (LongSupplier) operation.invoke(null, benchmark, size, programs());
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    // The sample .ht files, programs/ under the working directory unless
+    // -Dht.programs says otherwise
+    static Path programs() {
+        return Path.of(System.getProperty("ht.programs", "programs"));
+    }
+}
@@ -0,0 +1,45 @@
+package ht.bench;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+// Tokenizer.tokenize, Parser.analyzeLine and Lexer.analyze over SIZE
+// statement lines; the parser and lexer get a fresh instance per operation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrontEndBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private LongSupplier tokenize;
+    private LongSupplier parser;
+    private LongSupplier lexer;
+
+    @Setup
+    public void setup() throws Exception {
+        tokenize = Cases.operation("tokenize", size);
+        parser = Cases.operation("parser", size);
+        lexer = Cases.operation("lexer", size);
+    }
+
+    @Benchmark
+    public long tokenize() {
+        return tokenize.getAsLong();
+    }
+
+    @Benchmark
+    public long parser() {
+        return parser.getAsLong();
+    }
+
+    @Benchmark
+    public long lexer() {
+        return lexer.getAsLong();
+    }
+}
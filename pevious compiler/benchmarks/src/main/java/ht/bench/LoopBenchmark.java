@@ -0,0 +1,34 @@
+package ht.bench;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+// A loopwhile of SIZE iterations with a suppose in its body; the legacy
+// engine has no loops
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoopBenchmark {
+
+    @Param({"vm", "jvm"})
+    public String engine;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private LongSupplier loop;
+
+    @Setup
+    public void setup() throws Exception {
+        loop = Cases.operation("loop." + engine, size);
+    }
+
+    @Benchmark
+    public long loop() {
+        return loop.getAsLong();
+    }
+}
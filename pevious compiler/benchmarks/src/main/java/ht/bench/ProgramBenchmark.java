@@ -0,0 +1,34 @@
+package ht.bench;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+// A generated SIZE-line program of declarations, arithmetic, arrays and
+// publish, compiled and run on one engine per operation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgramBenchmark {
+
+    @Param({"legacy", "vm", "jvm"})
+    public String engine;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private LongSupplier program;
+
+    @Setup
+    public void setup() throws Exception {
+        program = Cases.operation("program." + engine, size);
+    }
+
+    @Benchmark
+    public long program() {
+        return program.getAsLong();
+    }
+}
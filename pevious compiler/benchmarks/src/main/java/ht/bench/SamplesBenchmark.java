@@ -0,0 +1,31 @@
+package ht.bench;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+// Every .ht file in the programs folder, read, compiled and run on one
+// engine per operation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamplesBenchmark {
+
+    @Param({"legacy", "vm", "jvm"})
+    public String engine;
+
+    private LongSupplier samples;
+
+    @Setup
+    public void setup() throws Exception {
+        samples = Cases.operation("samples." + engine, 0);
+    }
+
+    @Benchmark
+    public long samples() {
+        return samples.getAsLong();
+    }
+}
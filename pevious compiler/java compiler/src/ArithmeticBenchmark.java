@@ -0,0 +1,75 @@
+import java.lang.management.*;
+import java.util.*;
+
+// Arithmetic in a loop on the vm and jvm engines, once with every number
+// whole, so TypeInference puts the jvm on longs, and once with a fraction
+// seeded into the same variables, so everything stays a double. Each row is
+// the time and the heap allocated per loop iteration. The time is that of a
+// whole run, where the loop dwarfs everything else; the allocation is the
+// difference between runs of N and 2N iterations, so what starting a run and
+// publishing allocate is not counted. Arithmetic should allocate nothing.
+//
+// Usage: ArithmeticBenchmark [ITERATIONS] [ROUNDS]
+public class ArithmeticBenchmark {
+
+    // Values stay well inside 2^53, where whole arithmetic never rounds
+    static String program(int iterations, boolean whole) {
+        String zero = whole ? "0" : "0.5";
+        return "number[] weights = { 3, 5, 7 };\n"
+            + "number i = 0;\n"
+            + "number sum = " + zero + ";\n"
+            + "number check = " + zero + ";\n"
+            + "loopwhile (i < " + iterations + ") {\n"
+            + "    number sum = sum + i * weights[1] - 2;\n"
+            + "    number check = i * 3 - check;\n"
+            + "    number i = i + 1;\n"
+            + "}\n"
+            + "publish(sum);\n"
+            + "publish(check);\n";
+    }
+
+    private static Runnable compile(String engine, String source, OutputSink out) {
+        Ast.Program program = HtParser.parse(source);
+        if (engine.equals("jvm")) {
+            JvmProgram compiled = JvmProgram.compile(program);
+            return () -> compiled.run(out);
+        }
+        BytecodeProgram compiled = BytecodeCompiler.compile(program);
+        return () -> new VirtualMachine(compiled, out).run();
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        OutputSink out = new CollectingSink();
+
+        System.out.printf("Iterations: %,d, best of %d rounds%n", iterations, rounds);
+        System.out.printf("%-6s %-11s %14s %18s%n", "engine", "numbers", "ns/iteration", "bytes/iteration");
+        for (String engine : new String[] {"vm", "jvm"}) {
+            for (boolean whole : new boolean[] {true, false}) {
+                Runnable once = compile(engine, program(iterations, whole), out);
+                Runnable twice = compile(engine, program(2 * iterations, whole), out);
+                long bestNanos = Long.MAX_VALUE, bestBytes = Long.MAX_VALUE;
+                for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+                    long bytes = threads.getCurrentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    once.run();
+                    long nanos = System.nanoTime() - start;
+                    long onceBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                    bytes = threads.getCurrentThreadAllocatedBytes();
+                    twice.run();
+                    long twiceBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                    if (r > 0) {
+                        bestNanos = Math.min(bestNanos, nanos);
+                        bestBytes = Math.min(bestBytes, Math.max(0, twiceBytes - onceBytes));
+                    }
+                }
+                System.out.printf(Locale.ROOT, "%-6s %-11s %14.2f %18.3f%n", engine, whole ? "whole" : "fractional",
+                        bestNanos / (double) iterations, bestBytes / (double) iterations);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.*;
+
+// One number[] declaration with many literals, as in the data-heavy scripts.
+// Compares the old split + Double.parseDouble into a List<Double> with the
+// recognizer filling a double[] directly: parse time and retained heap.
+public class ArrayBenchmark {
+
+    static String declaration(int elements) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder("number[] data = {");
+        for (int i = 0; i < elements; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(random.nextInt(100_000));
+            if (i % 2 == 0) sb.append('.').append(random.nextInt(100));
+        }
+        return sb.append("};").toString();
+    }
+
+    // What the Lexer and Parser did before arrays were primitive
+    static List<Double> boxedArray(String line) {
+        String content = line.substring(line.indexOf('{') + 1, line.lastIndexOf('}'));
+        List<Double> values = new ArrayList<>();
+        for (String item : content.split(",")) {
+            values.add(Double.parseDouble(item.trim()));
+        }
+        return values;
+    }
+
+    static double[] primitiveArray(String line) {
+        return StatementRecognizer.recognize(line).numbers;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String line = declaration(elements);
+
+        List<Double> boxed = boxedArray(line);
+        double[] primitive = primitiveArray(line);
+        for (int i = 0; i < elements; i++) {
+            if (boxed.get(i) != primitive[i]) throw new IllegalStateException("Element " + i + " differs");
+        }
+        boxed = null;
+        primitive = null;
+
+        long boxedBest = Long.MAX_VALUE, primitiveBest = Long.MAX_VALUE;
+        for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+            long start = System.nanoTime();
+            boxedArray(line);
+            long boxedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            primitiveArray(line);
+            long primitiveTime = System.nanoTime() - start;
+
+            if (r > 0) {
+                boxedBest = Math.min(boxedBest, boxedTime);
+                primitiveBest = Math.min(primitiveBest, primitiveTime);
+            }
+        }
+
+        long before = usedHeap();
+        boxed = boxedArray(line);
+        long boxedBytes = usedHeap() - before;
+        before = usedHeap();
+        primitive = primitiveArray(line);
+        long primitiveBytes = usedHeap() - before;
+
+        System.out.printf("Elements: %d, best of %d rounds%n", elements, rounds);
+        System.out.printf("List<Double> (split + parseDouble) : %9.3f ms  %,12d bytes retained%n", boxedBest / 1e6, boxedBytes);
+        System.out.printf("double[] (recognizer)              : %9.3f ms  %,12d bytes retained%n", primitiveBest / 1e6, primitiveBytes);
+        System.out.printf("Speedup: %.1fx, memory: %.1fx smaller%n", boxedBest / (double) primitiveBest, boxedBytes / (double) primitiveBytes);
+        if (boxed.size() != primitive.length) throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,413 @@
+import java.util.*;
+
+// Typed syntax tree for a whole .ht program, as produced by HtParser.
+// Later passes (compilers, optimizer) walk it through the two visitors.
+public final class Ast {
+
+    private Ast() {
+    }
+
+    public enum Type {
+        NUMBER, ALPHAN;
+
+        public String keyword() {
+            return this == NUMBER ? "number" : "Alphan";
+        }
+    }
+
+    public abstract static class Node {
+        public final int line;
+        public final int column;
+
+        Node(int line, int column) {
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    // ---------------------------------------------------------------- program
+
+    public static final class Program {
+        public final List<Function> functions;
+        public final List<Stmt> statements;   // begin main block and top-level statements, in source order
+
+        public Program(List<Function> functions, List<Stmt> statements) {
+            this.functions = List.copyOf(functions);
+            this.statements = List.copyOf(statements);
+        }
+
+        public Function function(String name) {
+            for (Function f : functions) {
+                if (f.name.equals(name)) return f;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Function f : functions) sb.append(f).append('\n');
+            sb.append("(main");
+            for (Stmt s : statements) sb.append("\n  ").append(s);
+            return sb.append(')').toString();
+        }
+    }
+
+    public static final class Param extends Node {
+        public final Type type;
+        public final String name;
+
+        public Param(int line, int column, Type type, String name) {
+            super(line, column);
+            this.type = type;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return type.keyword() + " " + name;
+        }
+    }
+
+    public static final class Function extends Node {
+        public final String name;
+        public final List<Param> params;
+        public final List<Stmt> body;
+
+        public Function(int line, int column, String name, List<Param> params, List<Stmt> body) {
+            super(line, column);
+            this.name = name;
+            this.params = List.copyOf(params);
+            this.body = List.copyOf(body);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("(func ").append(name).append(' ').append(params);
+            for (Stmt s : body) sb.append("\n  ").append(s);
+            return sb.append(')').toString();
+        }
+    }
+
+    // ------------------------------------------------------------- statements
+
+    public interface StmtVisitor<R> {
+        R visitDeclare(Declare s);
+        R visitDeclareArray(DeclareArray s);
+        R visitPublish(Publish s);
+        R visitCall(Call s);
+        R visitIf(If s);
+        R visitWhile(While s);
+    }
+
+    public abstract static class Stmt extends Node {
+        Stmt(int line, int column) {
+            super(line, column);
+        }
+
+        public abstract <R> R accept(StmtVisitor<R> v);
+    }
+
+    // number x = expr;   Alphan name = expr;
+    public static final class Declare extends Stmt {
+        public final Type type;
+        public final String name;
+        public final Expr value;
+
+        public Declare(int line, int column, Type type, String name, Expr value) {
+            super(line, column);
+            this.type = type;
+            this.name = name;
+            this.value = value;
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitDeclare(this); }
+
+        @Override
+        public String toString() {
+            return "(" + type.keyword() + " " + name + " " + value + ")";
+        }
+    }
+
+    // number[] marks = {77, 88};   Alphan[] names = {"Ali", "Sara"};
+    public static final class DeclareArray extends Stmt {
+        public final Type type;
+        public final String name;
+        public final List<Expr> elements;
+
+        public DeclareArray(int line, int column, Type type, String name, List<Expr> elements) {
+            super(line, column);
+            this.type = type;
+            this.name = name;
+            this.elements = List.copyOf(elements);
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitDeclareArray(this); }
+
+        // The element values as a double[] or String[] when every element is a
+        // literal (numbers may be negated), otherwise null
+        public Object literals() {
+            if (type == Type.NUMBER) {
+                double[] values = new double[elements.size()];
+                for (int i = 0; i < values.length; i++) {
+                    Expr e = elements.get(i);
+                    if (e instanceof NumberLiteral n) values[i] = n.value;
+                    else if (e instanceof Negate neg && neg.operand instanceof NumberLiteral n) values[i] = -n.value;
+                    else return null;
+                }
+                return values;
+            }
+            String[] values = new String[elements.size()];
+            for (int i = 0; i < values.length; i++) {
+                if (!(elements.get(i) instanceof StringLiteral s)) return null;
+                values[i] = s.value;
+            }
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + type.keyword() + "[] " + name + " " + elements + ")";
+        }
+    }
+
+    // publish(expr);   publish expr;
+    public static final class Publish extends Stmt {
+        public final Expr value;
+
+        public Publish(int line, int column, Expr value) {
+            super(line, column);
+            this.value = value;
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitPublish(this); }
+
+        @Override
+        public String toString() {
+            return "(publish " + value + ")";
+        }
+    }
+
+    // call name(arg, ...);
+    public static final class Call extends Stmt {
+        public final String name;
+        public final List<Expr> args;
+
+        public Call(int line, int column, String name, List<Expr> args) {
+            super(line, column);
+            this.name = name;
+            this.args = List.copyOf(args);
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitCall(this); }
+
+        @Override
+        public String toString() {
+            return "(call " + name + " " + args + ")";
+        }
+    }
+
+    // suppose (cond) { ... } otherwise { ... }   otherwise is optional, and
+    // "otherwise suppose" chains arrive as an If alone in the otherwise list
+    public static final class If extends Stmt {
+        public final Condition condition;
+        public final List<Stmt> then;
+        public final List<Stmt> otherwise;
+
+        public If(int line, int column, Condition condition, List<Stmt> then, List<Stmt> otherwise) {
+            super(line, column);
+            this.condition = condition;
+            this.then = List.copyOf(then);
+            this.otherwise = List.copyOf(otherwise);
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitIf(this); }
+
+        @Override
+        public String toString() {
+            return "(suppose " + condition + " " + then + (otherwise.isEmpty() ? "" : " otherwise " + otherwise) + ")";
+        }
+    }
+
+    // loopwhile (cond) { ... }
+    public static final class While extends Stmt {
+        public final Condition condition;
+        public final List<Stmt> body;
+
+        public While(int line, int column, Condition condition, List<Stmt> body) {
+            super(line, column);
+            this.condition = condition;
+            this.body = List.copyOf(body);
+        }
+
+        public <R> R accept(StmtVisitor<R> v) { return v.visitWhile(this); }
+
+        @Override
+        public String toString() {
+            return "(loopwhile " + condition + " " + body + ")";
+        }
+    }
+
+    // left < right, <=, >, >=, == or != on two numbers. Not an Expr: there is
+    // no boolean type, a condition only ever decides a branch.
+    public static final class Condition extends Node {
+        public final String op;
+        public final Expr left;
+        public final Expr right;
+
+        public Condition(int line, int column, String op, Expr left, Expr right) {
+            super(line, column);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        // The outcome when both sides are number literals, otherwise null
+        public Boolean constant() {
+            if (!(left instanceof NumberLiteral l) || !(right instanceof NumberLiteral r)) return null;
+            return holds(op, l.value, r.value);
+        }
+
+        // Same semantics as the JVM's double comparisons: only != holds for NaN
+        public static boolean holds(String op, double l, double r) {
+            switch (op) {
+                case "<": return l < r;
+                case "<=": return l <= r;
+                case ">": return l > r;
+                case ">=": return l >= r;
+                case "==": return l == r;
+                default: return l != r;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(" + op + " " + left + " " + right + ")";
+        }
+    }
+
+    // ------------------------------------------------------------ expressions
+
+    public interface ExprVisitor<R> {
+        R visitNumber(NumberLiteral e);
+        R visitString(StringLiteral e);
+        R visitVariable(Variable e);
+        R visitIndex(Index e);
+        R visitBinary(Binary e);
+        R visitNegate(Negate e);
+    }
+
+    public abstract static class Expr extends Node {
+        Expr(int line, int column) {
+            super(line, column);
+        }
+
+        public abstract <R> R accept(ExprVisitor<R> v);
+    }
+
+    public static final class NumberLiteral extends Expr {
+        public final double value;
+        public final boolean decimal;   // written with a fractional part, e.g. 85.5
+
+        public NumberLiteral(int line, int column, double value, boolean decimal) {
+            super(line, column);
+            this.value = value;
+            this.decimal = decimal;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitNumber(this); }
+
+        @Override
+        public String toString() {
+            return decimal ? Double.toString(value) : Long.toString((long) value);
+        }
+    }
+
+    public static final class StringLiteral extends Expr {
+        public final String value;
+
+        public StringLiteral(int line, int column, String value) {
+            super(line, column);
+            this.value = value;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitString(this); }
+
+        @Override
+        public String toString() {
+            return "\"" + value + "\"";
+        }
+    }
+
+    public static final class Variable extends Expr {
+        public final String name;
+
+        public Variable(int line, int column, String name) {
+            super(line, column);
+            this.name = name;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitVariable(this); }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // names[1]
+    public static final class Index extends Expr {
+        public final String name;
+        public final Expr index;
+
+        public Index(int line, int column, String name, Expr index) {
+            super(line, column);
+            this.name = name;
+            this.index = index;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitIndex(this); }
+
+        @Override
+        public String toString() {
+            return name + "[" + index + "]";
+        }
+    }
+
+    // left op right, op is one of + - * /
+    public static final class Binary extends Expr {
+        public final char op;
+        public final Expr left;
+        public final Expr right;
+
+        public Binary(int line, int column, char op, Expr left, Expr right) {
+            super(line, column);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitBinary(this); }
+
+        @Override
+        public String toString() {
+            return "(" + op + " " + left + " " + right + ")";
+        }
+    }
+
+    public static final class Negate extends Expr {
+        public final Expr operand;
+
+        public Negate(int line, int column, Expr operand) {
+            super(line, column);
+            this.operand = operand;
+        }
+
+        public <R> R accept(ExprVisitor<R> v) { return v.visitNegate(this); }
+
+        @Override
+        public String toString() {
+            return "(- " + operand + ")";
+        }
+    }
+}
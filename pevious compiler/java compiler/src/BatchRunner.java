@@ -0,0 +1,114 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Parallel batch mode for MainCompiler. Files run concurrently on a
+// work-stealing pool, each with its own Parser/Lexer or compiled program
+// writing to its own OutputSink over an in-memory buffer. A file's output
+// is printed as soon as it and every file before it have finished, so the
+// console order matches a serial run.
+public class BatchRunner {
+
+    public interface FileTask {
+        void run(File file, OutputSink out);
+    }
+
+    public static final class Result {
+        public final File file;
+        public final byte[] out;
+        public final long nanos;
+
+        Result(File file, byte[] out, long nanos) {
+            this.file = file;
+            this.out = out;
+            this.nanos = nanos;
+        }
+    }
+
+    private final int threads;
+    private final boolean quiet;
+    private final FileTask task;
+
+    // quiet keeps only publish output and leaves out the per-file headers and times
+    public BatchRunner(int threads, boolean quiet, FileTask task) {
+        this.threads = threads;
+        this.quiet = quiet;
+        this.task = task;
+    }
+
+    // Runs every file and prints each one's output in the given order.
+    // Returns the wall-clock time of the whole batch in nanoseconds.
+    public long run(File[] files, boolean print) {
+        PrintStream console = System.out;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        long busy = 0;
+
+        try {
+            List<ForkJoinTask<Result>> pending = new ArrayList<>(files.length);
+            for (File file : files) {
+                pending.add(pool.submit(() -> runFile(file)));
+            }
+            for (ForkJoinTask<Result> future : pending) {
+                Result result = future.join();
+                busy += result.nanos;
+                if (!print) continue;
+                if (!quiet) console.println("\n=== Processing file: " + result.file.getName() + " ===");
+                console.write(result.out, 0, result.out.length);
+                if (!quiet) console.printf("✓ File '%s' processed in %.3f ms%n", result.file.getName(), result.nanos / 1e6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        console.flush();
+
+        long wall = System.nanoTime() - start;
+        if (print && !quiet) {
+            console.printf("%nTotal processing time for all files: %.3f ms%n", wall / 1e6);
+            console.printf("Files: %d, threads: %d, summed file time: %.3f ms (%.1fx parallelism)%n",
+                    files.length, threads, busy / 1e6, busy / (double) wall);
+        }
+        return wall;
+    }
+
+    private Result runFile(File file) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(buffer, false);
+        OutputSink out = quiet ? new QuietSink(stream) : new BufferedSink(stream);
+        long start = System.nanoTime();
+        try {
+            task.run(file, out);
+        } catch (RuntimeException | StackOverflowError e) {
+            // One broken file must not take the rest of the batch down
+            out.error("❌ Unexpected failure in " + file.getName() + ": " + e);
+        }
+        long nanos = System.nanoTime() - start;
+        out.flush();
+        return new Result(file, buffer.toByteArray(), nanos);
+    }
+
+    // Runs the batch with 1, 2, 4, ... threads up to the core count, output
+    // discarded, and prints the best wall-clock time of each.
+    public static void printSpeedupTable(File[] files, FileTask task, int rounds) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int n = 1; n < cores; n *= 2) counts.add(n);
+        counts.add(cores);
+
+        for (int r = 0; r < rounds; r++) {   // warm-up, so the first row is not paying for the JIT
+            new BatchRunner(1, false, task).run(files, false);
+            new BatchRunner(cores, false, task).run(files, false);
+        }
+        System.out.printf("Files: %d, cores: %d, best of %d rounds%n", files.length, cores, rounds);
+        System.out.printf("%8s %12s %9s %11s%n", "threads", "wall ms", "speedup", "efficiency");
+        double base = 0;
+        for (int n : counts) {
+            BatchRunner runner = new BatchRunner(n, false, task);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) best = Math.min(best, runner.run(files, false));
+            if (n == 1) base = best;
+            double speedup = base / best;
+            System.out.printf("%8d %12.3f %8.2fx %10.0f%%%n", n, best / 1e6, speedup, 100 * speedup / n);
+        }
+    }
+}
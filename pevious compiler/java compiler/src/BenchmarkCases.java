@@ -0,0 +1,158 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+// The cases the JMH module in benchmarks/ measures: the scanner, the legacy
+// Parser and Lexer, and whole-program execution on every engine. JMH only
+// runs benchmarks that sit in a package, and code in a package cannot name
+// the classes here, so operation() hands each case over as a LongSupplier.
+//
+//   tokenize     Tokenizer.tokenize over SIZE statement lines
+//   parser       Parser.analyzeLine over SIZE lines, fresh Parser per operation
+//   lexer        Lexer.analyze over SIZE lines, fresh Lexer per operation
+//   program.*    a generated SIZE-line program, compiled and run on one engine
+//   samples.*    every .ht file in the programs folder on one engine; SIZE is unused
+//   loop.*       a loopwhile of SIZE iterations with a suppose in its body, vm and jvm only
+public final class BenchmarkCases {
+
+    // One operation of a benchmark; JMH consumes the result so the JIT
+    // cannot drop the work
+    private interface Operation {
+        long run() throws IOException;
+    }
+
+    private interface Setup {
+        Operation create(int size, Path programs) throws IOException;
+    }
+
+    private static final Map<String, Setup> CASES = new LinkedHashMap<>();
+
+    static {
+        CASES.put("tokenize", (size, programs) -> {
+            String[] lines = statements(size);
+            return () -> {
+                long tokens = 0;
+                for (String line : lines) tokens += Tokenizer.tokenize(line).size();
+                return tokens;
+            };
+        });
+        CASES.put("parser", (size, programs) -> {
+            String[] lines = statements(size);
+            return () -> {
+                Parser parser = new Parser(discard());
+                for (int i = 0; i < lines.length; i++) parser.analyzeLine(lines[i], i + 1);
+                return lines.length;
+            };
+        });
+        CASES.put("lexer", (size, programs) -> {
+            String[] lines = statements(size);
+            return () -> {
+                Lexer lexer = new Lexer(discard());
+                for (int i = 0; i < lines.length; i++) lexer.analyze(lines[i], i + 1);
+                return lines.length;
+            };
+        });
+        for (String engine : new String[] {"legacy", "vm", "jvm"}) {
+            CASES.put("program." + engine, (size, programs) -> {
+                byte[] source = String.join("\n", statements(size)).getBytes();
+                return () -> {
+                    run(engine, SourceText.of(source), "generated.ht");
+                    return source.length;
+                };
+            });
+            CASES.put("samples." + engine, (size, programs) -> {
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(programs, "*.ht")) {
+                    for (Path file : stream) files.add(file);
+                }
+                Collections.sort(files);
+                return () -> {
+                    long bytes = 0;
+                    for (Path file : files) {
+                        SourceText source = SourceText.read(file);
+                        run(engine, source, file.getFileName().toString());
+                        bytes += source.length();
+                    }
+                    return bytes;
+                };
+            });
+        }
+        for (String engine : new String[] {"vm", "jvm"}) {
+            CASES.put("loop." + engine, (size, programs) -> {
+                SourceText source = SourceText.of(loop(size).getBytes());
+                return () -> {
+                    run(engine, source, "loop.ht");
+                    return size;
+                };
+            });
+        }
+    }
+
+    private BenchmarkCases() {
+    }
+
+    // The named case set up for one input size; throws IllegalArgumentException
+    // for a name that is not a case
+    public static LongSupplier operation(String name, int size, Path programs) throws IOException {
+        Setup setup = CASES.get(name);
+        if (setup == null) throw new IllegalArgumentException("Unknown benchmark case '" + name + "'");
+        Operation operation = setup.create(size, programs);
+        return () -> {
+            try {
+                return operation.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // Statement lines every engine accepts: declarations, arithmetic, arrays
+    // and publish, with the names of each group of six kept distinct
+    static String[] statements(int size) {
+        String[] body = {
+            "number x%1$d = %2$d;",
+            "number y%1$d = x%1$d * 2 + 1;",
+            "number[] scores%1$d = { 98, 85.5, 74, %2$d };",
+            "Alphan[] students%1$d = { \"Ali\", \"Sara\", \"Zara\" };",
+            "publish(scores%1$d[3]);",
+            "publish(y%1$d - x%1$d);",
+        };
+        String[] lines = new String[size];
+        for (int i = 0; i < size; i++) lines[i] = String.format(body[i % body.length], i / body.length, i);
+        return lines;
+    }
+
+    // Counts to size, summing even and odd values apart
+    static String loop(int size) {
+        return "number i = 0;\nnumber even = 0;\nnumber odd = 0;\nnumber parity = 0;\n"
+            + "loopwhile (i < " + size + ") {\n"
+            + "    suppose (parity == 0) { number even = even + i; number parity = 1; }\n"
+            + "    otherwise { number odd = odd + i; number parity = 0; }\n"
+            + "    number i = i + 1;\n"
+            + "}\n"
+            + "publish(even);\npublish(odd);\n";
+    }
+
+    // Publish output is still formatted and buffered, then written nowhere,
+    // so the console is not part of the measurement
+    private static OutputSink discard() {
+        return new QuietSink(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    private static void run(String engine, SourceText source, String name) {
+        OutputSink out = discard();
+        try {
+            if (engine.equals("legacy")) {
+                MainCompiler.runLegacy(source, name, out);
+            } else if (engine.equals("jvm")) {
+                JvmProgram.compile(HtParser.parse(source)).run(out);
+            } else {
+                new VirtualMachine(BytecodeCompiler.compile(HtParser.parse(source)), out).run();
+            }
+        } catch (CompileException | HtRuntimeException e) {
+            out.error(e.getMessage());
+        }
+        out.flush();
+    }
+}
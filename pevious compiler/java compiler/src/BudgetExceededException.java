@@ -0,0 +1,9 @@
+// A run stopped by its ExecutionBudget: out of steps, calls nested too deep,
+// too many array elements, past its deadline or cancelled
+public class BudgetExceededException extends HtRuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExceededException(int line, String message) {
+        super(line, message);
+    }
+}
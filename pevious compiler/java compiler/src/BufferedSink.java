@@ -0,0 +1,52 @@
+import java.io.*;
+
+// Batches every message in one StringBuilder and writes it to the stream in
+// large chunks, instead of a synchronized println per event.
+public class BufferedSink implements OutputSink {
+
+    private static final int FLUSH_AT = 16 * 1024;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final PrintStream out;
+    private final boolean autoFlush;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_AT + 256);
+
+    public BufferedSink(PrintStream out) {
+        this(out, false);
+    }
+
+    // autoFlush writes every line as soon as it is complete
+    public BufferedSink(PrintStream out, boolean autoFlush) {
+        this.out = out;
+        this.autoFlush = autoFlush;
+    }
+
+    public void publish(String text) {
+        line(text);
+    }
+
+    public void trace(String text) {
+        line(text);
+    }
+
+    public void error(String text) {
+        line(text);
+    }
+
+    protected void line(String text) {
+        buffer.append(text).append(NEWLINE);
+        lineDone();
+    }
+
+    private void lineDone() {
+        if (autoFlush || buffer.length() >= FLUSH_AT) flush();
+    }
+
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.print(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+}
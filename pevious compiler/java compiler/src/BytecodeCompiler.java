@@ -0,0 +1,253 @@
+import java.util.*;
+
+// Lowers a resolved Ast.Program to a BytecodeProgram for the VirtualMachine.
+// Every variable access becomes a typed load or store of a fixed frame slot,
+// so running a program never looks at a name or at source text again.
+// Arithmetic that TypeInference proves whole gets the checked W* opcodes.
+public class BytecodeCompiler implements Ast.StmtVisitor<Void>, Ast.ExprVisitor<Void> {
+
+    private int[] code = new int[256];
+    private int[] lines = new int[256];
+    private int size = 0;
+    private int line = 0;
+
+    private double[] numbers = new double[16];
+    private int numberCount = 0;
+    private final Map<Double, Integer> numberIndex = new HashMap<>();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+    private final Resolver.Result resolved;
+    private final TypeInference types;
+
+    private BytecodeCompiler(Resolver.Result resolved) {
+        this.resolved = resolved;
+        this.types = TypeInference.infer(resolved);
+    }
+
+    public static BytecodeProgram compile(Ast.Program program) {
+        boolean timed = Instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        BytecodeProgram compiled = compile(Resolver.resolve(program));
+        if (timed) Instrumentation.record(Instrumentation.Phase.COMPILE, System.nanoTime() - start);
+        return compiled;
+    }
+
+    public static BytecodeProgram compile(Resolver.Result resolved) {
+        return new BytecodeCompiler(resolved).compileProgram();
+    }
+
+    private BytecodeProgram compileProgram() {
+        Ast.Program program = resolved.program;
+        for (Ast.Stmt s : program.statements) s.accept(this);
+        emit(Opcode.HALT);
+
+        BytecodeProgram.FunctionInfo[] functions = new BytecodeProgram.FunctionInfo[program.functions.size()];
+        for (int i = 0; i < functions.length; i++) {
+            Ast.Function f = program.functions.get(i);
+            Resolver.Frame frame = resolved.functionFrames.get(i);
+            int[] paramSlots = new int[frame.params.size()];
+            boolean[] paramIsNumber = new boolean[frame.params.size()];
+            for (int p = 0; p < paramSlots.length; p++) {
+                paramSlots[p] = frame.params.get(p).slot;
+                paramIsNumber[p] = frame.params.get(p).type.isNumber();
+            }
+            functions[i] = new BytecodeProgram.FunctionInfo(f.name, size, frame.numberSlots, frame.objectSlots, paramSlots, paramIsNumber);
+            for (Ast.Stmt s : f.body) s.accept(this);
+            line = f.line;
+            emit(Opcode.RETURN);
+        }
+
+        return new BytecodeProgram(Arrays.copyOf(code, size), Arrays.copyOf(lines, size), Arrays.copyOf(numbers, numberCount),
+                constants.toArray(), functions, resolved.globals.numberSlots, resolved.globals.objectSlots);
+    }
+
+    // ------------------------------------------------------------- statements
+
+    public Void visitDeclare(Ast.Declare s) {
+        s.value.accept(this);
+        line = s.line;
+        store(resolved.binding(s));
+        return null;
+    }
+
+    public Void visitDeclareArray(Ast.DeclareArray s) {
+        Object literals = s.literals();
+        if (literals != null) {
+            // All literals: the array is built once here and copied when the declaration runs
+            constants.add(literals);
+            line = s.line;
+            emit(s.type == Ast.Type.NUMBER ? Opcode.NUM_ARRAY_CONST : Opcode.STR_ARRAY_CONST, constants.size() - 1);
+        } else {
+            for (Ast.Expr e : s.elements) e.accept(this);
+            line = s.line;
+            emit(s.type == Ast.Type.NUMBER ? Opcode.NEW_NUM_ARRAY : Opcode.NEW_STR_ARRAY, s.elements.size());
+        }
+        store(resolved.binding(s));
+        return null;
+    }
+
+    public Void visitPublish(Ast.Publish s) {
+        s.value.accept(this);
+        line = s.line;
+        emit(resolved.type(s.value).isNumber() ? Opcode.NPUBLISH : Opcode.SPUBLISH);
+        return null;
+    }
+
+    public Void visitCall(Ast.Call s) {
+        for (Ast.Expr e : s.args) e.accept(this);
+        line = s.line;
+        emit(Opcode.CALL, resolved.functionIndex.get(s.name));
+        return null;
+    }
+
+    public Void visitIf(Ast.If s) {
+        lower(s);
+        return null;
+    }
+
+    public Void visitWhile(Ast.While s) {
+        lower(s);
+        return null;
+    }
+
+    // suppose and loopwhile are laid out from their ControlFlowGraph; jump
+    // targets are filled in once every block has an address
+    private void lower(Ast.Stmt s) {
+        ControlFlowGraph graph = ControlFlowGraph.build(List.of(s));
+        int[] starts = new int[graph.blocks.size()];
+        List<int[]> jumps = new ArrayList<>();   // operand position, target block or -1 for the end
+        graph.emit(new ControlFlowGraph.Emitter() {
+            public void label(ControlFlowGraph.Block block) {
+                starts[block.index] = size;
+                if (block.loop) {
+                    line = block.line;
+                    emit(Opcode.STEP);
+                }
+            }
+
+            public void statement(Ast.Stmt statement) {
+                statement.accept(BytecodeCompiler.this);
+            }
+
+            public void jump(ControlFlowGraph.Block to, int jumpLine) {
+                line = jumpLine;
+                jumpTo(Opcode.JUMP, to);
+            }
+
+            public void branch(Ast.Condition condition, boolean when, ControlFlowGraph.Block to) {
+                condition.left.accept(BytecodeCompiler.this);
+                condition.right.accept(BytecodeCompiler.this);
+                line = condition.line;
+                jumpTo(branchOpcode(condition.op, when), to);
+            }
+
+            private void jumpTo(int opcode, ControlFlowGraph.Block to) {
+                emit(opcode, 0);
+                jumps.add(new int[] {size - 1, to == null ? -1 : to.index});
+            }
+        });
+        for (int[] jump : jumps) code[jump[0]] = jump[1] < 0 ? size : starts[jump[1]];
+    }
+
+    private static int branchOpcode(String op, boolean when) {
+        switch (op) {
+            case "<": return when ? Opcode.JLT : Opcode.JNLT;
+            case "<=": return when ? Opcode.JLE : Opcode.JNLE;
+            case ">": return when ? Opcode.JGT : Opcode.JNGT;
+            case ">=": return when ? Opcode.JGE : Opcode.JNGE;
+            case "==": return when ? Opcode.JEQ : Opcode.JNE;
+            default: return when ? Opcode.JNE : Opcode.JEQ;
+        }
+    }
+
+    private void store(Resolver.Binding b) {
+        if (b.type.isNumber()) emit(b.global ? Opcode.NSTORE_G : Opcode.NSTORE, b.slot);
+        else emit(b.global ? Opcode.OSTORE_G : Opcode.OSTORE, b.slot);
+    }
+
+    private void load(Resolver.Binding b) {
+        if (b.type.isNumber()) emit(b.global ? Opcode.NLOAD_G : Opcode.NLOAD, b.slot);
+        else emit(b.global ? Opcode.OLOAD_G : Opcode.OLOAD, b.slot);
+    }
+
+    // ------------------------------------------------------------ expressions
+
+    public Void visitNumber(Ast.NumberLiteral e) {
+        line = e.line;
+        emit(Opcode.NCONST, number(e.value));
+        return null;
+    }
+
+    public Void visitString(Ast.StringLiteral e) {
+        line = e.line;
+        emit(Opcode.SCONST, constant(e.value));
+        return null;
+    }
+
+    public Void visitVariable(Ast.Variable e) {
+        line = e.line;
+        load(resolved.binding(e));
+        return null;
+    }
+
+    public Void visitIndex(Ast.Index e) {
+        Resolver.Binding array = resolved.binding(e);
+        line = e.line;
+        load(array);
+        e.index.accept(this);
+        line = e.line;
+        emit(array.type == ValueType.NUMBER_ARRAY ? Opcode.NELEM : Opcode.SELEM, constant(e.name));
+        return null;
+    }
+
+    public Void visitBinary(Ast.Binary e) {
+        e.left.accept(this);
+        e.right.accept(this);
+        line = e.line;
+        boolean whole = types.isWhole(e);
+        switch (e.op) {
+            case '+': emit(whole ? Opcode.WADD : Opcode.ADD); break;
+            case '-': emit(whole ? Opcode.WSUB : Opcode.SUB); break;
+            case '*': emit(whole ? Opcode.WMUL : Opcode.MUL); break;
+            case '/': emit(Opcode.DIV); break;
+            default: throw new IllegalStateException("Unknown operator '" + e.op + "'");
+        }
+        return null;
+    }
+
+    public Void visitNegate(Ast.Negate e) {
+        e.operand.accept(this);
+        line = e.line;
+        emit(types.isWhole(e) ? Opcode.WNEG : Opcode.NEG);
+        return null;
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private int number(double value) {
+        return numberIndex.computeIfAbsent(value, v -> {
+            if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+            numbers[numberCount] = v;
+            return numberCount++;
+        });
+    }
+
+    private int constant(Object value) {
+        return constantIndex.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    private void emit(int... words) {
+        if (size + words.length > code.length) {
+            code = Arrays.copyOf(code, code.length * 2 + words.length);
+            lines = Arrays.copyOf(lines, code.length);
+        }
+        for (int word : words) {
+            lines[size] = line;
+            code[size++] = word;
+        }
+    }
+}
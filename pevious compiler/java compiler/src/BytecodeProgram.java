@@ -0,0 +1,176 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// Output of BytecodeCompiler: one flat code array holding main followed by the
+// function bodies, the constant pools and the frame layout of every function.
+public class BytecodeProgram {
+
+    public static final class FunctionInfo {
+        public final String name;
+        public final int entry;
+        public final int numberSlots;
+        public final int objectSlots;
+        public final int[] paramSlots;          // slot of each parameter, in declaration order
+        public final boolean[] paramIsNumber;   // whether that slot is in the number frame
+
+        FunctionInfo(String name, int entry, int numberSlots, int objectSlots, int[] paramSlots, boolean[] paramIsNumber) {
+            this.name = name;
+            this.entry = entry;
+            this.numberSlots = numberSlots;
+            this.objectSlots = objectSlots;
+            this.paramSlots = paramSlots;
+            this.paramIsNumber = paramIsNumber;
+        }
+    }
+
+    public final int[] code;
+    public final int[] lines;          // source line of the instruction starting at each pc
+    public final double[] numbers;     // number constants
+    public final Object[] constants;   // string constants and array names
+    public final FunctionInfo[] functions;
+    public final int globalNumberSlots;
+    public final int globalObjectSlots;
+
+    BytecodeProgram(int[] code, int[] lines, double[] numbers, Object[] constants, FunctionInfo[] functions,
+                    int globalNumberSlots, int globalObjectSlots) {
+        this.code = code;
+        this.lines = lines;
+        this.numbers = numbers;
+        this.constants = constants;
+        this.functions = functions;
+        this.globalNumberSlots = globalNumberSlots;
+        this.globalObjectSlots = globalObjectSlots;
+    }
+
+    // Compact binary form used by CompileCache. Strings are written as a
+    // length and UTF-8 bytes, since writeUTF stops at 64K.
+    public void write(DataOutputStream out) throws IOException {
+        writeInts(out, code);
+        writeInts(out, lines);
+        out.writeInt(numbers.length);
+        for (double n : numbers) out.writeDouble(n);
+        out.writeInt(constants.length);
+        for (Object c : constants) {
+            if (c instanceof double[]) {
+                double[] values = (double[]) c;
+                out.writeByte(1);
+                out.writeInt(values.length);
+                for (double v : values) out.writeDouble(v);
+            } else if (c instanceof String[]) {
+                String[] values = (String[]) c;
+                out.writeByte(2);
+                out.writeInt(values.length);
+                for (String v : values) writeString(out, v);
+            } else {
+                out.writeByte(0);
+                writeString(out, (String) c);
+            }
+        }
+        out.writeInt(functions.length);
+        for (FunctionInfo f : functions) {
+            writeString(out, f.name);
+            out.writeInt(f.entry);
+            out.writeInt(f.numberSlots);
+            out.writeInt(f.objectSlots);
+            writeInts(out, f.paramSlots);
+            for (boolean isNumber : f.paramIsNumber) out.writeBoolean(isNumber);
+        }
+        out.writeInt(globalNumberSlots);
+        out.writeInt(globalObjectSlots);
+    }
+
+    // Reads what write produced. DataOutputStream is big-endian like a
+    // fresh ByteBuffer, so whole int and double arrays are copied in bulk.
+    public static BytecodeProgram read(ByteBuffer in) {
+        int[] code = readInts(in);
+        int[] lines = readInts(in);
+        double[] numbers = readDoubles(in);
+        Object[] constants = new Object[in.getInt()];
+        for (int i = 0; i < constants.length; i++) {
+            int kind = in.get();
+            if (kind == 1) {
+                constants[i] = readDoubles(in);
+            } else if (kind == 2) {
+                String[] values = new String[in.getInt()];
+                for (int j = 0; j < values.length; j++) values[j] = readString(in);
+                constants[i] = values;
+            } else {
+                constants[i] = readString(in);
+            }
+        }
+        FunctionInfo[] functions = new FunctionInfo[in.getInt()];
+        for (int i = 0; i < functions.length; i++) {
+            String name = readString(in);
+            int entry = in.getInt();
+            int numberSlots = in.getInt();
+            int objectSlots = in.getInt();
+            int[] paramSlots = readInts(in);
+            boolean[] paramIsNumber = new boolean[paramSlots.length];
+            for (int j = 0; j < paramIsNumber.length; j++) paramIsNumber[j] = in.get() != 0;
+            functions[i] = new FunctionInfo(name, entry, numberSlots, objectSlots, paramSlots, paramIsNumber);
+        }
+        int globalNumberSlots = in.getInt();
+        return new BytecodeProgram(code, lines, numbers, constants, functions, globalNumberSlots, in.getInt());
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) out.writeInt(v);
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer in) {
+        double[] values = new double[in.getInt()];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + values.length * Double.BYTES);
+        return values;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    // Number of instructions, not counting operands
+    public int instructionCount() {
+        int count = 0;
+        for (int pc = 0; pc < code.length; pc += 1 + Opcode.OPERANDS[code[pc]]) count++;
+        return count;
+    }
+
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; ) {
+            for (FunctionInfo f : functions) {
+                if (f.entry == pc) sb.append(f.name).append(":\n");
+            }
+            int op = code[pc];
+            sb.append(String.format("%5d  line %-4d %-15s", pc, lines[pc], Opcode.NAMES[op]));
+            for (int i = 1; i <= Opcode.OPERANDS[op]; i++) sb.append(' ').append(code[pc + i]);
+            if (op == Opcode.NCONST) sb.append("    ; ").append(HtRuntime.format(numbers[code[pc + 1]]));
+            if (op == Opcode.SCONST || op == Opcode.NELEM || op == Opcode.SELEM) sb.append("    ; ").append(constants[code[pc + 1]]);
+            if (op == Opcode.NUM_ARRAY_CONST) sb.append("    ; ").append(((double[]) constants[code[pc + 1]]).length).append(" numbers");
+            if (op == Opcode.STR_ARRAY_CONST) sb.append("    ; ").append(((String[]) constants[code[pc + 1]]).length).append(" strings");
+            if (op == Opcode.CALL) sb.append("    ; ").append(functions[code[pc + 1]].name);
+            sb.append('\n');
+            pc += 1 + Opcode.OPERANDS[op];
+        }
+        return sb.toString();
+    }
+}
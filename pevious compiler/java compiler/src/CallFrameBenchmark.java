@@ -0,0 +1,110 @@
+import java.io.*;
+import java.util.*;
+
+// Cost of one function call as the number of globals grows. The old Lexer
+// copied every global into a new map before each call and copied them back
+// after; with activation frames a call should cost the same at any size.
+public class CallFrameBenchmark {
+
+    static String program(int globals, int calls) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("func work(number a, number b) {\n");
+        sb.append("    number r = a * b;\n");
+        sb.append("    number s = r + a;\n");
+        sb.append("}\n");
+        sb.append("begin main {\n");
+        for (int i = 0; i < globals; i++) {
+            sb.append("    number g").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < calls; i++) {
+            sb.append("    call work(").append(i % 100).append(", 2);\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Time per call of the legacy Lexer, excluding the global declarations
+    private static long lexerCalls(String[] lines, int globals) {
+        Lexer lexer = new Lexer();
+        int firstCall = 5 + globals;
+        for (int i = 0; i < firstCall; i++) lexer.analyze(lines[i], i + 1);
+        long start = System.nanoTime();
+        for (int i = firstCall; i < lines.length - 1; i++) lexer.analyze(lines[i], i + 1);
+        return System.nanoTime() - start;
+    }
+
+    // What the Lexer used to do around every call
+    private static long copyingCalls(int globals, int calls) {
+        Map<String, Integer> numVars = new HashMap<>();
+        for (int i = 0; i < globals; i++) numVars.put("g" + i, i);
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            Map<String, Integer> saved = new HashMap<>(numVars);
+            numVars.put("a", i % 100);
+            numVars.put("b", 2);
+            numVars.clear();
+            numVars.putAll(saved);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] sizes = {10, 100, 1_000, 10_000};
+
+        PrintStream console = System.out;
+        PrintStream consoleErr = System.err;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        console.printf("Calls per run: %d, best of %d rounds, ns per call%n", calls, rounds);
+        console.printf("%8s %16s %14s %12s%n", "globals", "old env copy", "Lexer frames", "VM frames");
+        try {
+            System.setOut(sink);
+            System.setErr(sink);
+
+            // Warm every path up once so the first row is not paying for the JIT
+            String warmup = program(sizes[0], calls);
+            String[] warmupLines = warmup.split("\n");
+            for (int i = 0; i < warmupLines.length; i++) warmupLines[i] = warmupLines[i].trim();
+            BytecodeProgram warmupProgram = BytecodeCompiler.compile(HtParser.parse(warmup));
+            for (int i = 0; i < 40; i++) {
+                copyingCalls(sizes[0], calls);
+                lexerCalls(warmupLines, sizes[0]);
+                new VirtualMachine(warmupProgram).run();
+            }
+
+            for (int globals : sizes) {
+                String source = program(globals, calls);
+                String[] lines = source.split("\n");
+                for (int i = 0; i < lines.length; i++) lines[i] = lines[i].trim();
+                BytecodeProgram compiled = BytecodeCompiler.compile(HtParser.parse(source));
+                BytecodeProgram declarations = BytecodeCompiler.compile(HtParser.parse(program(globals, 0)));
+
+                long copyBest = Long.MAX_VALUE, lexerBest = Long.MAX_VALUE, vmBest = Long.MAX_VALUE;
+                for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+                    long copy = copyingCalls(globals, calls);
+                    long lexer = lexerCalls(lines, globals);
+
+                    long start = System.nanoTime();
+                    new VirtualMachine(declarations).run();
+                    long setup = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    new VirtualMachine(compiled).run();
+                    long vm = Math.max(0, System.nanoTime() - start - setup);
+
+                    if (r > 0) {
+                        copyBest = Math.min(copyBest, copy);
+                        lexerBest = Math.min(lexerBest, lexer);
+                        vmBest = Math.min(vmBest, vm);
+                    }
+                }
+                console.printf("%8d %16.0f %14.0f %12.1f%n", globals,
+                        copyBest / (double) calls, lexerBest / (double) calls, vmBest / (double) calls);
+            }
+        } finally {
+            System.setOut(console);
+            System.setErr(consoleErr);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+import java.io.*;
+import java.util.*;
+
+// Minimal writer for JVM class files: a constant pool, fields and methods
+// with a Code attribute. Only the instructions JvmCompiler
+// needs are provided; each one keeps track of the operand stack depth so
+// max_stack comes out right. Branches go to Labels and get a StackMapTable.
+public class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int JAVA_17 = 61;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int fieldCount = 0;
+    private int methodCount = 0;
+
+    private final String className;
+    private final int thisClass;
+    private final int superClass;
+
+    public ClassFileWriter(String className) {
+        this.className = className;
+        this.thisClass = classRef(className);
+        this.superClass = classRef("java/lang/Object");
+    }
+
+    public String className() {
+        return className;
+    }
+
+    // ---------------------------------------------------------- constant pool
+
+    private int entry(String key, int slots, IOAction write) {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        try {
+            write.run(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int assigned = poolCount;
+        poolCount += slots;
+        poolIndex.put(key, assigned);
+        return assigned;
+    }
+
+    // Pool slots used so far; a class file can index at most 65535
+    public int constantCount() {
+        return poolCount - 1;
+    }
+
+    private interface IOAction {
+        void run(DataOutputStream out) throws IOException;
+    }
+
+    public int utf8(String value) {
+        return entry("U" + value, 1, out -> { out.writeByte(1); out.writeUTF(value); });
+    }
+
+    public int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, 1, out -> { out.writeByte(7); out.writeShort(name); });
+    }
+
+    public int string(String value) {
+        int utf = utf8(value);
+        return entry("S" + value, 1, out -> { out.writeByte(8); out.writeShort(utf); });
+    }
+
+    public int integer(int value) {
+        return entry("I" + value, 1, out -> { out.writeByte(3); out.writeInt(value); });
+    }
+
+    public int doubleConstant(double value) {
+        return entry("D" + Double.doubleToRawLongBits(value), 2, out -> { out.writeByte(6); out.writeDouble(value); });
+    }
+
+    public int longConstant(long value) {
+        return entry("J" + value, 2, out -> { out.writeByte(5); out.writeLong(value); });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int n = utf8(name), d = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, 1, out -> { out.writeByte(12); out.writeShort(n); out.writeShort(d); });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        int c = classRef(owner), nt = nameAndType(name, descriptor);
+        return entry("F" + owner + "." + name + ":" + descriptor, 1, out -> { out.writeByte(9); out.writeShort(c); out.writeShort(nt); });
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        int c = classRef(owner), nt = nameAndType(name, descriptor);
+        return entry("M" + owner + "." + name + descriptor, 1, out -> { out.writeByte(10); out.writeShort(c); out.writeShort(nt); });
+    }
+
+    // ---------------------------------------------------------- fields/methods
+
+    public void addField(int access, String name, String descriptor) {
+        try {
+            DataOutputStream out = new DataOutputStream(fields);
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+            fieldCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Code newCode() {
+        return new Code();
+    }
+
+    public void addMethod(int access, String name, String descriptor, Code code) {
+        try {
+            DataOutputStream out = new DataOutputStream(methods);
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            byte[] bytes = code.code();
+            byte[] frames = code.stackMapTable();
+            out.writeShort(utf8("Code"));
+            int attributesLength = frames == null ? 0 : 6 + frames.length;
+            out.writeInt(12 + bytes.length + attributesLength);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);                       // exception table
+            if (frames == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(utf8("StackMapTable"));
+                out.writeInt(frames.length);
+                out.write(frames);
+            }
+            methodCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(JAVA_17);
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                       // interfaces
+            out.writeShort(fieldCount);
+            out.write(fields.toByteArray());
+            out.writeShort(methodCount);
+            out.write(methods.toByteArray());
+            out.writeShort(0);                       // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ------------------------------------------------------------------ code
+
+    // A branch target, which can be used before its position is known
+    public static final class Label {
+        private int position = -1;
+    }
+
+    public final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals = 0;
+
+        private final List<Integer> branchAt = new ArrayList<>();
+        private final List<Label> branchTo = new ArrayList<>();
+        private final List<Integer> jumpEnds = new ArrayList<>();   // just past each goto
+        private List<String> frameLocals = List.of();
+
+        public int position() {
+            return bytes.size();
+        }
+
+        // Descriptors of the local slots at every branch target. Locals never
+        // change type within a method, so a single list describes them all.
+        public void setFrameLocals(List<String> descriptors) {
+            frameLocals = List.copyOf(descriptors);
+        }
+
+        public void reserveLocals(int count) {
+            maxLocals = Math.max(maxLocals, count);
+        }
+
+        private void op(int opcode, int stackDelta) {
+            bytes.write(opcode);
+            stack += stackDelta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            bytes.write(value);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        public void pushDouble(double value) {
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                op(0x0e, 2);                         // dconst_0
+            } else if (value == 1.0) {
+                op(0x0f, 2);                         // dconst_1
+            } else {
+                op(0x14, 2);                         // ldc2_w
+                u2(doubleConstant(value));
+            }
+        }
+
+        public void pushLong(long value) {
+            if (value == 0 || value == 1) {
+                op(0x09 + (int) value, 2);           // lconst_<n>
+            } else {
+                op(0x14, 2);                         // ldc2_w
+                u2(longConstant(value));
+            }
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value, 1);                 // iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10, 1);                         // bipush
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11, 1);                         // sipush
+                u2(value);
+            } else {
+                ldc(integer(value));
+            }
+        }
+
+        public void pushString(String value) {
+            ldc(string(value));
+        }
+
+        private void ldc(int index) {
+            if (index < 256) {
+                op(0x12, 1);
+                u1(index);
+            } else {
+                op(0x13, 1);                         // ldc_w
+                u2(index);
+            }
+        }
+
+        public void lload(int slot) { local(0x16, slot, 2); }
+        public void dload(int slot) { local(0x18, slot, 2); }
+        public void aload(int slot) { local(0x19, slot, 1); }
+        public void lstore(int slot) { local(0x37, slot, -2); }
+        public void dstore(int slot) { local(0x39, slot, -2); }
+        public void astore(int slot) { local(0x3a, slot, -1); }
+
+        private void local(int opcode, int slot, int stackDelta) {
+            op(opcode, stackDelta);
+            u1(slot);
+        }
+
+        public void dadd() { op(0x63, -2); }
+        public void dsub() { op(0x67, -2); }
+        public void dmul() { op(0x6b, -2); }
+        public void ddiv() { op(0x6f, -2); }
+        public void dneg() { op(0x77, 0); }
+        public void l2d() { op(0x8a, 0); }
+        public void dup() { op(0x59, 1); }
+        public void lastore() { op(0x50, -4); }
+        public void dastore() { op(0x52, -4); }
+        public void aastore() { op(0x53, -3); }
+
+        public void newDoubleArray() {
+            op(0xbc, 0);
+            u1(7);                                   // T_DOUBLE
+        }
+
+        public void newLongArray() {
+            op(0xbc, 0);
+            u1(11);                                  // T_LONG
+        }
+
+        public void newArray(String elementClass) {
+            op(0xbd, 0);                             // anewarray
+            u2(classRef(elementClass));
+        }
+
+        public void getStatic(String owner, String name, String descriptor) {
+            op(0xb2, slots(descriptor));
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        public void putStatic(String owner, String name, String descriptor) {
+            op(0xb3, -slots(descriptor));
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        public void getField(String owner, String name, String descriptor) {
+            op(0xb4, slots(descriptor) - 1);
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        public void putField(String owner, String name, String descriptor) {
+            op(0xb5, -slots(descriptor) - 1);
+            u2(fieldRef(owner, name, descriptor));
+        }
+
+        public void invokeStatic(String owner, String name, String descriptor) {
+            int delta = returnSlots(descriptor) - argumentSlots(descriptor);
+            op(0xb8, delta);
+            u2(methodRef(owner, name, descriptor));
+        }
+
+        public void invokeVirtual(String owner, String name, String descriptor) {
+            int delta = returnSlots(descriptor) - argumentSlots(descriptor) - 1;
+            op(0xb6, delta);
+            u2(methodRef(owner, name, descriptor));
+        }
+
+        // Constructors and private methods
+        public void invokeSpecial(String owner, String name, String descriptor) {
+            int delta = returnSlots(descriptor) - argumentSlots(descriptor) - 1;
+            op(0xb7, delta);
+            u2(methodRef(owner, name, descriptor));
+        }
+
+        public void checkCast(String internalName) {
+            op(0xc0, 0);
+            u2(classRef(internalName));
+        }
+
+        public void returnVoid() {
+            op(0xb1, 0);
+        }
+
+        public void aconstNull() { op(0x01, 1); }
+        public void lcmp() { op(0x94, -3); }
+        public void dcmpl() { op(0x97, -3); }
+        public void dcmpg() { op(0x98, -3); }
+
+        public Label newLabel() {
+            return new Label();
+        }
+
+        public void mark(Label label) {
+            label.position = bytes.size();
+        }
+
+        public void goTo(Label label) {
+            branch(0xa7, 0, label);
+            jumpEnds.add(bytes.size());
+        }
+
+        public void ifEq(Label label) { branch(0x99, -1, label); }
+        public void ifNe(Label label) { branch(0x9a, -1, label); }
+        public void ifLt(Label label) { branch(0x9b, -1, label); }
+        public void ifGe(Label label) { branch(0x9c, -1, label); }
+        public void ifGt(Label label) { branch(0x9d, -1, label); }
+        public void ifLe(Label label) { branch(0x9e, -1, label); }
+
+        private void branch(int opcode, int stackDelta, Label label) {
+            branchAt.add(bytes.size());
+            branchTo.add(label);
+            op(opcode, stackDelta);
+            u2(0);                                   // offset, filled in by code()
+        }
+
+        // False when the method is over the 64 KB limit or a branch is
+        // further away than its 16-bit offset can reach
+        public boolean fits() {
+            if (bytes.size() > 65535) return false;
+            for (int i = 0; i < branchAt.size(); i++) {
+                int offset = branchTo.get(i).position - branchAt.get(i);
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) return false;
+            }
+            return true;
+        }
+
+        byte[] code() {
+            byte[] code = bytes.toByteArray();
+            for (int i = 0; i < branchAt.size(); i++) {
+                int at = branchAt.get(i);
+                int offset = branchTo.get(i).position - at;
+                code[at + 1] = (byte) (offset >> 8);
+                code[at + 2] = (byte) offset;
+            }
+            return code;
+        }
+
+        // A frame at every branch target and after every goto, where the
+        // verifier cannot carry types over from the instruction before.
+        // Branches only happen between statements, so the operand stack is
+        // always empty; null when the code has no branches.
+        byte[] stackMapTable() {
+            TreeSet<Integer> positions = new TreeSet<>(jumpEnds);
+            for (Label label : branchTo) positions.add(label.position);
+            positions.removeIf(p -> p >= bytes.size());
+            if (positions.isEmpty()) return null;
+            try {
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(frames);
+                out.writeShort(positions.size());
+                int previous = -1;
+                for (int position : positions) {
+                    int delta = position - previous - 1;
+                    if (previous < 0) {
+                        out.writeByte(255);              // full_frame
+                        out.writeShort(delta);
+                        out.writeShort(frameLocals.size());
+                        for (String descriptor : frameLocals) verificationType(out, descriptor);
+                        out.writeShort(0);
+                    } else if (delta < 64) {
+                        out.writeByte(delta);            // same_frame
+                    } else {
+                        out.writeByte(251);              // same_frame_extended
+                        out.writeShort(delta);
+                    }
+                    previous = position;
+                }
+                return frames.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void verificationType(DataOutputStream out, String descriptor) throws IOException {
+            switch (descriptor.charAt(0)) {
+                case 'I': out.writeByte(1); break;
+                case 'D': out.writeByte(3); break;
+                case 'J': out.writeByte(4); break;
+                case 'L':
+                    out.writeByte(7);
+                    out.writeShort(classRef(descriptor.substring(1, descriptor.length() - 1)));
+                    break;
+                default:
+                    out.writeByte(7);
+                    out.writeShort(classRef(descriptor));   // arrays are named by their descriptor
+                    break;
+            }
+        }
+    }
+
+    static int slots(String descriptor) {
+        char c = descriptor.charAt(0);
+        return c == 'D' || c == 'J' ? 2 : c == 'V' ? 0 : 1;
+    }
+
+    static int argumentSlots(String methodDescriptor) {
+        int count = 0;
+        int i = 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            char c = methodDescriptor.charAt(i);
+            int start = i;
+            while (methodDescriptor.charAt(i) == '[') i++;
+            if (methodDescriptor.charAt(i) == 'L') i = methodDescriptor.indexOf(';', i);
+            i++;
+            count += start == i - 1 ? slots(String.valueOf(c)) : 1;
+        }
+        return count;
+    }
+
+    static int returnSlots(String methodDescriptor) {
+        return slots(methodDescriptor.substring(methodDescriptor.indexOf(')') + 1));
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.*;
+
+// Keeps everything in memory, for embedding an engine in another program
+// or checking what a script printed.
+public class CollectingSink implements OutputSink {
+
+    private final List<String> published = new ArrayList<>();
+    private final List<String> traces = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+
+    public void publish(String text) {
+        published.add(text);
+    }
+
+    public void trace(String text) {
+        traces.add(text);
+    }
+
+    public void error(String text) {
+        errors.add(text);
+    }
+
+    public List<String> published() {
+        return Collections.unmodifiableList(published);
+    }
+
+    public List<String> traces() {
+        return Collections.unmodifiableList(traces);
+    }
+
+    public List<String> errors() {
+        return Collections.unmodifiableList(errors);
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// On-disk cache of compiled programs. An entry is named after a SHA-256 of
+// the compiler version, the engine, whether the Optimizer ran and the
+// source bytes, so an unchanged
+// file is loaded without being scanned, parsed or compiled, and a new
+// compiler version never reads an old entry. The vm engine stores the
+// BytecodeProgram, the jvm engine the generated class file, each with the
+// Optimizer's summary so a hit can trace it again, and a program that failed
+// to compile stores its diagnostics. A class the JVM refused to load is not
+// the program's fault and is never cached.
+//
+// Entries are written to a temporary file and moved into place, so
+// concurrent batch threads or processes never see half an entry. When the
+// directory grows past its size limit the least recently used entries are
+// deleted; a hit refreshes the entry's modification time for that.
+public class CompileCache {
+
+    // Bump whenever the scanner, parser, compilers or the entry layout
+    // change what a cached program would contain
+    public static final String COMPILER_VERSION = "ht-7";
+
+    private static final int MAGIC = 0x48544331;   // "HTC1"
+    private static final byte KIND_BYTECODE = 0;
+    private static final byte KIND_CLASS = 1;
+    private static final byte KIND_DIAGNOSTICS = 2;
+    private static final String SUFFIX = ".htc";
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean optimize;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public CompileCache(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, false);
+    }
+
+    // With optimize, programs are run through the Optimizer before compiling
+    public CompileCache(Path directory, long maxBytes, boolean optimize) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.optimize = optimize;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : stream) size.addAndGet(Files.size(entry));
+        }
+        if (size.get() > maxBytes) evict();
+    }
+
+    public int hits() {
+        return hits.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    // Returns the cached bytecode for this source, or compiles and stores it.
+    // Throws CompileException for a program with errors, cached or not.
+    public BytecodeProgram bytecode(SourceText source) {
+        return bytecode(source, null);
+    }
+
+    // Compiler messages, such as what the Optimizer did, go to trace, on a
+    // hit as on a miss
+    public BytecodeProgram bytecode(SourceText source, OutputSink trace) {
+        String key = key(source, "vm");
+        ByteBuffer in = open(key, KIND_BYTECODE);
+        if (in != null) {
+            try {
+                String summary = BytecodeProgram.readString(in);
+                BytecodeProgram program = BytecodeProgram.read(in);
+                hits.incrementAndGet();
+                trace(trace, summary);
+                return program;
+            } catch (RuntimeException e) {
+                // a damaged entry reads as garbage; compile it again
+                discard(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        Parsed parsed;
+        BytecodeProgram program;
+        try {
+            parsed = parse(source);
+            program = BytecodeCompiler.compile(parsed.program);
+        } catch (CompileException e) {
+            storeDiagnostics(key, e.getDiagnostics());
+            throw e;
+        }
+        trace(trace, parsed.summary);
+        store(key, KIND_BYTECODE, out -> {
+            BytecodeProgram.writeString(out, parsed.summary);
+            program.write(out);
+        });
+        return program;
+    }
+
+    // Same for the jvm engine: the class file is cached and defined again on a hit
+    public JvmProgram jvm(SourceText source) {
+        return jvm(source, null);
+    }
+
+    public JvmProgram jvm(SourceText source, OutputSink trace) {
+        String key = key(source, "jvm");
+        ByteBuffer in = open(key, KIND_CLASS);
+        if (in != null) {
+            try {
+                String summary = BytecodeProgram.readString(in);
+                String className = BytecodeProgram.readString(in);
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                JvmProgram program = JvmProgram.load(className, bytes);
+                hits.incrementAndGet();
+                trace(trace, summary);
+                return program;
+            } catch (RuntimeException | LinkageError e) {
+                discard(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        Parsed parsed;
+        JvmProgram program;
+        try {
+            parsed = parse(source);
+            program = JvmProgram.compile(parsed.program);
+        } catch (JvmProgram.LoadFailure e) {
+            throw e;
+        } catch (CompileException e) {
+            storeDiagnostics(key, e.getDiagnostics());
+            throw e;
+        }
+        trace(trace, parsed.summary);
+        store(key, KIND_CLASS, out -> {
+            BytecodeProgram.writeString(out, parsed.summary);
+            BytecodeProgram.writeString(out, program.className);
+            out.writeInt(program.classBytes.length);
+            out.write(program.classBytes);
+        });
+        return program;
+    }
+
+    // A program ready to compile and the Optimizer's summary, "" when it did
+    // not run. The summary is always worked out, since the entry keeps it for
+    // later hits whether or not this run traces.
+    private static final class Parsed {
+        final Ast.Program program;
+        final String summary;
+
+        Parsed(Ast.Program program, String summary) {
+            this.program = program;
+            this.summary = summary;
+        }
+    }
+
+    private Parsed parse(SourceText source) {
+        Ast.Program program = HtParser.parse(source);
+        if (!optimize) return new Parsed(program, "");
+        Optimizer.Result result = Optimizer.optimize(program);
+        return new Parsed(result.program, result.summary());
+    }
+
+    private static void trace(OutputSink trace, String summary) {
+        if (trace != null && trace.isTracing() && !summary.isEmpty()) trace.trace(summary);
+    }
+
+    private String key(SourceText source, String engine) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update((COMPILER_VERSION + "/" + engine + (optimize ? "+opt/" : "/")).getBytes(StandardCharsets.UTF_8));
+        source.digest(digest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Returns an entry positioned after its header, or null on a miss.
+    // A cached compile failure is thrown straight away.
+    private ByteBuffer open(String key, byte kind) {
+        Path file = directory.resolve(key + SUFFIX);
+        ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException e) {
+            return null;
+        }
+
+        List<Diagnostic> diagnostics = null;
+        try {
+            byte found = in.getInt() == MAGIC ? in.get() : -1;
+            if (found == KIND_DIAGNOSTICS) {
+                diagnostics = readDiagnostics(in);
+            } else if (found != kind) {
+                discard(key);
+                return null;
+            }
+        } catch (RuntimeException e) {
+            discard(key);
+            return null;
+        }
+        touch(file);
+        if (diagnostics != null) {
+            hits.incrementAndGet();
+            throw new CompileException(diagnostics);
+        }
+        return in;
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // The cache only ever speeds things up, so a failed write is dropped
+    private void store(String key, byte kind, Payload payload) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(MAGIC);
+            out.writeByte(kind);
+            payload.write(out);
+        } catch (IOException e) {
+            return;
+        }
+
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, buffer.toByteArray());
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (size.addAndGet(buffer.size() - replaced) > maxBytes) evict();
+        } catch (IOException e) {
+            // the disk is full or the directory went away; leave no temp file behind
+            try {
+                if (temp != null) Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing more to do
+            }
+        }
+    }
+
+    private void storeDiagnostics(String key, List<Diagnostic> diagnostics) {
+        store(key, KIND_DIAGNOSTICS, out -> {
+            out.writeInt(diagnostics.size());
+            for (Diagnostic d : diagnostics) {
+                BytecodeProgram.writeString(out, d.category);
+                out.writeInt(d.line);
+                out.writeInt(d.column);
+                BytecodeProgram.writeString(out, d.message);
+            }
+        });
+    }
+
+    private static List<Diagnostic> readDiagnostics(ByteBuffer in) {
+        int count = in.getInt();
+        List<Diagnostic> diagnostics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            diagnostics.add(new Diagnostic(BytecodeProgram.readString(in), in.getInt(), in.getInt(), BytecodeProgram.readString(in)));
+        }
+        return diagnostics;
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // eviction order is only a hint
+        }
+    }
+
+    private void discard(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            long bytes = Files.size(file);
+            if (Files.deleteIfExists(file)) size.addAndGet(-bytes);
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    // Deletes the least recently used entries until the cache is back under
+    // three quarters of its limit, so eviction does not run on every store
+    private synchronized void evict() {
+        if (size.get() <= maxBytes) return;
+        List<Path> entries = new ArrayList<>();
+        Map<Path, FileTime> used = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                entries.add(entry);
+                used.put(entry, attributes.lastModifiedTime());
+                total += attributes.size();
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(used::get));
+        long target = maxBytes / 4 * 3;
+        for (Path entry : entries) {
+            if (total <= target) break;
+            try {
+                long bytes = Files.size(entry);
+                Files.delete(entry);
+                total -= bytes;
+            } catch (IOException e) {
+                // in use or already deleted by another process
+            }
+        }
+        size.set(total);
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+// Time to get a batch of unchanged programs ready to run on the vm engine:
+// reading and hashing the files alone, loading them from a warm
+// CompileCache, and parsing and compiling them from scratch.
+public class CompileCacheBenchmark {
+
+    private static List<Path> generate(Path folder, int files, int linesPerFile) throws IOException {
+        String[] body = {
+            "number x%1$d = %2$d;",
+            "number y%1$d = x%1$d * 2 + 1;",
+            "number[] scores%1$d = { 98, 85.5, 74, %2$d };",
+            "Alphan[] students%1$d = { \"Ali\", \"Sara\", \"Zara\" };",
+            "publish(scores%1$d[3]);",
+            "publish(y%1$d - x%1$d);",
+        };
+        List<Path> paths = new ArrayList<>();
+        for (int f = 0; f < files; f++) {
+            StringBuilder sb = new StringBuilder("func sum(number a, number b) {\n    number result = a + b;\n    publish(result);\n}\n");
+            for (int i = 0; i < linesPerFile; i++) {
+                sb.append(String.format(body[i % body.length], i / body.length, f + i)).append('\n');
+            }
+            sb.append("call sum(10, 5);\n");
+            Path file = folder.resolve("program" + f + ".ht");
+            Files.writeString(file, sb);
+            paths.add(file);
+        }
+        return paths;
+    }
+
+    private static long hashOnly(List<Path> files) throws IOException, NoSuchAlgorithmException {
+        long check = 0;
+        for (Path file : files) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            SourceText.read(file).digest(digest);
+            check += digest.digest()[0];
+        }
+        return check;
+    }
+
+    private static long cached(List<Path> files, Path cacheDir) throws IOException {
+        CompileCache cache = new CompileCache(cacheDir, CompileCache.DEFAULT_MAX_BYTES);
+        long check = 0;
+        for (Path file : files) check += cache.bytecode(SourceText.read(file)).code.length;
+        if (cache.misses() != 0) throw new IllegalStateException("Every program should come from the cache");
+        return check;
+    }
+
+    private static long compiled(List<Path> files) throws IOException {
+        long check = 0;
+        for (Path file : files) check += BytecodeCompiler.compile(HtParser.parse(SourceText.read(file))).code.length;
+        return check;
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (var walk = Files.walk(folder)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Path folder = Files.createTempDirectory("ht-cache-bench");
+        Path cacheDir = folder.resolve(".htcache");
+
+        try {
+            List<Path> paths = generate(folder, files, lines);
+            // Fills the cache; the first pass of each also warms up the JIT
+            for (Path file : paths) new CompileCache(cacheDir, CompileCache.DEFAULT_MAX_BYTES).bytecode(SourceText.read(file));
+            if (cached(paths, cacheDir) != compiled(paths)) {
+                throw new IllegalStateException("Cached and compiled programs must match");
+            }
+            hashOnly(paths);
+
+            long hashBest = Long.MAX_VALUE, cacheBest = Long.MAX_VALUE, compileBest = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                long start = System.nanoTime();
+                hashOnly(paths);
+                hashBest = Math.min(hashBest, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                cached(paths, cacheDir);
+                cacheBest = Math.min(cacheBest, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                compiled(paths);
+                compileBest = Math.min(compileBest, System.nanoTime() - start);
+            }
+
+            System.out.printf("Programs: %d of %d lines, best of %d rounds%n", files, lines + 5, rounds);
+            System.out.printf("Read + hash      : %9.3f ms%n", hashBest / 1e6);
+            System.out.printf("Cache load       : %9.3f ms%n", cacheBest / 1e6);
+            System.out.printf("Parse + compile  : %9.3f ms%n", compileBest / 1e6);
+            System.out.printf("Speedup          : %.1fx%n", (double) compileBest / cacheBest);
+        } finally {
+            delete(folder);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+import java.util.*;
+
+// Thrown when a program has errors; carries every diagnostic that was found
+public class CompileException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final List<Diagnostic> diagnostics;
+
+    public CompileException(List<Diagnostic> diagnostics) {
+        super(diagnostics.isEmpty() ? "Compilation failed" : diagnostics.get(0).toString()
+                + (diagnostics.size() > 1 ? " (and " + (diagnostics.size() - 1) + " more)" : ""));
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+
+// Basic blocks of a suppose or loopwhile statement, nested ones included.
+// Every block is a run of straight-line statements that ends in a jump to one
+// successor or in a two-way branch on a Condition, so the compilers never see
+// nesting: they lay the blocks out in order and only emit a jump where the
+// successor is not the block that follows. Loops are rotated so the test
+// sits at the bottom,
+//
+//          goto test
+//    body: ...
+//    test: if (condition) goto body
+//
+// and an iteration costs one conditional jump. Jumps to an empty block go
+// straight on to where it leads, and a condition on two number literals is
+// decided here, leaving only the branch that runs.
+public final class ControlFlowGraph {
+
+    public static final class Block {
+        public final int index;                     // position in layout order
+        public final List<Ast.Stmt> statements = new ArrayList<>();
+        public Ast.Condition condition;             // two-way branch when not null
+        public Block next;                          // successor, or the branch target when the condition holds; null is the end
+        public Block otherwise;                     // branch target when the condition does not hold
+        public int line;                            // source line of the jump to next
+        public boolean loop;                        // first block of a loop body, entered once per iteration
+
+        Block(int index) {
+            this.index = index;
+        }
+    }
+
+    // How a compiler turns the graph into code. A null block is the end of
+    // the lowered statement, just after the last block.
+    public interface Emitter {
+        void label(Block block);                    // block starts at the current position
+        void statement(Ast.Stmt s);                 // never an If or While
+        void jump(Block to, int line);
+        void branch(Ast.Condition condition, boolean when, Block to);   // jump when the condition evaluates to when
+    }
+
+    public final List<Block> blocks = new ArrayList<>();
+    private Block current;
+
+    private ControlFlowGraph() {
+        current = newBlock();
+    }
+
+    public static ControlFlowGraph build(List<Ast.Stmt> statements) {
+        ControlFlowGraph graph = new ControlFlowGraph();
+        graph.lower(statements);
+        return graph;
+    }
+
+    private Block newBlock() {
+        current = new Block(blocks.size());
+        blocks.add(current);
+        return current;
+    }
+
+    private void lower(List<Ast.Stmt> statements) {
+        for (Ast.Stmt s : statements) {
+            if (s instanceof Ast.If b) lowerIf(b);
+            else if (s instanceof Ast.While w) lowerWhile(w);
+            else current.statements.add(s);
+        }
+    }
+
+    // branch: if (condition) else otherwise    then: ...    goto after
+    //         otherwise: ...                   after:
+    private void lowerIf(Ast.If s) {
+        Boolean constant = s.condition.constant();
+        if (constant != null) {
+            lower(constant ? s.then : s.otherwise);
+            return;
+        }
+        Block branch = current;
+        branch.condition = s.condition;
+        branch.next = newBlock();
+        lower(s.then);
+        Block thenEnd = current;
+        thenEnd.line = s.line;
+        if (s.otherwise.isEmpty()) {
+            branch.otherwise = thenEnd.next = newBlock();
+            return;
+        }
+        branch.otherwise = newBlock();
+        lower(s.otherwise);
+        Block otherwiseEnd = current;
+        otherwiseEnd.line = s.line;
+        thenEnd.next = otherwiseEnd.next = newBlock();
+    }
+
+    private void lowerWhile(Ast.While s) {
+        Boolean constant = s.condition.constant();
+        if (constant == Boolean.FALSE) return;
+        Block entry = current;
+        entry.line = s.line;
+        Block body = newBlock();
+        body.loop = true;
+        body.line = s.line;
+        entry.next = body;
+        lower(s.body);
+        Block bodyEnd = current;
+        bodyEnd.line = s.line;
+        if (constant == Boolean.TRUE) {
+            // Endless: no test at all, and whatever follows is never reached
+            bodyEnd.next = body;
+            newBlock();
+            return;
+        }
+        Block test = newBlock();
+        entry.next = test;
+        bodyEnd.next = test;
+        test.condition = s.condition;
+        test.next = body;
+        test.otherwise = newBlock();
+    }
+
+    // Where a jump to block really has to go: past any empty blocks that
+    // only lead somewhere else. A loop body is never skipped, so even an
+    // empty one has a place to count its iterations.
+    private Block resolve(Block block) {
+        for (int steps = 0; block != null && steps < blocks.size(); steps++) {
+            if (!block.statements.isEmpty() || block.condition != null || block.loop || block.next == block) break;
+            block = block.next;
+        }
+        return block;
+    }
+
+    public void emit(Emitter out) {
+        for (Block b : blocks) {
+            out.label(b);
+            for (Ast.Stmt s : b.statements) out.statement(s);
+            Block fallthrough = b.index + 1 < blocks.size() ? resolve(blocks.get(b.index + 1)) : null;
+            if (b.condition == null) {
+                Block to = resolve(b.next);
+                if (to != fallthrough) out.jump(to, b.line);
+                continue;
+            }
+            Block yes = resolve(b.next);
+            Block no = resolve(b.otherwise);
+            if (no == fallthrough) {
+                out.branch(b.condition, true, yes);
+            } else if (yes == fallthrough) {
+                out.branch(b.condition, false, no);
+            } else {
+                out.branch(b.condition, true, yes);
+                out.jump(no, b.condition.line);
+            }
+        }
+    }
+}
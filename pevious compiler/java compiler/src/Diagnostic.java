@@ -0,0 +1,23 @@
+// A compile-time message tied to a source position
+public class Diagnostic {
+    public final String category;   // "Syntax Error", "Error", "Warning"
+    public final int line;
+    public final int column;
+    public final String message;
+
+    public Diagnostic(String category, int line, int column, String message) {
+        this.category = category;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public boolean isError() {
+        return !category.equals("Warning");
+    }
+
+    @Override
+    public String toString() {
+        return category + " at line " + line + ", column " + column + ": " + message;
+    }
+}
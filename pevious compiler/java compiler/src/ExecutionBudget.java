@@ -0,0 +1,105 @@
+// Limits on one run of a script, so a runaway script cannot hold a worker
+// thread for long: a number of steps, a call depth, a number of array
+// elements allocated and a wall-clock timeout, plus cancel() from any other
+// thread. A step is one loop iteration or call on the vm and jvm engines,
+// since the straight-line code in between is bounded by the size of the
+// program, and one statement on the legacy engine.
+//
+// Engines count steps down in a plain int and only come back here once per
+// slice of CHECK_INTERVAL steps. That is the only time the clock is read
+// and a cancel() is noticed, so a run that is late or cancelled stops within
+// one slice. A budget belongs to a single run; copy() gives a fresh one with
+// the same limits for the next.
+public final class ExecutionBudget {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    // Deep enough for any real program and well inside the Java stack, which
+    // the legacy and jvm engines recurse on
+    public static final int DEFAULT_MAX_CALL_DEPTH = 1000;
+    static final int CHECK_INTERVAL = 1 << 12;
+
+    private final long maxSteps;
+    private final int maxCallDepth;
+    private final long maxArrayElements;
+    private final long timeoutMillis;
+
+    private long granted;        // steps handed out in slices so far
+    private int slice;           // steps left in the current slice, for step()
+    private int depth;
+    private long elements;
+    private long deadline = Long.MAX_VALUE;
+    private volatile boolean cancelled;
+
+    public ExecutionBudget(long maxSteps, int maxCallDepth, long maxArrayElements, long timeoutMillis) {
+        this.maxSteps = maxSteps;
+        this.maxCallDepth = maxCallDepth;
+        this.maxArrayElements = maxArrayElements;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // No limits apart from DEFAULT_MAX_CALL_DEPTH; still cancellable
+    public static ExecutionBudget defaults() {
+        return new ExecutionBudget(UNLIMITED, DEFAULT_MAX_CALL_DEPTH, UNLIMITED, UNLIMITED);
+    }
+
+    public ExecutionBudget copy() {
+        return new ExecutionBudget(maxSteps, maxCallDepth, maxArrayElements, timeoutMillis);
+    }
+
+    // Safe to call from any thread; the run stops at its next check
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Steps used so far, to within the slice the engine is working through
+    public long steps() {
+        return granted - Math.max(slice, 0);
+    }
+
+    // The timeout counts from here; engines call it as a run starts
+    void start() {
+        if (timeoutMillis != UNLIMITED) deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+    }
+
+    // Checks cancellation and the deadline and hands out the next slice of
+    // steps. line is the source line being run, for the error message.
+    int grant(int line) {
+        if (cancelled) throw new BudgetExceededException(line, "Execution cancelled.");
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceededException(line, "Time limit of " + timeoutMillis + " ms exceeded.");
+        }
+        long left = maxSteps - granted;
+        if (left <= 0) throw new BudgetExceededException(line, "Step limit of " + maxSteps + " exceeded.");
+        int next = (int) Math.min(CHECK_INTERVAL, left);
+        granted += next;
+        return next;
+    }
+
+    // One step, for engines that keep no counter of their own
+    public void step(int line) {
+        if (--slice < 0) slice = grant(line) - 1;
+    }
+
+    // A call one level deeper; the engine counts its step
+    public void enter(int line) {
+        if (++depth > maxCallDepth) {
+            depth--;
+            throw new BudgetExceededException(line, "Call depth limit of " + maxCallDepth + " exceeded.");
+        }
+    }
+
+    public void leave() {
+        depth--;
+    }
+
+    public void allocate(int count, int line) {
+        elements += count;
+        if (elements > maxArrayElements) {
+            throw new BudgetExceededException(line, "Array element limit of " + maxArrayElements + " exceeded.");
+        }
+    }
+}
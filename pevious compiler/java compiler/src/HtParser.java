@@ -0,0 +1,421 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Recursive-descent front end: turns a whole .ht program into an Ast.Program.
+// Errors are collected as diagnostics with line and column; after an error the
+// parser skips to the next statement and keeps going.
+public class HtParser {
+
+    private final TokenBuffer tokens;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private final int end;      // tokens past an unterminated comment's /\ are never parsed
+    private int pos = 0;
+
+    // Symbol ids of the words the grammar cares about
+    private final int FUNC, NUMBER, PUBLISH, CALL, BEGIN, ALPHAN, MAIN, SUPPOSE, OTHERWISE, LOOPWHILE;
+
+    // Thrown to unwind to the enclosing statement after a syntax error
+    private static final class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ParseError() {
+            super(null, null, false, false);
+        }
+    }
+
+    public HtParser(CharSequence source) {
+        tokens = new TokenBuffer();
+        Tokenizer.scanProgram(source, tokens);
+        SymbolTable symbols = tokens.symbols();
+        FUNC = symbols.intern("func");
+        NUMBER = symbols.intern("number");
+        PUBLISH = symbols.intern("publish");
+        CALL = symbols.intern("call");
+        BEGIN = symbols.intern("begin");
+        ALPHAN = symbols.intern("Alphan");
+        MAIN = symbols.intern("main");
+        SUPPOSE = symbols.intern("suppose");
+        OTHERWISE = symbols.intern("otherwise");
+        LOOPWHILE = symbols.intern("loopwhile");
+        int last = tokens.size() - 1;
+        boolean unterminated = last >= 0 && tokens.kind(last) == TokenKind.UNKNOWN && tokens.text(last).equals("/\\");
+        end = unterminated ? last : tokens.size();
+    }
+
+    // Parses the source and throws CompileException if it has any syntax errors
+    public static Ast.Program parse(CharSequence source) {
+        boolean timed = Instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        HtParser parser = new HtParser(source);   // scans the whole source up front
+        long scanned = timed ? System.nanoTime() : 0;
+        Ast.Program program = parser.parseProgram();
+        if (timed) {
+            Instrumentation.record(Instrumentation.Phase.LEX, scanned - start);
+            Instrumentation.record(Instrumentation.Phase.PARSE, System.nanoTime() - scanned);
+        }
+        if (!parser.diagnostics().isEmpty()) throw new CompileException(parser.diagnostics());
+        return program;
+    }
+
+    public List<Diagnostic> diagnostics() {
+        return diagnostics;
+    }
+
+    // program := ( function | 'begin' 'main' block | statement )*
+    public Ast.Program parseProgram() {
+        List<Ast.Function> functions = new ArrayList<>();
+        List<Ast.Stmt> statements = new ArrayList<>();
+
+        while (!atEnd()) {
+            int start = pos;
+            try {
+                if (isWord(FUNC)) {
+                    functions.add(function());
+                } else if (isWord(BEGIN)) {
+                    pos++;
+                    if (!isWord(MAIN)) throw error("Expected 'main' after 'begin'");
+                    pos++;
+                    statements.addAll(block());
+                } else if (isSymbol('}')) {
+                    throw error("Unexpected '}'");
+                } else {
+                    statements.add(statement());
+                }
+            } catch (ParseError e) {
+                synchronize(start);
+            }
+        }
+        if (end < tokens.size()) {
+            diagnostics.add(new Diagnostic("Syntax Error", tokens.line(end), tokens.column(end), "Unterminated comment"));
+        }
+        return new Ast.Program(functions, statements);
+    }
+
+    // function := 'func' IDENT '(' [ param (',' param)* ] ')' block
+    private Ast.Function function() {
+        int line = line(), column = column();
+        pos++;
+        String name = identifier("function name");
+        expect('(', "after function name");
+        List<Ast.Param> params = new ArrayList<>();
+        if (!isSymbol(')')) {
+            do {
+                int paramLine = line(), paramColumn = column();
+                Ast.Type type = type();
+                if (type == null) throw error("Expected parameter type 'number' or 'Alphan'");
+                params.add(new Ast.Param(paramLine, paramColumn, type, identifier("parameter name")));
+            } while (acceptSymbol(','));
+        }
+        expect(')', "after parameters");
+        return new Ast.Function(line, column, name, params, block());
+    }
+
+    // block := '{' statement* '}'
+    private List<Ast.Stmt> block() {
+        expect('{', "to open block");
+        List<Ast.Stmt> statements = new ArrayList<>();
+        while (!isSymbol('}')) {
+            if (atEnd()) throw error("Missing '}' at end of block");
+            int start = pos;
+            try {
+                statements.add(statement());
+            } catch (ParseError e) {
+                synchronize(start);
+            }
+        }
+        pos++;
+        return statements;
+    }
+
+    private Ast.Stmt statement() {
+        int line = line(), column = column();
+
+        Ast.Type type = type();
+        if (type != null) {
+            if (acceptSymbol('[')) {
+                expect(']', "in array type");
+                String name = identifier("array name");
+                expect('=', "after array name");
+                expect('{', "to open array literal");
+                List<Ast.Expr> elements = new ArrayList<>();
+                if (!isSymbol('}')) {
+                    do {
+                        elements.add(expression());
+                    } while (acceptSymbol(','));
+                }
+                expect('}', "to close array literal");
+                endStatement();
+                return new Ast.DeclareArray(line, column, type, name, elements);
+            }
+            String name = identifier("variable name");
+            expect('=', "after variable name");
+            Ast.Expr value = expression();
+            endStatement();
+            return new Ast.Declare(line, column, type, name, value);
+        }
+
+        if (isWord(PUBLISH)) {
+            pos++;
+            Ast.Expr value = expression();
+            endStatement();
+            return new Ast.Publish(line, column, value);
+        }
+
+        if (isWord(SUPPOSE)) return suppose();
+
+        if (isWord(LOOPWHILE)) {
+            pos++;
+            Ast.Condition condition = condition();
+            return new Ast.While(line, column, condition, block());
+        }
+
+        if (isWord(CALL)) {
+            pos++;
+            String name = identifier("function name");
+            expect('(', "after function name");
+            List<Ast.Expr> args = new ArrayList<>();
+            if (!isSymbol(')')) {
+                do {
+                    args.add(expression());
+                } while (acceptSymbol(','));
+            }
+            expect(')', "after arguments");
+            endStatement();
+            return new Ast.Call(line, column, name, args);
+        }
+
+        if (atEnd()) throw error("Unexpected end of file");
+        throw error("Unrecognized statement starting with '" + tokens.text(pos) + "'");
+    }
+
+    // suppose := 'suppose' condition block [ 'otherwise' ( suppose | block ) ]
+    private Ast.If suppose() {
+        int line = line(), column = column();
+        pos++;
+        Ast.Condition condition = condition();
+        List<Ast.Stmt> then = block();
+        List<Ast.Stmt> otherwise = List.of();
+        if (isWord(OTHERWISE)) {
+            pos++;
+            otherwise = isWord(SUPPOSE) ? List.of(suppose()) : block();
+        }
+        return new Ast.If(line, column, condition, then, otherwise);
+    }
+
+    // condition := '(' expression ( '<' | '<=' | '>' | '>=' | '==' | '!=' ) expression ')'
+    private Ast.Condition condition() {
+        expect('(', "before condition");
+        Ast.Expr left = expression();
+        if (atEnd()) throw error("Expected a comparison");
+        int line = line(), column = column();
+        String op = comparison();
+        Ast.Expr right = expression();
+        expect(')', "after condition");
+        return new Ast.Condition(line, column, op, left, right);
+    }
+
+    // The scanner makes every symbol its own token, so a two-character
+    // operator is two adjacent symbols
+    private String comparison() {
+        if (tokens.kind(pos) == TokenKind.SYMBOL) {
+            char c = (char) tokens.symbol(pos);
+            boolean equals = pos + 1 < end && tokens.isSymbol(pos + 1, '=')
+                    && tokens.start(pos + 1) == tokens.start(pos) + 1;
+            if (c == '<' || c == '>') {
+                pos += equals ? 2 : 1;
+                return equals ? c + "=" : String.valueOf(c);
+            }
+            if ((c == '=' || c == '!') && equals) {
+                pos += 2;
+                return c + "=";
+            }
+        }
+        throw error("Expected a comparison (<, <=, >, >=, == or !=) but found '" + tokens.text(pos) + "'");
+    }
+
+    // expression := term (('+' | '-') term)*
+    private Ast.Expr expression() {
+        Ast.Expr left = term();
+        while (isSymbol('+') || isSymbol('-')) {
+            int line = line(), column = column();
+            char op = (char) tokens.symbol(pos++);
+            left = new Ast.Binary(line, column, op, left, term());
+        }
+        return left;
+    }
+
+    // term := unary (('*' | '/') unary)*
+    private Ast.Expr term() {
+        Ast.Expr left = unary();
+        while (isSymbol('*') || isSymbol('/')) {
+            int line = line(), column = column();
+            char op = (char) tokens.symbol(pos++);
+            left = new Ast.Binary(line, column, op, left, unary());
+        }
+        return left;
+    }
+
+    // unary := '-' unary | primary
+    private Ast.Expr unary() {
+        if (isSymbol('-')) {
+            int line = line(), column = column();
+            pos++;
+            return new Ast.Negate(line, column, unary());
+        }
+        return primary();
+    }
+
+    // primary := NUMBER | STRING | IDENT [ '[' expression ']' ] | '(' expression ')'
+    private Ast.Expr primary() {
+        if (atEnd()) throw error("Expected an expression");
+        int line = line(), column = column();
+
+        switch (tokens.kind(pos)) {
+            case NUMBER: {
+                int start = tokens.start(pos), end = start + tokens.length(pos);
+                pos++;
+                return new Ast.NumberLiteral(line, column, Numbers.parse(tokens.source(), start, end), Numbers.hasFraction(tokens.source(), start, end));
+            }
+            case STRING: {
+                int start = tokens.start(pos), length = tokens.length(pos);
+                pos++;
+                return new Ast.StringLiteral(line, column, tokens.source().subSequence(start + 1, start + length - 1).toString());
+            }
+            case IDENTIFIER: {
+                String name = tokens.text(pos++);
+                if (acceptSymbol('[')) {
+                    Ast.Expr index = expression();
+                    expect(']', "after array index");
+                    return new Ast.Index(line, column, name, index);
+                }
+                return new Ast.Variable(line, column, name);
+            }
+            default:
+                if (acceptSymbol('(')) {
+                    Ast.Expr inner = expression();
+                    expect(')', "to close parenthesis");
+                    return inner;
+                }
+                throw error("Expected an expression but found '" + tokens.text(pos) + "'");
+        }
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private Ast.Type type() {
+        if (isWord(NUMBER)) {
+            pos++;
+            return Ast.Type.NUMBER;
+        }
+        if (isWord(ALPHAN)) {
+            pos++;
+            return Ast.Type.ALPHAN;
+        }
+        return null;
+    }
+
+    private String identifier(String what) {
+        if (atEnd() || tokens.kind(pos) != TokenKind.IDENTIFIER) throw error("Expected " + what);
+        return tokens.text(pos++);
+    }
+
+    private void expect(char symbol, String where) {
+        if (!acceptSymbol(symbol)) throw error("Expected '" + symbol + "' " + where);
+    }
+
+    // A missing ';' is reported just after the previous token
+    private void endStatement() {
+        if (acceptSymbol(';')) return;
+        int last = pos - 1;
+        diagnostics.add(new Diagnostic("Syntax Error", tokens.line(last), tokens.column(last) + tokens.length(last),
+                "Missing semicolon at end of statement"));
+        throw new ParseError();
+    }
+
+    private ParseError error(String message) {
+        if (atEnd()) {
+            int last = end - 1;
+            int line = last < 0 ? 1 : tokens.line(last);
+            int column = last < 0 ? 1 : tokens.column(last) + tokens.length(last);
+            diagnostics.add(new Diagnostic("Syntax Error", line, column, message));
+        } else {
+            diagnostics.add(new Diagnostic("Syntax Error", line(), column(), message));
+        }
+        return new ParseError();
+    }
+
+    // Skip to just past the next ';', or to a '}' or to a statement keyword that
+    // starts a new line, whichever comes first. A '{' on the way, such as the
+    // body of a suppose with a broken condition, is skipped up to its matching
+    // '}' together with any otherwise parts. Always makes progress.
+    private void synchronize(int start) {
+        if (pos == start && !atEnd() && !isSymbol('{')) pos++;
+        while (!atEnd()) {
+            if (acceptSymbol(';')) return;
+            if (isSymbol('}')) return;
+            if (isSymbol('{')) {
+                skipBlock();
+                if (!isWord(OTHERWISE)) {
+                    acceptSymbol(';');
+                    return;
+                }
+                pos++;
+                continue;
+            }
+            boolean newLine = tokens.line(pos) != tokens.line(pos - 1);
+            if (newLine && (isWord(NUMBER) || isWord(ALPHAN) || isWord(PUBLISH) || isWord(CALL)
+                    || isWord(SUPPOSE) || isWord(LOOPWHILE) || isWord(FUNC) || isWord(BEGIN))) return;
+            pos++;
+        }
+    }
+
+    private void skipBlock() {
+        int depth = 0;
+        while (!atEnd()) {
+            if (isSymbol('{')) depth++;
+            if (isSymbol('}') && --depth == 0) {
+                pos++;
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean atEnd() {
+        return pos >= end;
+    }
+
+    private boolean isWord(int symbol) {
+        TokenKind kind = atEnd() ? null : tokens.kind(pos);
+        return (kind == TokenKind.KEYWORD || kind == TokenKind.IDENTIFIER) && tokens.symbol(pos) == symbol;
+    }
+
+    private boolean isSymbol(char c) {
+        return !atEnd() && tokens.isSymbol(pos, c);
+    }
+
+    private boolean acceptSymbol(char c) {
+        if (!isSymbol(c)) return false;
+        pos++;
+        return true;
+    }
+
+    private int line() {
+        return tokens.line(pos);
+    }
+
+    private int column() {
+        return tokens.column(pos);
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String path : args) {
+            HtParser parser = new HtParser(Files.readString(Path.of(path)));
+            Ast.Program program = parser.parseProgram();
+            System.out.println("=== " + path + " ===");
+            System.out.println(program);
+            for (Diagnostic d : parser.diagnostics()) System.out.println(d);
+        }
+    }
+}
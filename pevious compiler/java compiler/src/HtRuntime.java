@@ -0,0 +1,133 @@
+// Helpers shared by the engines that run compiled programs. Code generated by
+// JvmCompiler calls the public static methods here directly.
+public final class HtRuntime {
+
+    private HtRuntime() {
+    }
+
+    // Whole numbers print without a trailing ".0", like the original interpreter
+    public static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    // Same text as format(double) gives for the same value
+    public static String format(long value) {
+        if (value > -1e15 && value < 1e15) return Long.toString(value);
+        return Double.toString(value);
+    }
+
+    public static String format(Object value) {
+        if (value instanceof Double) return format(((Double) value).doubleValue());
+        return String.valueOf(value);
+    }
+
+    public static void publish(OutputSink out, double value) {
+        out.publish("Output → " + format(value));
+    }
+
+    public static void publish(OutputSink out, long value) {
+        out.publish("Output → " + format(value));
+    }
+
+    public static void publish(OutputSink out, String value) {
+        out.publish("Output → " + value);
+    }
+
+    public static double divide(double left, double right, int line) {
+        if (right == 0) throw new HtRuntimeException(line, "Division by zero.");
+        return left / right;
+    }
+
+    // Whole-number arithmetic, as TypeInference defines it. A long result
+    // below 2^53 in magnitude is what double arithmetic gives too; past that
+    // the result is rounded through a double, as on the vm.
+    private static final long EXACT = 1L << 53;
+
+    public static long add(long left, long right, int line) {
+        long result = left + right;
+        if (((left ^ result) & (right ^ result)) >= 0 && result >= -EXACT && result <= EXACT) return result;
+        return (long) whole((double) left + (double) right, line);
+    }
+
+    public static long subtract(long left, long right, int line) {
+        long result = left - right;
+        if (((left ^ right) & (left ^ result)) >= 0 && result >= -EXACT && result <= EXACT) return result;
+        return (long) whole((double) left - (double) right, line);
+    }
+
+    public static long multiply(long left, long right, int line) {
+        long result = left * right;
+        if (Math.multiplyHigh(left, right) == result >> 63 && result >= -EXACT && result <= EXACT) return result;
+        return (long) whole((double) left * (double) right, line);
+    }
+
+    public static long negate(long value, int line) {
+        if (value == Long.MIN_VALUE) throw new HtRuntimeException(line, "Whole number overflow.");
+        return -value;
+    }
+
+    // The result of whole-number arithmetic done in doubles, checked against
+    // the range a long can hold
+    public static double whole(double value, int line) {
+        if (value >= -TypeInference.WHOLE_LIMIT && value < TypeInference.WHOLE_LIMIT) return value;
+        throw new HtRuntimeException(line, "Whole number overflow.");
+    }
+
+    // Literal arrays are stored in generated classes as text: comma separated
+    // numbers, or newline separated strings (a string literal never holds one)
+    public static void fill(double[] array, int offset, String literals) {
+        int start = 0;
+        for (int i = 0; i <= literals.length(); i++) {
+            if (i == literals.length() || literals.charAt(i) == ',') {
+                array[offset++] = Numbers.parse(literals, start, i);
+                start = i + 1;
+            }
+        }
+    }
+
+    public static void fill(long[] array, int offset, String literals) {
+        int start = 0;
+        for (int i = 0; i <= literals.length(); i++) {
+            if (i == literals.length() || literals.charAt(i) == ',') {
+                array[offset++] = Long.parseLong(literals, start, i, 10);
+                start = i + 1;
+            }
+        }
+    }
+
+    public static void fill(String[] array, int offset, String literals) {
+        int start = 0;
+        for (int i = 0; i <= literals.length(); i++) {
+            if (i == literals.length() || literals.charAt(i) == '\n') {
+                array[offset++] = literals.substring(start, i);
+                start = i + 1;
+            }
+        }
+    }
+
+    // An index has to be a whole number inside the array; 1.7 or NaN is an
+    // error, just as 3 is for an array of three
+    private static int index(int length, double index, String name, int line) {
+        if (index != Math.floor(index)) {
+            throw new HtRuntimeException(line, "Index " + format(index) + " for array '" + name + "' is not a whole number.");
+        }
+        if (index < 0 || index >= length) throw new HtRuntimeException(line, "Index out of bounds for array '" + name + "'.");
+        return (int) index;
+    }
+
+    public static double element(double[] array, double index, String name, int line) {
+        if (array == null) throw new HtRuntimeException(line, "Array '" + name + "' not found.");
+        return array[index(array.length, index, name, line)];
+    }
+
+    public static long element(long[] array, double index, String name, int line) {
+        if (array == null) throw new HtRuntimeException(line, "Array '" + name + "' not found.");
+        return array[index(array.length, index, name, line)];
+    }
+
+    public static String element(String[] array, double index, String name, int line) {
+        if (array == null) throw new HtRuntimeException(line, "Array '" + name + "' not found.");
+        return array[index(array.length, index, name, line)];
+    }
+}
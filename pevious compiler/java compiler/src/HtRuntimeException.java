@@ -0,0 +1,14 @@
+// Error raised while a compiled program runs
+public class HtRuntimeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final int line;
+
+    public HtRuntimeException(int line, String message) {
+        super("Error on line " + line + ": " + message);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,58 @@
+import java.nio.charset.*;
+
+// Embedding API: compile a .ht source once, then run it as often as needed
+// from as many threads as needed. An HtScript never changes after compile().
+// Every run gets an execution context of its own - a VirtualMachine with its
+// stacks and globals on the vm engine, an instance of the generated class
+// holding the globals on the jvm engine - so concurrent runs share nothing
+// but the read-only program. The legacy line engine parses while it runs and
+// keeps that state in its Parser and Lexer, so it is not offered here.
+//
+//   HtScript script = HtScript.compile(source, "jvm");
+//   script.run(sink);    // any thread, one sink per run
+//
+// A run can be given an ExecutionBudget to bound its steps, call depth,
+// array elements and time, and to cancel it from another thread.
+public final class HtScript {
+
+    private final String engine;
+    private final BytecodeProgram bytecode;   // set on the vm engine
+    private final JvmProgram jvm;             // set on the jvm engine
+
+    private HtScript(String engine, BytecodeProgram bytecode, JvmProgram jvm) {
+        this.engine = engine;
+        this.bytecode = bytecode;
+        this.jvm = jvm;
+    }
+
+    public static HtScript compile(String source, String engine) {
+        return compile(SourceText.of(source.getBytes(StandardCharsets.UTF_8)), engine, false);
+    }
+
+    // Throws CompileException with every diagnostic if the source has errors
+    public static HtScript compile(SourceText source, String engine, boolean optimize) {
+        if (!engine.equals("vm") && !engine.equals("jvm")) {
+            throw new IllegalArgumentException("Unknown engine '" + engine + "', expected vm or jvm");
+        }
+        Ast.Program program = Optimizer.parse(source, optimize, null);
+        if (engine.equals("jvm")) return new HtScript(engine, null, JvmProgram.compile(program));
+        return new HtScript(engine, BytecodeCompiler.compile(program), null);
+    }
+
+    public String engine() {
+        return engine;
+    }
+
+    // Runs the script from the start with fresh globals. Safe to call from
+    // several threads at once as long as each passes its own sink; a runtime
+    // error is thrown as HtRuntimeException and leaves other runs unaffected.
+    public void run(OutputSink out) {
+        run(out, ExecutionBudget.defaults());
+    }
+
+    // Throws BudgetExceededException when the budget runs out or is cancelled
+    public void run(OutputSink out, ExecutionBudget budget) {
+        if (jvm != null) jvm.run(out, budget);
+        else new VirtualMachine(bytecode, out, budget).run();
+    }
+}
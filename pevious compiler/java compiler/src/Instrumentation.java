@@ -0,0 +1,109 @@
+import java.io.*;
+import java.util.*;
+
+// Latency histograms per phase (lex, parse, compile, execute) and, for the
+// legacy line engine, per statement kind. Recording is off by default and
+// can be switched on or off at any time with setEnabled; while it is off an
+// engine pays one volatile read per statement. Callers check isEnabled()
+// before calling System.nanoTime(), so a disabled run does not even read the
+// clock. The histograms are only built once something is recorded or
+// reported, so a run that never switches recording on never creates them.
+public final class Instrumentation {
+
+    public enum Phase {
+        LEX, PARSE, COMPILE, EXECUTE
+    }
+
+    public enum StatementKind {
+        ASSIGNMENT, EXPRESSION, PUBLISH, ARRAY_DECL, CALL, OTHER
+    }
+
+    private static volatile boolean enabled;
+
+    // Initialized by the JVM on first use, which is thread-safe without a lock
+    private static final class Histograms {
+        static final LatencyHistogram[] PHASES = new LatencyHistogram[Phase.values().length];
+        static final LatencyHistogram[] KINDS = new LatencyHistogram[StatementKind.values().length];
+        // Statement.Kind ordinal to the StatementKind it is reported under
+        static final StatementKind[] KIND_OF = new StatementKind[Statement.Kind.values().length];
+
+        static {
+            for (Phase p : Phase.values()) PHASES[p.ordinal()] = new LatencyHistogram(p.name().toLowerCase(Locale.ROOT));
+            for (StatementKind k : StatementKind.values()) KINDS[k.ordinal()] = new LatencyHistogram(k.name().toLowerCase(Locale.ROOT));
+            Arrays.fill(KIND_OF, StatementKind.OTHER);
+            KIND_OF[Statement.Kind.NUMBER_ASSIGN.ordinal()] = StatementKind.ASSIGNMENT;
+            KIND_OF[Statement.Kind.STRING_ASSIGN.ordinal()] = StatementKind.ASSIGNMENT;
+            KIND_OF[Statement.Kind.EXPRESSION.ordinal()] = StatementKind.EXPRESSION;
+            KIND_OF[Statement.Kind.PUBLISH.ordinal()] = StatementKind.PUBLISH;
+            KIND_OF[Statement.Kind.PUBLISH_INDEX.ordinal()] = StatementKind.PUBLISH;
+            KIND_OF[Statement.Kind.NUMBER_ARRAY.ordinal()] = StatementKind.ARRAY_DECL;
+            KIND_OF[Statement.Kind.STRING_ARRAY.ordinal()] = StatementKind.ARRAY_DECL;
+            KIND_OF[Statement.Kind.CALL.ordinal()] = StatementKind.CALL;
+        }
+    }
+
+    private Instrumentation() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static void record(Phase phase, long nanos) {
+        Histograms.PHASES[phase.ordinal()].record(nanos);
+    }
+
+    // Execution time of one legacy statement, counted under its kind
+    public static void record(Statement.Kind kind, long nanos) {
+        Histograms.KINDS[Histograms.KIND_OF[kind.ordinal()].ordinal()].record(nanos);
+    }
+
+    public static void reset() {
+        for (LatencyHistogram h : Histograms.PHASES) h.reset();
+        for (LatencyHistogram h : Histograms.KINDS) h.reset();
+    }
+
+    // One row per histogram that recorded anything, times in microseconds
+    public static void printSummary(PrintStream out) {
+        out.printf("%n%-22s %10s %10s %10s %10s %10s%n", "Latency (us)", "count", "mean", "p50", "p99", "max");
+        printRows(out, "phase", Histograms.PHASES);
+        printRows(out, "statement", Histograms.KINDS);
+    }
+
+    private static void printRows(PrintStream out, String group, LatencyHistogram[] histograms) {
+        for (LatencyHistogram h : histograms) {
+            if (h.count() == 0) continue;
+            out.printf(Locale.ROOT, "%-22s %10d %10.3f %10.3f %10.3f %10.3f%n", group + "." + h.name(), h.count(),
+                h.mean() / 1e3, h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3, h.max() / 1e3);
+        }
+    }
+
+    // {"phases":{"lex":{"count":..,"mean_ns":..,"p50_ns":..,"p99_ns":..,"max_ns":..},..},"statements":{..}}
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\"phases\":");
+        appendJson(sb, Histograms.PHASES);
+        sb.append(",\"statements\":");
+        appendJson(sb, Histograms.KINDS);
+        return sb.append('}').toString();
+    }
+
+    private static void appendJson(StringBuilder sb, LatencyHistogram[] histograms) {
+        sb.append('{');
+        boolean first = true;
+        for (LatencyHistogram h : histograms) {
+            if (h.count() == 0) continue;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(h.name()).append("\":{\"count\":").append(h.count())
+                .append(",\"mean_ns\":").append(Math.round(h.mean()))
+                .append(",\"p50_ns\":").append(h.percentile(0.50))
+                .append(",\"p99_ns\":").append(h.percentile(0.99))
+                .append(",\"max_ns\":").append(h.max()).append('}');
+        }
+        sb.append('}');
+    }
+}
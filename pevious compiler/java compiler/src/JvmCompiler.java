@@ -0,0 +1,511 @@
+import java.util.*;
+
+// Turns a resolved Ast.Program into a JVM class: each func becomes a method
+// taking its parameters, the main block becomes void main(), and the globals
+// become fields. Everything is per instance, the OutputSink included, so one
+// loaded class runs on many threads at once, each run on an instance of its
+// own. Local slot 0 always holds this; function variables map one to one onto
+// the JVM local variable slots after it. suppose and loopwhile are laid out
+// from their ControlFlowGraph as JVM branches. The run's ExecutionBudget is
+// a field too: each loop iteration and each call takes a step from it, calls
+// also go through its depth check and array declarations through its
+// element count. Numbers that TypeInference proves whole are longs, in
+// locals, fields, parameters and long[] arrays alike, and everything else
+// is a double.
+public class JvmCompiler implements Ast.StmtVisitor<Void>, Ast.ExprVisitor<Void> {
+
+    private static final String RUNTIME = "HtRuntime";
+    static final String SINK = "LOutputSink;";
+    static final String SINK_FIELD = "$out";     // not a valid .ht name, so no global can clash
+    private static final String BUDGET = "ExecutionBudget";
+    private static final String BUDGET_FIELD = "$budget";
+    static final String MAIN_DESCRIPTOR = "()V";
+    private static final int MAIN_PART_SIZE = 32 * 1024;
+    private static final int MAX_CONSTANTS = 65534;
+    private static final int LITERAL_CHUNK = 16 * 1024;   // chars, well inside the 64 KB constant limit
+
+    private final Resolver.Result resolved;
+    private final ClassFileWriter cw;
+    private final String self;                   // descriptor of the class being written
+    private final TypeInference types;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    private ClassFileWriter.Code code;
+    private ClassFileWriter.Code staticInit;   // builds the literal array templates
+    private int literalArrays;
+    private final Map<Resolver.Binding, Integer> jvmSlots = new IdentityHashMap<>();
+    private int nextSlot;
+
+    private JvmCompiler(Resolver.Result resolved, String className) {
+        this.resolved = resolved;
+        this.cw = new ClassFileWriter(className);
+        this.self = "L" + className + ";";
+        this.types = TypeInference.infer(resolved);
+    }
+
+    // Returns the class file bytes, or throws CompileException
+    public static byte[] compile(Ast.Program program, String className) {
+        return compile(Resolver.resolve(program), className);
+    }
+
+    public static byte[] compile(Resolver.Result resolved, String className) {
+        return new JvmCompiler(resolved, className).compileClass();
+    }
+
+    private byte[] compileClass() {
+        Ast.Program program = resolved.program;
+        for (Resolver.Binding g : resolved.globals.bindings.values()) {
+            cw.addField(ClassFileWriter.ACC_PRIVATE, g.name, descriptor(g));
+        }
+        cw.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, SINK_FIELD, SINK);
+        cw.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, BUDGET_FIELD, "L" + BUDGET + ";");
+
+        ClassFileWriter.Code init = cw.newCode();
+        init.aload(0);
+        init.invokeSpecial("java/lang/Object", "<init>", "()V");
+        init.aload(0);
+        init.aload(1);
+        init.putField(cw.className(), SINK_FIELD, SINK);
+        init.aload(0);
+        init.aload(2);
+        init.putField(cw.className(), BUDGET_FIELD, "L" + BUDGET + ";");
+        init.returnVoid();
+        init.reserveLocals(3);
+        cw.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "(" + SINK + "L" + BUDGET + ";)V", init);
+
+        // main keeps all of its state in fields, so a long main block is split
+        // into main$0, main$1, ... to stay under the 64 KB method limit
+        ClassFileWriter.Code entry = cw.newCode();
+        int part = 0;
+        for (int i = 0; i < program.statements.size(); ) {
+            code = cw.newCode();
+            code.setFrameLocals(List.of(self));
+            while (i < program.statements.size() && code.position() < MAIN_PART_SIZE) {
+                program.statements.get(i++).accept(this);
+            }
+            code.returnVoid();
+            code.reserveLocals(1);
+            if (!code.fits()) error(program.statements.get(i - 1), "Statement is too large for the jvm engine; use the vm engine");
+            String name = "main$" + part++;
+            cw.addMethod(ClassFileWriter.ACC_PRIVATE, name, MAIN_DESCRIPTOR, code);
+            entry.aload(0);
+            entry.invokeSpecial(cw.className(), name, MAIN_DESCRIPTOR);
+        }
+        entry.returnVoid();
+        entry.reserveLocals(1);
+        cw.addMethod(ClassFileWriter.ACC_PUBLIC, "main", MAIN_DESCRIPTOR, entry);
+
+        for (Ast.Function f : program.functions) {
+            code = cw.newCode();
+            nextSlot = 1;
+            Resolver.Frame frame = resolved.frame(f);
+            for (Resolver.Binding p : frame.params) jvmSlot(p);
+            if (f.body.stream().anyMatch(s -> s instanceof Ast.If || s instanceof Ast.While)) initLocals(frame);
+            for (Ast.Stmt s : f.body) s.accept(this);
+            code.returnVoid();
+            code.reserveLocals(nextSlot);
+            if (!code.fits()) error(f, "Function '" + f.name + "' is too large to compile");
+            cw.addMethod(ClassFileWriter.ACC_PRIVATE, methodName(f), descriptor(f), code);
+        }
+
+        if (staticInit != null) {
+            staticInit.returnVoid();
+            cw.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V", staticInit);
+        }
+
+        // Every distinct literal, name and method part is a constant pool entry
+        if (cw.constantCount() > MAX_CONSTANTS) {
+            diagnostics.add(new Diagnostic("Error", 1, 1, "Program needs " + cw.constantCount()
+                    + " class file constants, more than the jvm engine can hold; use the vm engine"));
+        }
+        if (!diagnostics.isEmpty()) throw new CompileException(diagnostics);
+        return cw.toBytes();
+    }
+
+    private int jvmSlot(Resolver.Binding b) {
+        Integer slot = jvmSlots.get(b);
+        if (slot == null) {
+            slot = nextSlot;
+            nextSlot += b.type.isNumber() ? 2 : 1;
+            jvmSlots.put(b, slot);
+        }
+        return slot;
+    }
+
+    // A branch target's frame gives every local a type, so in a function with
+    // branches the locals start out as 0 or null instead of at their first
+    // declaration
+    private void initLocals(Resolver.Frame frame) {
+        List<String> locals = new ArrayList<>(List.of(self));
+        for (Resolver.Binding b : frame.bindings.values()) {
+            int slot = jvmSlot(b);
+            locals.add(descriptor(b));
+            if (frame.params.contains(b)) continue;
+            if (b.type.isNumber() && types.isWhole(b)) {
+                code.pushLong(0);
+                code.lstore(slot);
+            } else if (b.type.isNumber()) {
+                code.pushDouble(0);
+                code.dstore(slot);
+            } else {
+                code.aconstNull();
+                code.astore(slot);
+            }
+        }
+        code.setFrameLocals(locals);
+    }
+
+    // No .ht name contains a '$', so with the prefix a function called wait,
+    // notify or finalize cannot override a method of Object, and one called
+    // main cannot clash with the entry point
+    private static String methodName(Ast.Function f) {
+        return "f$" + f.name;
+    }
+
+    private String descriptor(Ast.Function f) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Resolver.Binding p : resolved.frame(f).params) sb.append(descriptor(p));
+        return sb.append(")V").toString();
+    }
+
+    private String descriptor(Resolver.Binding b) {
+        if (!types.isWhole(b)) return b.type.descriptor;
+        return b.type == ValueType.NUMBER ? "J" : "[J";
+    }
+
+    private void load(Resolver.Binding b) {
+        if (b.global) {
+            code.aload(0);
+            code.getField(cw.className(), b.name, descriptor(b));
+        } else if (b.type.isNumber() && types.isWhole(b)) {
+            code.lload(jvmSlot(b));
+        } else if (b.type.isNumber()) {
+            code.dload(jvmSlot(b));
+        } else {
+            code.aload(jvmSlot(b));
+        }
+    }
+
+    // A global's value goes into a field of this, which has to be on the
+    // stack below the value
+    private void beginStore(Resolver.Binding b) {
+        if (b.global) code.aload(0);
+    }
+
+    private void store(Resolver.Binding b) {
+        if (b.global) {
+            code.putField(cw.className(), b.name, descriptor(b));
+        } else if (b.type.isNumber() && types.isWhole(b)) {
+            code.lstore(jvmSlot(b));
+        } else if (b.type.isNumber()) {
+            code.dstore(jvmSlot(b));
+        } else {
+            code.astore(jvmSlot(b));
+        }
+    }
+
+    // ------------------------------------------------------------- statements
+
+    public Void visitDeclare(Ast.Declare s) {
+        Resolver.Binding target = resolved.binding(s);
+        beginStore(target);
+        value(s.value, target);
+        store(target);
+        return null;
+    }
+
+    public Void visitDeclareArray(Ast.DeclareArray s) {
+        boolean numbers = s.type == Ast.Type.NUMBER;
+        Resolver.Binding target = resolved.binding(s);
+        boolean whole = types.isWhole(target);
+        budget();
+        code.pushInt(s.elements.size());
+        code.pushInt(s.line);
+        code.invokeVirtual(BUDGET, "allocate", "(II)V");
+        beginStore(target);
+        Object literals = s.literals();
+        if (literals != null) {
+            // All literals: copy a template built once by <clinit>, which keeps
+            // huge literal arrays out of the method body
+            String descriptor = descriptor(target);
+            if (whole) {
+                double[] values = (double[]) literals;
+                long[] longs = new long[values.length];
+                for (int i = 0; i < values.length; i++) longs[i] = (long) values[i];
+                literals = longs;
+            }
+            code.getStatic(cw.className(), literalArray(literals, descriptor), descriptor);
+            code.invokeVirtual(descriptor, "clone", "()Ljava/lang/Object;");
+            code.checkCast(descriptor);
+            store(target);
+            return null;
+        }
+        code.pushInt(s.elements.size());
+        if (whole) code.newLongArray();
+        else if (numbers) code.newDoubleArray();
+        else code.newArray("java/lang/String");
+        for (int i = 0; i < s.elements.size(); i++) {
+            code.dup();
+            code.pushInt(i);
+            if (whole) {
+                s.elements.get(i).accept(this);
+                code.lastore();
+            } else if (numbers) {
+                number(s.elements.get(i));
+                code.dastore();
+            } else {
+                s.elements.get(i).accept(this);
+                code.aastore();
+            }
+        }
+        store(target);
+        return null;
+    }
+
+    // Pushes this run's ExecutionBudget
+    private void budget() {
+        code.aload(0);
+        code.getField(cw.className(), BUDGET_FIELD, "L" + BUDGET + ";");
+    }
+
+    private void step(int line) {
+        budget();
+        code.pushInt(line);
+        code.invokeVirtual(BUDGET, "step", "(I)V");
+    }
+
+    // Adds a static field holding the array and the <clinit> code that fills it
+    // from chunks of literal text
+    private String literalArray(Object literals, String descriptor) {
+        String field = "$literals" + literalArrays++;
+        cw.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL, field, descriptor);
+        if (staticInit == null) staticInit = cw.newCode();
+
+        boolean numbers = literals instanceof double[] || literals instanceof long[];
+        int length = literals instanceof long[] longs ? longs.length
+                : numbers ? ((double[]) literals).length : ((String[]) literals).length;
+        staticInit.pushInt(length);
+        if (literals instanceof long[]) staticInit.newLongArray();
+        else if (numbers) staticInit.newDoubleArray();
+        else staticInit.newArray("java/lang/String");
+
+        StringBuilder chunk = new StringBuilder();
+        int chunkStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (i > chunkStart) chunk.append(numbers ? ',' : '\n');
+            if (literals instanceof long[] longs) chunk.append(longs[i]);
+            else if (numbers) chunk.append(literal(((double[]) literals)[i]));
+            else chunk.append(((String[]) literals)[i]);
+            if (chunk.length() >= LITERAL_CHUNK || i == length - 1) {
+                staticInit.dup();
+                staticInit.pushInt(chunkStart);
+                staticInit.pushString(chunk.toString());
+                staticInit.invokeStatic(RUNTIME, "fill", "(" + descriptor + "ILjava/lang/String;)V");
+                chunk.setLength(0);
+                chunkStart = i + 1;
+            }
+        }
+        staticInit.putStatic(cw.className(), field, descriptor);
+        return field;
+    }
+
+    // Shortest text that parses back to exactly the same double
+    private static String literal(double value) {
+        if (value == (long) value && (value != 0 || 1 / value > 0)) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    public Void visitPublish(Ast.Publish s) {
+        code.aload(0);
+        code.getField(cw.className(), SINK_FIELD, SINK);
+        s.value.accept(this);
+        if (types.isWhole(s.value)) {
+            code.invokeStatic(RUNTIME, "publish", "(" + SINK + "J)V");
+        } else if (resolved.type(s.value).isNumber()) {
+            code.invokeStatic(RUNTIME, "publish", "(" + SINK + "D)V");
+        } else {
+            code.invokeStatic(RUNTIME, "publish", "(" + SINK + "Ljava/lang/String;)V");
+        }
+        return null;
+    }
+
+    public Void visitCall(Ast.Call s) {
+        step(s.line);
+        budget();
+        code.pushInt(s.line);
+        code.invokeVirtual(BUDGET, "enter", "(I)V");
+        code.aload(0);
+        Ast.Function f = resolved.program.functions.get(resolved.functionIndex.get(s.name));
+        List<Resolver.Binding> params = resolved.frame(f).params;
+        for (int i = 0; i < s.args.size(); i++) value(s.args.get(i), params.get(i));
+        code.invokeSpecial(cw.className(), methodName(f), descriptor(f));
+        budget();
+        code.invokeVirtual(BUDGET, "leave", "()V");
+        return null;
+    }
+
+    public Void visitIf(Ast.If s) {
+        lower(s);
+        return null;
+    }
+
+    public Void visitWhile(Ast.While s) {
+        lower(s);
+        return null;
+    }
+
+    private void lower(Ast.Stmt s) {
+        ControlFlowGraph graph = ControlFlowGraph.build(List.of(s));
+        ClassFileWriter.Label[] labels = new ClassFileWriter.Label[graph.blocks.size()];
+        for (int i = 0; i < labels.length; i++) labels[i] = code.newLabel();
+        ClassFileWriter.Label end = code.newLabel();
+        graph.emit(new ControlFlowGraph.Emitter() {
+            public void label(ControlFlowGraph.Block block) {
+                code.mark(labels[block.index]);
+                if (block.loop) step(block.line);
+            }
+
+            public void statement(Ast.Stmt statement) {
+                statement.accept(JvmCompiler.this);
+            }
+
+            public void jump(ControlFlowGraph.Block to, int line) {
+                code.goTo(to == null ? end : labels[to.index]);
+            }
+
+            // dcmpg makes NaN compare as greater and dcmpl as less, whichever
+            // keeps < <= > >= and == false for NaN, as in Java; two whole
+            // numbers compare with lcmp, where there is no NaN
+            public void branch(Ast.Condition condition, boolean when, ControlFlowGraph.Block to) {
+                boolean whole = types.isWhole(condition.left) && types.isWhole(condition.right);
+                if (whole) {
+                    condition.left.accept(JvmCompiler.this);
+                    condition.right.accept(JvmCompiler.this);
+                } else {
+                    number(condition.left);
+                    number(condition.right);
+                }
+                ClassFileWriter.Label target = to == null ? end : labels[to.index];
+                switch (condition.op) {
+                    case "<":
+                        compare(whole, true);
+                        if (when) code.ifLt(target); else code.ifGe(target);
+                        break;
+                    case "<=":
+                        compare(whole, true);
+                        if (when) code.ifLe(target); else code.ifGt(target);
+                        break;
+                    case ">":
+                        compare(whole, false);
+                        if (when) code.ifGt(target); else code.ifLe(target);
+                        break;
+                    case ">=":
+                        compare(whole, false);
+                        if (when) code.ifGe(target); else code.ifLt(target);
+                        break;
+                    case "==":
+                        compare(whole, false);
+                        if (when) code.ifEq(target); else code.ifNe(target);
+                        break;
+                    default:
+                        compare(whole, false);
+                        if (when) code.ifNe(target); else code.ifEq(target);
+                        break;
+                }
+            }
+        });
+        code.mark(end);
+    }
+
+    private void compare(boolean whole, boolean nanGreater) {
+        if (whole) code.lcmp();
+        else if (nanGreater) code.dcmpg();
+        else code.dcmpl();
+    }
+
+    // ------------------------------------------------------------ expressions
+
+    // Pushes a number as a double, widening it if it is whole
+    private void number(Ast.Expr e) {
+        e.accept(this);
+        if (types.isWhole(e)) code.l2d();
+    }
+
+    // Pushes a value the way the variable it is stored in holds it
+    private void value(Ast.Expr e, Resolver.Binding target) {
+        if (target.type.isNumber() && !types.isWhole(target)) number(e);
+        else e.accept(this);
+    }
+
+    public Void visitNumber(Ast.NumberLiteral e) {
+        if (types.isWhole(e)) code.pushLong((long) e.value);
+        else code.pushDouble(e.value);
+        return null;
+    }
+
+    public Void visitString(Ast.StringLiteral e) {
+        code.pushString(e.value);
+        return null;
+    }
+
+    public Void visitVariable(Ast.Variable e) {
+        load(resolved.binding(e));
+        return null;
+    }
+
+    public Void visitIndex(Ast.Index e) {
+        Resolver.Binding array = resolved.binding(e);
+        load(array);
+        number(e.index);
+        code.pushString(e.name);
+        code.pushInt(e.line);
+        if (types.isWhole(array)) {
+            code.invokeStatic(RUNTIME, "element", "([JDLjava/lang/String;I)J");
+        } else if (array.type == ValueType.NUMBER_ARRAY) {
+            code.invokeStatic(RUNTIME, "element", "([DDLjava/lang/String;I)D");
+        } else {
+            code.invokeStatic(RUNTIME, "element", "([Ljava/lang/String;DLjava/lang/String;I)Ljava/lang/String;");
+        }
+        return null;
+    }
+
+    public Void visitBinary(Ast.Binary e) {
+        if (types.isWhole(e)) {
+            e.left.accept(this);
+            e.right.accept(this);
+            code.pushInt(e.line);
+            String method = e.op == '+' ? "add" : e.op == '-' ? "subtract" : "multiply";
+            code.invokeStatic(RUNTIME, method, "(JJI)J");
+            return null;
+        }
+        number(e.left);
+        number(e.right);
+        switch (e.op) {
+            case '+': code.dadd(); break;
+            case '-': code.dsub(); break;
+            case '*': code.dmul(); break;
+            case '/':
+                code.pushInt(e.line);
+                code.invokeStatic(RUNTIME, "divide", "(DDI)D");
+                break;
+            default: error(e, "Unknown operator '" + e.op + "'");
+        }
+        return null;
+    }
+
+    public Void visitNegate(Ast.Negate e) {
+        if (types.isWhole(e)) {
+            e.operand.accept(this);
+            code.pushInt(e.line);
+            code.invokeStatic(RUNTIME, "negate", "(JI)J");
+            return null;
+        }
+        number(e.operand);
+        code.dneg();
+        return null;
+    }
+
+    private void error(Ast.Node node, String message) {
+        diagnostics.add(new Diagnostic("Error", node.line, node.column, message));
+    }
+}
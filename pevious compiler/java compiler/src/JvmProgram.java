@@ -0,0 +1,100 @@
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// A .ht program compiled by JvmCompiler and loaded as a hidden class, so
+// HotSpot can JIT-compile it like any other Java code. The class is loaded
+// once; every run creates an instance of it holding that run's globals and
+// ExecutionBudget, so any number of threads can run the same JvmProgram at
+// once.
+public class JvmProgram {
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    public final String className;
+    public final byte[] classBytes;
+    private final MethodHandle create;   // (OutputSink, ExecutionBudget)Object
+    private final MethodHandle main;     // (Object)void
+
+    private JvmProgram(String className, byte[] classBytes, MethodHandle create, MethodHandle main) {
+        this.className = className;
+        this.classBytes = classBytes;
+        this.create = create;
+        this.main = main;
+    }
+
+    public static JvmProgram compile(Ast.Program program) {
+        boolean timed = Instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        String className = "HtProgram" + counter.incrementAndGet();
+        JvmProgram compiled = load(className, JvmCompiler.compile(program, className));
+        if (timed) Instrumentation.record(Instrumentation.Phase.COMPILE, System.nanoTime() - start);
+        return compiled;
+    }
+
+    // Defines a class JvmCompiler wrote earlier, e.g. one read back from
+    // CompileCache. Hidden classes get a unique suffix, so the same name can
+    // be loaded more than once.
+    public static JvmProgram load(String className, byte[] bytes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            Class<?> type = lookup.lookupClass();
+            MethodHandle create = lookup.findConstructor(type, MethodType.methodType(void.class, OutputSink.class, ExecutionBudget.class))
+                .asType(MethodType.methodType(Object.class, OutputSink.class, ExecutionBudget.class));
+            MethodHandle main = lookup.findVirtual(type, "main", MethodType.methodType(void.class))
+                .asType(MethodType.methodType(void.class, Object.class));
+            return new JvmProgram(className, bytes, create, main);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("Generated class " + className + " could not be loaded", e);
+        } catch (LinkageError e) {
+            // The class file was rejected: a compiler bug, or cache bytes from
+            // another version. Either way the vm engine can still run it.
+            throw new LoadFailure(List.of(new Diagnostic("Error", 1, 1,
+                "The jvm engine could not load the compiled program (" + e + "); run it with the vm engine")));
+        }
+    }
+
+    // A class the JVM refused, which says nothing about the program itself,
+    // so CompileCache does not keep it like other compile errors
+    public static final class LoadFailure extends CompileException {
+        private static final long serialVersionUID = 1L;
+
+        LoadFailure(List<Diagnostic> diagnostics) {
+            super(diagnostics);
+        }
+    }
+
+    public void run() {
+        run(OutputSink.console());
+    }
+
+    public void run(OutputSink out) {
+        run(out, ExecutionBudget.defaults());
+    }
+
+    public void run(OutputSink out, ExecutionBudget budget) {
+        boolean timed = Instrumentation.isEnabled();
+        long start = timed ? System.nanoTime() : 0;
+        budget.start();
+        try {
+            Object instance = (Object) create.invokeExact(out, budget);
+            main.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        } finally {
+            if (timed) Instrumentation.record(Instrumentation.Phase.EXECUTE, System.nanoTime() - start);
+        }
+    }
+
+    // Writes the generated class file so it can be inspected with javap
+    public Path dump(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(className + ".class");
+        Files.write(file, classBytes);
+        return file;
+    }
+}
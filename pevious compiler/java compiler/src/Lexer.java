@@ -1,297 +1,410 @@
 import java.util.*;
-import java.util.regex.*;
 
 public class Lexer {
 
-    private static final Pattern ALPHAN_VAR = Pattern.compile("Alphan\\s+(\\w+)\\s*=\\s*\"([^\"]*)\";");
-    private static final Pattern NUMBER_VAR = Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\d+);");
-    private static final Pattern EXPRESSION_VAR = Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\w+)\\s*([+\\-*/])\\s*(\\w+);");
-    private static final Pattern PRINT = Pattern.compile("publish\\((\\w+)\\);");
 private boolean insideMain = false;
 
-    // Updated patterns for arrays
-    private static final Pattern STRING_ARRAY = Pattern.compile("Alphan\\[\\]\\s+(\\w+)\\s*=\\s*\\{\\s*((\"[^\"]*\"\\s*,\\s*)*\"[^\"]*\")\\s*};?");
-    private static final Pattern NUMBER_ARRAY = Pattern.compile("number\\[\\]\\s+(\\w+)\\s*=\\s*\\{\\s*((\\d+(\\.\\d+)?\\s*,\\s*)*\\d+(\\.\\d+)?)\\s*};?");
-   private static final Pattern ARRAY_ACCESS = Pattern.compile("publish\\((\\w+)\\s*\\[\\s*(\\d+)\\s*]\\);");
-
-    private static final Pattern FUNC_DEF = Pattern.compile("func\\s+(\\w+)\\(([^)]*)\\)\\s*\\{");
-    private static final Pattern FUNC_END = Pattern.compile("}");
-    private static final Pattern FUNC_CALL = Pattern.compile("call\\s+(\\w+)\\(([^)]*)\\);");
-
-    private final Map<String, String> strVars = new HashMap<>();
-    private final Map<String, Integer> numVars = new HashMap<>();
-    private final Map<String, List<String>> stringArrays = new HashMap<>();
-    private final Map<String, List<Double>> numberArrays = new HashMap<>();
-private final Map<String, List<String>> functionParams = new HashMap<>();
-private final Map<String, List<String>> functionBody = new HashMap<>();
+    private final OutputSink out;
+    private final ExecutionBudget budget;   // every executed statement is a step, every call a level
+
+    // Globals and functions, each table holding at most maxGlobals names (see table())
+    private final Map<String, String> strVars;
+    private final Map<String, Integer> numVars;
+    private final Map<String, String[]> stringArrays;
+    private final Map<String, double[]> numberArrays;
+    private final Map<String, Function> functions;
 private boolean insideFunction = false;
 private String currentFunction = null;
-private List<String> currentFunctionLines = new ArrayList<>();
+private List<Statement> currentFunctionBody = new ArrayList<>();
+
+    // A function as it is kept between calls: parameters split into types and
+    // names, and the body already recognized, so a call only executes.
+    private static final class Function {
+        final String[] paramTypes;
+        final String[] paramNames;
+        List<Statement> body = List.of();
+
+        Function(List<String> params) {
+            paramTypes = new String[params.size()];
+            paramNames = new String[params.size()];
+            for (int i = 0; i < params.size(); i++) {
+                String param = params.get(i).trim();
+                int space = param.indexOf(' ');
+                if (space < 0) continue;
+                paramTypes[i] = param.substring(0, space);
+                paramNames[i] = param.substring(space + 1).trim();
+            }
+        }
+    }
+
+    // Activation record of one running call: its parameters and locals only.
+    // Globals are never copied; lookups fall through to them instead.
+    private static final class Frame {
+        final Map<String, Integer> numVars = new HashMap<>();
+        final Map<String, String> strVars = new HashMap<>();
+    }
+
+    // Frames are allocated once and reused, so a call costs the same no matter
+    // how many globals exist. depth == 0 means we are running top-level code.
+    private Frame[] frames = new Frame[8];
+    private int depth = 0;
+
+    public Lexer() {
+        this(OutputSink.console());
+    }
+
+    public Lexer(OutputSink out) {
+        this(out, ExecutionBudget.defaults());
+    }
+
+    public Lexer(OutputSink out, ExecutionBudget budget) {
+        this(out, budget, Integer.MAX_VALUE);
+    }
+
+    // The budget's timeout starts now and covers every line analyzed after.
+    // maxGlobals bounds each global table for runs that never end.
+    public Lexer(OutputSink out, ExecutionBudget budget, int maxGlobals) {
+        this.out = out;
+        this.budget = budget;
+        this.strVars = table(maxGlobals);
+        this.numVars = table(maxGlobals);
+        this.stringArrays = table(maxGlobals);
+        this.numberArrays = table(maxGlobals);
+        this.functions = table(maxGlobals);
+        budget.start();
+    }
+
+    // A global table. A bounded table never forgets a name: once it holds
+    // maxEntries, storing a new one throws instead, so the statement fails
+    // with an error and every name already stored keeps its value.
+    static <V> Map<String, V> table(int maxEntries) {
+        if (maxEntries == Integer.MAX_VALUE) return new HashMap<>();
+        return new BoundedTable<>(maxEntries);
+    }
+
+    private static final class BoundedTable<V> extends HashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maxEntries;
+
+        BoundedTable(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public V put(String key, V value) {
+            if (size() >= maxEntries && !containsKey(key)) {
+                throw new IllegalStateException("'" + key + "' not stored, the table already holds the "
+                    + maxEntries + " names --max-globals allows.");
+            }
+            return super.put(key, value);
+        }
+    }
 
    public void analyze(String line, int lineNumber) {
-    long start = System.nanoTime();  // Start timing
+    boolean timed = Instrumentation.isEnabled();
+    long start = timed ? System.nanoTime() : 0;
+
+    Statement statement = StatementRecognizer.recognize(line);
+    if (timed) {
+        long recognized = System.nanoTime();
+        Instrumentation.record(Instrumentation.Phase.LEX, recognized - start);
+        start = recognized;
+    }
 
-    line = line.trim();
-    if (line.equals("") || line.equals("begin main {") || line.equals("}")) {
-        long end = System.nanoTime();
-        printLineTime(lineNumber, start, end);
+    if (insideFunction) {
+        if (statement.kind == Statement.Kind.BLOCK_END) {
+            functions.get(currentFunction).body = currentFunctionBody;
+            if (out.isTracing()) out.trace("Line " + lineNumber + ": End of function '" + currentFunction + "'");
+            insideFunction = false;
+            currentFunction = null;
+        } else {
+            currentFunctionBody.add(statement);
+        }
         return;
     }
 
-    // 🔴 Universal semicolon enforcement block
-    if (!line.endsWith(";")) {
-        // Exempt certain lines from semicolon requirement
-        boolean isExempt = line.equals("begin main {") ||
-                           line.equals("}") ||
-                           line.startsWith("func ") ||
-                           insideFunction ||
-                           line.startsWith("call ") ||
-                           line.isEmpty() ||
-                           line.startsWith("//") ||
-                           FUNC_END.matcher(line).matches();
-
-        if (!isExempt && (
-                line.startsWith("number ") ||
-                line.startsWith("Alphan ") ||
-                line.startsWith("Alphan[") ||
-                line.startsWith("number[") ||
-                line.startsWith("publish("))) {
-
-            System.err.println(" Syntax Error on line " + lineNumber + ": Missing semicolon at end of statement.");
-            printLineTime(lineNumber, start, System.nanoTime());
+    execute(statement, lineNumber);
+    if (timed) Instrumentation.record(Instrumentation.Phase.EXECUTE, System.nanoTime() - start);
+    }
+
+    // Runs one recognized statement, either a top-level line or a line of a
+    // called function, and records its time under its kind. A call's time
+    // includes the statements of the function it ran.
+    private void execute(Statement statement, int lineNumber) {
+        budget.step(lineNumber);
+        if (!Instrumentation.isEnabled()) {
+            dispatch(statement, lineNumber);
             return;
         }
+        long start = System.nanoTime();
+        dispatch(statement, lineNumber);
+        Instrumentation.record(statement.kind, System.nanoTime() - start);
     }
 
-    // 🟢 The rest of your analyze() code continues below...
-    Matcher matcher;
+    private void dispatch(Statement statement, int lineNumber) {
+    String line = statement.text;
 
+    // 🔴 Universal semicolon enforcement block
+    if (!line.endsWith(";") && requiresSemicolon(statement, line)) {
+        out.error(" Syntax Error on line " + lineNumber + ": Missing semicolon at end of statement.");
+        return;
+    }
 
-        // Alphan string variable
-        if (line.startsWith("Alphan")) {
-            matcher = ALPHAN_VAR.matcher(line);
-            if (matcher.matches()) {
-                String varName = matcher.group(1);
-                String value = matcher.group(2);
-                strVars.put(varName, value);
-                System.out.println("Line " + lineNumber + ": Variable '" + varName + "' assigned value \"" + value + "\"");
-                printLineTime(lineNumber, start, System.nanoTime());
-                return;
+    // One specialised handler per statement kind, picked from the leading keyword
+    switch (statement.kind) {
+        case EMPTY:
+        case COMMENT:
+        case MAIN_START:
+        case BLOCK_END:
+            break;
+        case STRING_ASSIGN:
+            assignString(statement, lineNumber);
+            break;
+        case NUMBER_ASSIGN:
+            if (!assignNumber(statement, lineNumber)) unrecognized(line, lineNumber);
+            break;
+        case STRING_ARRAY:
+            declareStringArray(statement, lineNumber);
+            break;
+        case NUMBER_ARRAY:
+            declareNumberArray(statement, lineNumber);
+            break;
+        case FUNC_DEF:
+            defineFunction(statement, lineNumber);
+            return;
+        case CALL:
+            callFunction(statement, lineNumber);
+            return;
+        case PUBLISH_INDEX:
+            if (statement.parenthesized) publishElement(statement, lineNumber);
+            else out.error("Syntax Error on line " + lineNumber + ": Invalid publish statement.");
+            break;
+        case EXPRESSION:
+            evaluateExpression(statement, lineNumber);
+            break;
+        case PUBLISH:
+            // Function bodies also take the bare publish x; that Parser.executeFunctionLine runs
+            if (statement.parenthesized || depth > 0) publish(statement, lineNumber);
+            else out.error("Syntax Error on line " + lineNumber + ": Invalid publish statement.");
+            break;
+        case INVALID:
+            if ("publish".equals(statement.keyword)) {
+                out.error("Syntax Error on line " + lineNumber + ": Invalid publish statement.");
+            } else {
+                unrecognized(line, lineNumber);
             }
+            break;
+        default:
+            unrecognized(line, lineNumber);
+            break;
+    }
+    }
+
+    private boolean requiresSemicolon(Statement statement, String line) {
+        return "number".equals(statement.keyword) ||
+               "Alphan".equals(statement.keyword) ||
+               line.startsWith("publish(");
+    }
+
+    // Alphan string variable
+    private void assignString(Statement statement, int lineNumber) {
+        scopeStrVars().put(statement.name, statement.value);
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Variable '" + statement.name + "' assigned value \"" + statement.value + "\"");
+    }
+
+    // Number variable without arithmetic; only whole numbers are accepted here
+    private boolean assignNumber(Statement statement, int lineNumber) {
+        if (!StatementRecognizer.isDigits(statement.value)) return false;
+        int value = Integer.parseInt(statement.value);
+        scopeNumVars().put(statement.name, value);
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Number variable '" + statement.name + "' assigned value " + value);
+        return true;
+    }
+
+    private void declareStringArray(Statement statement, int lineNumber) {
+        String[] values = statement.items.toArray(new String[0]);
+        budget.allocate(values.length, lineNumber);
+        stringArrays.put(statement.name, values);
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": String array '" + statement.name + "' declared with " + values.length + " elements.");
+    }
+
+    // The recognizer has already parsed the literals into a double[]
+    private void declareNumberArray(Statement statement, int lineNumber) {
+        double[] values = statement.numbers;
+        budget.allocate(values.length, lineNumber);
+        numberArrays.put(statement.name, values);
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Number array '" + statement.name + "' declared with " + values.length + " elements.");
+    }
+
+    private void defineFunction(Statement statement, int lineNumber) {
+        List<String> paramList = statement.items;
+        functions.put(statement.name, new Function(paramList));
+        insideFunction = true;
+        currentFunction = statement.name;
+        currentFunctionBody = new ArrayList<>();
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Function '" + currentFunction + "' defined with parameters " + paramList);
+    }
+
+    private void callFunction(Statement statement, int lineNumber) {
+        String funcName = statement.name;
+        List<String> args = statement.items;
+
+        Function function = functions.get(funcName);
+        if (function == null) {
+            out.error("Error on line " + lineNumber + ": Function '" + funcName + "' not defined.");
+            return;
         }
 
-        // Number variable without arithmetic
-        if (line.startsWith("number") && !line.contains("+") && !line.contains("-") && !line.contains("*") && !line.contains("/")) {
-            matcher = NUMBER_VAR.matcher(line);
-            if (matcher.matches()) {
-                String varName = matcher.group(1);
-                int value = Integer.parseInt(matcher.group(2));
-                numVars.put(varName, value);
-                System.out.println("Line " + lineNumber + ": Number variable '" + varName + "' assigned value " + value);
-                printLineTime(lineNumber, start, System.nanoTime());
-                return;
-            }
+        if (args.size() != function.paramNames.length) {
+            out.error("Error on line " + lineNumber + ": Argument count mismatch for function '" + funcName + "'");
+            return;
         }
 
-        matcher = STRING_ARRAY.matcher(line);
-        if (matcher.matches()) {
-            String name = matcher.group(1);
-            String content = matcher.group(2);
-            String[] items = content.split("\\s*,\\s*");
-            List<String> values = new ArrayList<>();
-            for (String item : items) {
-                values.add(item.replace("\"", ""));
+        // Calls replay the body recursively, so the depth limit is what keeps
+        // a function that calls itself off the end of the Java stack
+        budget.enter(lineNumber);
+
+        // Arguments are evaluated in the caller's scope, then bound in a fresh frame
+        Frame frame = pushFrame();
+        for (int i = 0; i < args.size(); i++) {
+            String type = function.paramTypes[i], name = function.paramNames[i];
+            if (type == null) continue;
+            String arg = args.get(i);
+            if (type.equals("number")) {
+                Integer val = StatementRecognizer.isDigits(arg) ? Integer.valueOf(Integer.parseInt(arg)) : lookupNumber(arg);
+                frame.numVars.put(name, val != null ? val : 0);
+            } else if (type.equals("Alphan")) {
+                String val = arg.replace("\"", "");
+                frame.strVars.put(name, val);
             }
-            stringArrays.put(name, values);
-            System.out.println("Line " + lineNumber + ": String array '" + name + "' declared with " + values.size() + " elements.");
-            printLineTime(lineNumber, start, System.nanoTime());
-            return;
         }
 
-        matcher = NUMBER_ARRAY.matcher(line);
-        if (matcher.matches()) {
-            String name = matcher.group(1);
-            String content = matcher.group(2);
-            String[] items = content.split("\\s*,\\s*");
-            List<Double> values = new ArrayList<>();
-            try {
-                for (String item : items) {
-                    values.add(Double.parseDouble(item));
-                }
-                numberArrays.put(name, values);
-                System.out.println("Line " + lineNumber + ": Number array '" + name + "' declared with " + values.size() + " elements.");
-            } catch (NumberFormatException e) {
-                System.out.println("Syntax Error on line " + lineNumber + ": Invalid number format.");
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Calling function '" + funcName + "' with arguments " + args);
+        depth++;
+        try {
+            for (Statement bodyStatement : function.body) {
+                execute(bodyStatement, lineNumber);
             }
-            printLineTime(lineNumber, start, System.nanoTime());
-            return;
+        } finally {
+            popFrame();
+            budget.leave();
         }
-matcher = FUNC_DEF.matcher(line);
-if (matcher.matches()) {
-    insideFunction = true;
-    currentFunction = matcher.group(1);
-    String params = matcher.group(2).trim();
-    List<String> paramList = params.isEmpty() ? new ArrayList<>() : Arrays.asList(params.split("\\s*,\\s*"));
-    functionParams.put(currentFunction, paramList);
-    currentFunctionLines = new ArrayList<>();
-    System.out.println("Line " + lineNumber + ": Function '" + currentFunction + "' defined with parameters " + paramList);
-    return;
-}
-if (insideFunction) {
-    if (FUNC_END.matcher(line).matches()) {
-        functionBody.put(currentFunction, currentFunctionLines);
-        System.out.println("Line " + lineNumber + ": End of function '" + currentFunction + "'");
-        insideFunction = false;
-        currentFunction = null;
-    } else {
-        currentFunctionLines.add(line);
-    }
-    return;
-}
-matcher = FUNC_CALL.matcher(line);
-if (matcher.matches()) {
-    String funcName = matcher.group(1);
-    String argsStr = matcher.group(2);
-    List<String> args = Arrays.asList(argsStr.split("\\s*,\\s*"));
-
-    if (!functionParams.containsKey(funcName)) {
-        System.out.println("Error on line " + lineNumber + ": Function '" + funcName + "' not defined.");
-        return;
     }
 
-    List<String> paramList = functionParams.get(funcName);
-    if (args.size() != paramList.size()) {
-        System.out.println("Error on line " + lineNumber + ": Argument count mismatch for function '" + funcName + "'");
-        return;
+    // Claims the frame just above the current one; it becomes active once depth is bumped
+    private Frame pushFrame() {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        Frame frame = frames[depth];
+        if (frame == null) frames[depth] = frame = new Frame();
+        return frame;
     }
 
-    // Temporary environment for function execution
-    Map<String, Integer> tempNumVars = new HashMap<>(numVars);
-    Map<String, String> tempStrVars = new HashMap<>(strVars);
-
-    // Assign parameters
-    for (int i = 0; i < args.size(); i++) {
-        String param = paramList.get(i).trim();
-        String[] parts = param.split("\\s+");
-        if (parts.length != 2) continue;
-        String type = parts[0], name = parts[1];
-        String arg = args.get(i);
-        if (type.equals("number")) {
-            int val = arg.matches("\\d+") ? Integer.parseInt(arg) : numVars.getOrDefault(arg, 0);
-            numVars.put(name, val);
-        } else if (type.equals("Alphan")) {
-            String val = arg.replace("\"", "");
-            strVars.put(name, val);
-        }
+    // Drops the locals of the finished call; only the callee's own names are touched
+    private void popFrame() {
+        Frame frame = frames[--depth];
+        frame.numVars.clear();
+        frame.strVars.clear();
     }
 
-    System.out.println("Line " + lineNumber + ": Calling function '" + funcName + "' with arguments " + args);
-    List<String> body = functionBody.get(funcName);
-    for (String funcLine : body) {
-        analyze(funcLine, lineNumber); // reuse same method
+    private Map<String, Integer> scopeNumVars() {
+        return depth == 0 ? numVars : frames[depth - 1].numVars;
     }
 
-    // Restore original variables after call
-    numVars.clear();
-    numVars.putAll(tempNumVars);
-    strVars.clear();
-    strVars.putAll(tempStrVars);
+    private Map<String, String> scopeStrVars() {
+        return depth == 0 ? strVars : frames[depth - 1].strVars;
+    }
 
-    return;
-}
+    // Locals and parameters of the running call first, then the globals
+    private Integer lookupNumber(String name) {
+        if (depth > 0) {
+            Integer local = frames[depth - 1].numVars.get(name);
+            if (local != null) return local;
+        }
+        return numVars.get(name);
+    }
 
-        // Access array element
-        matcher = ARRAY_ACCESS.matcher(line);
-        if (matcher.matches()) {
-            String arrayName = matcher.group(1);
-            int index = Integer.parseInt(matcher.group(2));
-            if (stringArrays.containsKey(arrayName)) {
-                List<String> values = stringArrays.get(arrayName);
-                if (index < values.size()) {
-                    System.out.println("Line " + lineNumber + ": Output → " + values.get(index));
-                } else {
-                    System.out.println("Error on line " + lineNumber + ": Index out of bounds for string array '" + arrayName + "'.");
-                }
-            } else if (numberArrays.containsKey(arrayName)) {
-                List<Double> values = numberArrays.get(arrayName);
-                if (index < values.size()) {
-                    System.out.println("Line " + lineNumber + ": Output → " + values.get(index));
-                } else {
-                    System.out.println("Error on line " + lineNumber + ": Index out of bounds for number array '" + arrayName + "'.");
-                }
+    private Object lookupValue(String name) {
+        Object value = null;
+        if (depth > 0) value = lookupValue(frames[depth - 1].strVars, frames[depth - 1].numVars, name);
+        return value != null ? value : lookupValue(strVars, numVars, name);
+    }
+
+    private static Object lookupValue(Map<String, String> strings, Map<String, Integer> numbers, String name) {
+        String text = strings.get(name);
+        return text != null ? text : numbers.get(name);
+    }
+
+    // Access array element
+    private void publishElement(Statement statement, int lineNumber) {
+        String arrayName = statement.name;
+        int index = statement.index;
+        if (stringArrays.containsKey(arrayName)) {
+            String[] values = stringArrays.get(arrayName);
+            if (index < values.length) {
+                out.publish("Line " + lineNumber + ": Output → " + values[index]);
             } else {
-                System.out.println("Error on line " + lineNumber + ": Array '" + arrayName + "' not found.");
+                out.error("Error on line " + lineNumber + ": Index out of bounds for string array '" + arrayName + "'.");
             }
-            printLineTime(lineNumber, start, System.nanoTime());
-            return;
+        } else if (numberArrays.containsKey(arrayName)) {
+            double[] values = numberArrays.get(arrayName);
+            if (index < values.length) {
+                out.publish("Line " + lineNumber + ": Output → " + values[index]);
+            } else {
+                out.error("Error on line " + lineNumber + ": Index out of bounds for number array '" + arrayName + "'.");
+            }
+        } else {
+            out.error("Error on line " + lineNumber + ": Array '" + arrayName + "' not found.");
         }
+    }
 
-        // Arithmetic expression
-        matcher = EXPRESSION_VAR.matcher(line);
-        if (matcher.matches()) {
-            String varName = matcher.group(1);
-            String leftOperand = matcher.group(2);
-            String operator = matcher.group(3);
-            String rightOperand = matcher.group(4);
-
-            if (!numVars.containsKey(leftOperand) || !numVars.containsKey(rightOperand)) {
-                System.out.println("Error on line " + lineNumber + ": Undefined variable in expression.");
-                printLineTime(lineNumber, start, System.nanoTime());
-                return;
-            }
+    // Arithmetic expression
+    private void evaluateExpression(Statement statement, int lineNumber) {
+        String varName = statement.name;
+        String leftOperand = statement.left;
+        String rightOperand = statement.right;
 
-            int left = numVars.get(leftOperand);
-            int right = numVars.get(rightOperand);
-            int result = 0;
-            switch (operator) {
-                case "+": result = left + right; break;
-                case "-": result = left - right; break;
-                case "*": result = left * right; break;
-                case "/":
-                    if (right == 0) {
-                        System.out.println("Error on line " + lineNumber + ": Division by zero.");
-                        printLineTime(lineNumber, start, System.nanoTime());
-                        return;
-                    }
-                    result = left / right;
-                    break;
-            }
-            numVars.put(varName, result);
-            System.out.println("Line " + lineNumber + ": Number variable '" + varName + "' assigned result " + result);
-            printLineTime(lineNumber, start, System.nanoTime());
+        Integer leftValue = lookupNumber(leftOperand);
+        Integer rightValue = lookupNumber(rightOperand);
+        if (leftValue == null || rightValue == null) {
+            out.error("Error on line " + lineNumber + ": Undefined variable in expression.");
             return;
         }
 
-        // Publish
-        if (line.startsWith("publish")) {
-            matcher = PRINT.matcher(line);
-            if (matcher.matches()) {
-                String varName = matcher.group(1);
-                if (strVars.containsKey(varName)) {
-                    System.out.println("Line " + lineNumber + ": Output → " + strVars.get(varName));
-                } else if (numVars.containsKey(varName)) {
-                    System.out.println("Line " + lineNumber + ": Output → " + numVars.get(varName));
-                } else {
-                    System.out.println("Error on line " + lineNumber + ": Variable '" + varName + "' not found.");
+        int left = leftValue;
+        int right = rightValue;
+        int result = 0;
+        switch (statement.operator) {
+            case '+': result = left + right; break;
+            case '-': result = left - right; break;
+            case '*': result = left * right; break;
+            case '/':
+                if (right == 0) {
+                    out.error("Error on line " + lineNumber + ": Division by zero.");
+                    return;
                 }
-                printLineTime(lineNumber, start, System.nanoTime());
-                return;
-            } else {
-                System.out.println("Syntax Error on line " + lineNumber + ": Invalid publish statement.");
-                printLineTime(lineNumber, start, System.nanoTime());
-                return;
-            }
+                result = left / right;
+                break;
         }
+        scopeNumVars().put(varName, result);
+        if (out.isTracing()) out.trace("Line " + lineNumber + ": Number variable '" + varName + "' assigned result " + result);
+    }
 
-        // Default case
-        System.out.println("Syntax Error on line " + lineNumber + ": Unrecognized statement → " + line);
-        printLineTime(lineNumber, start, System.nanoTime());
+    // Publish
+    private void publish(Statement statement, int lineNumber) {
+        String varName = statement.name;
+        Object value = lookupValue(varName);
+        if (value != null) {
+            out.publish("Line " + lineNumber + ": Output → " + value);
+        } else {
+            out.error("Error on line " + lineNumber + ": Variable '" + varName + "' not found.");
+        }
     }
 
-    private void printLineTime(int lineNumber, long start, long end) {
-        double elapsedMs = (end - start) / 1_000_000.0;
-        System.out.printf("Line %d processed in %.3f ms%n", lineNumber, elapsedMs);
+    // Default case
+    private void unrecognized(String line, int lineNumber) {
+        out.error("Syntax Error on line " + lineNumber + ": Unrecognized statement → " + line);
     }
 
+
   
 }
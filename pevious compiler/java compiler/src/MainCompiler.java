@@ -1,62 +1,288 @@
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
 
 public class MainCompiler {
+
+    // Usage: MainCompiler [--engine=legacy|vm|jvm] [--disassemble] [--dump-classes=DIR]
+    //                    [--programs=DIR] [--parallel[=THREADS]] [--speedup] [--quiet] [--watch]
+    //                    [--cache[=DIR]] [--cache-size=MB] [--latency] [--latency-json=FILE]
+    //                    [--optimize] [--max-steps=N] [--max-call-depth=N]
+    //                    [--max-array-elements=N] [--timeout=MILLIS] [--stdin] [--max-globals=N]
+    //   legacy  line-by-line Parser + Lexer (default)
+    //   vm      parse the whole file, compile to bytecode and run it on the VirtualMachine
+    //   jvm     parse the whole file, compile to a JVM hidden class and run that
+    //   --parallel  run the files concurrently (default: one thread per core), output in file order
+    //   --speedup   time the batch at 1, 2, 4, ... threads up to the core count
+    //   --quiet     print only what the programs publish
+    //   --watch     keep running and rebuild only the files that change
+    //   --cache     keep compiled vm/jvm programs in DIR (default .htcache) across runs
+    //   --latency   print p50/p99/max per phase and per legacy statement kind at the end
+    //   --optimize  fold constants and drop dead stores before compiling vm/jvm programs,
+    //               printing the instruction counts before and after
+    //   --max-*     stop a file's run once it takes more steps (loop iterations and calls;
+    //               statements on legacy), nests calls deeper (default 1000) or allocates
+    //               more array elements than this; --timeout limits its time
+    //   --stdin     run the lines piped in on the legacy engine as they arrive; statistics and
+    //               peak heap go to stderr. --max-globals caps the names each global and
+    //               function table takes (default no cap): a statement adding one more is an error
     public static void main(String[] args) {
-        File folder = new File("programs");
+        String engine = "legacy";
+        boolean disassemble = false;
+        Path dumpDir = null;
+        String programs = "programs";
+        int threads = 1;
+        boolean speedup = false;
+        boolean quiet = false;
+        boolean watch = false;
+        Path cacheDir = null;
+        long cacheBytes = CompileCache.DEFAULT_MAX_BYTES;
+        boolean latency = false;
+        Path latencyJson = null;
+        boolean optimize = false;
+        long maxSteps = ExecutionBudget.UNLIMITED;
+        int maxCallDepth = ExecutionBudget.DEFAULT_MAX_CALL_DEPTH;
+        long maxArrayElements = ExecutionBudget.UNLIMITED;
+        long timeoutMillis = ExecutionBudget.UNLIMITED;
+        boolean stdin = false;
+        int maxGlobals = Integer.MAX_VALUE;
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.equals("--disassemble")) {
+                disassemble = true;
+            } else if (arg.startsWith("--dump-classes=")) {
+                dumpDir = Path.of(arg.substring("--dump-classes=".length()));
+            } else if (arg.startsWith("--programs=")) {
+                programs = arg.substring("--programs=".length());
+            } else if (arg.equals("--parallel")) {
+                threads = Runtime.getRuntime().availableProcessors();
+            } else if (arg.startsWith("--parallel=")) {
+                threads = Integer.parseInt(arg.substring("--parallel=".length()));
+            } else if (arg.equals("--speedup")) {
+                speedup = true;
+            } else if (arg.equals("--quiet")) {
+                quiet = true;
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--cache")) {
+                cacheDir = Path.of(".htcache");
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = Path.of(arg.substring("--cache=".length()));
+            } else if (arg.startsWith("--cache-size=")) {
+                cacheBytes = Long.parseLong(arg.substring("--cache-size=".length())) << 20;
+            } else if (arg.equals("--latency")) {
+                latency = true;
+            } else if (arg.startsWith("--latency-json=")) {
+                latencyJson = Path.of(arg.substring("--latency-json=".length()));
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.startsWith("--max-steps=")) {
+                maxSteps = Long.parseLong(arg.substring("--max-steps=".length()));
+            } else if (arg.startsWith("--max-call-depth=")) {
+                maxCallDepth = Integer.parseInt(arg.substring("--max-call-depth=".length()));
+            } else if (arg.startsWith("--max-array-elements=")) {
+                maxArrayElements = Long.parseLong(arg.substring("--max-array-elements=".length()));
+            } else if (arg.startsWith("--timeout=")) {
+                timeoutMillis = Long.parseLong(arg.substring("--timeout=".length()));
+            } else if (arg.equals("--stdin")) {
+                stdin = true;
+            } else if (arg.startsWith("--max-globals=")) {
+                maxGlobals = Integer.parseInt(arg.substring("--max-globals=".length()));
+            } else {
+                System.out.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        if (!engine.equals("legacy") && !engine.equals("vm") && !engine.equals("jvm")) {
+            System.out.println("Unknown engine '" + engine + "', expected legacy, vm or jvm.");
+            return;
+        }
+
+        Instrumentation.setEnabled(latency || latencyJson != null);
+        ExecutionBudget limits = new ExecutionBudget(maxSteps, maxCallDepth, maxArrayElements, timeoutMillis);
+
+        if (stdin) {
+            if (!engine.equals("legacy")) {
+                System.out.println("--stdin runs on the legacy engine; vm and jvm compile whole files.");
+                return;
+            }
+            OutputSink out = quiet ? new QuietSink(System.out) : new BufferedSink(System.out);
+            try {
+                StreamRunner.Stats stats = StreamRunner.run(System.in, out, maxGlobals, limits.copy());
+                // stderr, so the statistics never mix into what is piped on
+                System.err.println(stats.summary());
+            } catch (IOException e) {
+                out.flush();
+                System.out.println("❌ Failed to read stdin: " + e.getMessage());
+            }
+            reportLatency(latency, latencyJson);
+            return;
+        }
+
+        CompileCache cache = null;
+        if (cacheDir != null && !engine.equals("legacy")) {
+            try {
+                cache = new CompileCache(cacheDir, cacheBytes, optimize);
+            } catch (IOException e) {
+                System.out.println("❌ Cannot use cache directory '" + cacheDir + "': " + e.getMessage());
+            }
+        }
+
+        if (watch) {
+            try {
+                new WatchMode(Path.of(programs), engine, quiet, cache, optimize, limits).run();
+            } catch (IOException e) {
+                System.out.println("❌ Cannot watch '" + programs + "/': " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        File folder = new File(programs);
         File[] files = folder.listFiles((dir, name) -> name.endsWith(".ht"));
 
         if (files == null || files.length == 0) {
-            System.out.println("No .ht files found in 'programs/' folder.");
+            System.out.println("No .ht files found in '" + programs + "/' folder.");
+            return;
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        String selected = engine;
+        boolean listing = disassemble;
+        Path classes = dumpDir;
+        CompileCache shared = cache;
+        boolean optimized = optimize;
+        BatchRunner.FileTask task = (file, out) -> processFile(file, out, selected, listing, classes, shared, optimized, limits);
+        if (speedup) {
+            BatchRunner.printSpeedupTable(files, task, 3);
+            return;
+        }
+        if (threads > 1) {
+            new BatchRunner(threads, quiet, task).run(files, true);
+            if (!quiet && cache != null) printCacheStats(cache);
+            reportLatency(latency, latencyJson);
             return;
         }
 
         long totalStart = System.nanoTime();
 
         for (File file : files) {
-            System.out.println("\n=== Processing file: " + file.getName() + " ===");
+            if (!quiet) System.out.println("\n=== Processing file: " + file.getName() + " ===");
             long fileStart = System.nanoTime();
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                Parser parser = new Parser();  // ✅ For syntax structure checks
-                Lexer lexer = new Lexer();     // ✅ For logic and interpretation
+            OutputSink out = quiet ? new QuietSink(System.out) : new BufferedSink(System.out);
+            processFile(file, out, engine, disassemble, dumpDir, cache, optimize, limits);
+            out.flush();
 
-                String line;
-                int lineNumber = 1;
+            long fileEnd = System.nanoTime();
+            double fileElapsedMs = (fileEnd - fileStart) / 1_000_000.0;
+            if (!quiet) System.out.printf("✓ File '%s' processed in %.3f ms%n", file.getName(), fileElapsedMs);
+        }
 
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
+        long totalEnd = System.nanoTime();
+        double totalElapsedMs = (totalEnd - totalStart) / 1_000_000.0;
+        if (!quiet) System.out.printf("\nTotal processing time for all files: %.3f ms%n", totalElapsedMs);
+        if (!quiet && cache != null) printCacheStats(cache);
+        reportLatency(latency, latencyJson);
+    }
+
+    private static void reportLatency(boolean print, Path json) {
+        if (print) Instrumentation.printSummary(System.out);
+        if (json == null) return;
+        try {
+            Files.writeString(json, Instrumentation.toJson() + System.lineSeparator());
+        } catch (IOException e) {
+            System.out.println("❌ Failed to write '" + json + "': " + e.getMessage());
+        }
+    }
 
-                    // Skip empty lines and comments
-                    if (
-                        line.isEmpty() ||
-                        line.startsWith("//") ||
-                        (line.startsWith("/\\") && line.endsWith("/\\"))
-                    ) {
-                        lineNumber++;
-                        continue;
-                    }
+    private static void printCacheStats(CompileCache cache) {
+        System.out.printf("Compile cache: %d hits, %d misses%n", cache.hits(), cache.misses());
+    }
 
-                    try {
-                        parser.analyzeLine(line, lineNumber);  // ✅ Syntax check first
-                        lexer.analyze(line, lineNumber);       // ✅ Then interpret logic
-                    } catch (Exception e) {
-                        System.out.printf("❌ Error at line %d in %s: %s%n", lineNumber, file.getName(), e.getMessage());
-                    }
+    // limits is copied for every run, so each file gets the whole budget
+    static void processFile(File file, OutputSink out, String engine, boolean disassemble, Path dumpDir,
+                            CompileCache cache, boolean optimize, ExecutionBudget limits) {
+        if (engine.equals("legacy")) {
+            runLegacy(file, out, limits.copy());
+        } else {
+            runCompiled(file, out, engine, disassemble, dumpDir, cache, optimize, limits.copy());
+        }
+    }
 
-                    lineNumber++;
-                }
+    private static void runLegacy(File file, OutputSink out, ExecutionBudget budget) {
+        try {
+            runLegacy(SourceText.read(file.toPath()), file.getName(), out, budget);
+        } catch (IOException e) {
+            out.error("❌ Failed to read file '" + file.getName() + "': " + e.getMessage());
+        }
+    }
 
-            } catch (IOException e) {
-                System.out.printf("❌ Failed to read file '%s': %s%n", file.getName(), e.getMessage());
+    static void runLegacy(SourceText source, String fileName, OutputSink out) {
+        runLegacy(source, fileName, out, ExecutionBudget.defaults());
+    }
+
+    static void runLegacy(SourceText source, String fileName, OutputSink out, ExecutionBudget budget) {
+        Parser parser = new Parser(out);          // ✅ For syntax structure checks
+        Lexer lexer = new Lexer(out, budget);     // ✅ For logic and interpretation
+
+        // Lines come trimmed straight off the file's bytes; a String is
+        // only made for lines that reach the Parser and Lexer
+        SourceText.Lines lines = source.lines();
+        while (lines.next()) {
+            int lineNumber = lines.number();
+
+            // Skip empty lines and comments
+            if (
+                lines.isEmpty() ||
+                lines.startsWith("//") ||
+                (lines.startsWith("/\\") && lines.endsWith("/\\"))
+            ) {
+                continue;
             }
+            if (!runLegacyLine(parser, lexer, lines.toString(), lineNumber, fileName, out)) return;
+        }
+    }
 
-            long fileEnd = System.nanoTime();
-            double fileElapsedMs = (fileEnd - fileStart) / 1_000_000.0;
-            System.out.printf("✓ File '%s' processed in %.3f ms%n", file.getName(), fileElapsedMs);
+    // One line through the Parser, then the Lexer. False when the run has
+    // to stop because its budget ran out.
+    static boolean runLegacyLine(Parser parser, Lexer lexer, String line, int lineNumber, String fileName, OutputSink out) {
+        try {
+            parser.analyzeLine(line, lineNumber);  // ✅ Syntax check first
+            lexer.analyze(line, lineNumber);       // ✅ Then interpret logic
+        } catch (BudgetExceededException e) {
+            // Unlike an error in one line, this ends the whole run
+            out.error("❌ " + fileName + ": " + e.getMessage());
+            return false;
+        } catch (Exception e) {
+            out.error("❌ Error at line " + lineNumber + " in " + fileName + ": " + e.getMessage());
         }
+        return true;
+    }
 
-        long totalEnd = System.nanoTime();
-        double totalElapsedMs = (totalEnd - totalStart) / 1_000_000.0;
-        System.out.printf("\nTotal processing time for all files: %.3f ms%n", totalElapsedMs);
+    private static void runCompiled(File file, OutputSink out, String engine, boolean disassemble, Path dumpDir,
+                                    CompileCache cache, boolean optimize, ExecutionBudget budget) {
+        try {
+            SourceText source = SourceText.read(file.toPath());
+            if (engine.equals("jvm")) {
+                JvmProgram jvm = cache != null ? cache.jvm(source, out)
+                    : JvmProgram.compile(Optimizer.parse(source, optimize, out));
+                if (dumpDir != null) out.trace("Wrote " + jvm.dump(dumpDir));
+                jvm.run(out, budget);
+                return;
+            }
+            BytecodeProgram bytecode = cache != null ? cache.bytecode(source, out)
+                : BytecodeCompiler.compile(Optimizer.parse(source, optimize, out));
+            if (disassemble) out.trace(bytecode.disassemble().stripTrailing());
+            new VirtualMachine(bytecode, out, budget).run();
+        } catch (CompileException e) {
+            for (Diagnostic d : e.getDiagnostics()) out.error("❌ " + d);
+        } catch (HtRuntimeException e) {
+            out.error("❌ " + file.getName() + ": " + e.getMessage());
+        } catch (IOException e) {
+            out.error("❌ Failed to read file '" + file.getName() + "': " + e.getMessage());
+        }
     }
 }
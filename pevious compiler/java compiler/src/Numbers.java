@@ -0,0 +1,61 @@
+// Number literals, read straight from the source text. Plain \d+(\.\d+)?
+// literals with at most 15 significant digits are computed exactly from a long
+// and a power of ten; anything else goes through Double.parseDouble.
+public final class Numbers {
+
+    private Numbers() {
+    }
+
+    // Every power of ten up to 10^22 is exact as a double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Index just past a \d+(\.\d+)? literal starting at start, or start if there is none
+    public static int scan(CharSequence source, int start) {
+        int length = source.length();
+        int i = start;
+        while (i < length && isDigit(source.charAt(i))) i++;
+        if (i == start) return start;
+        if (i + 1 < length && source.charAt(i) == '.' && isDigit(source.charAt(i + 1))) {
+            i += 2;
+            while (i < length && isDigit(source.charAt(i))) i++;
+        }
+        return i;
+    }
+
+    public static double parse(CharSequence source, int start, int end) {
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (isDigit(c)) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+                if (fraction >= 0) fraction++;
+            } else if (c == '.' && fraction < 0 && i > start) {
+                fraction = 0;
+            } else {
+                return Double.parseDouble(source.subSequence(start, end).toString());
+            }
+        }
+        if (start == end || fraction == 0 || digits > 15 || fraction > 22) {
+            return Double.parseDouble(source.subSequence(start, end).toString());
+        }
+        // Both operands are exact, so the division is correctly rounded
+        return fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+    }
+
+    public static boolean hasFraction(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == '.') return true;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,68 @@
+// Instruction set of the bytecode VM. Each instruction is one int opcode
+// followed by its operands; OPERANDS gives the operand count per opcode.
+// Numbers and references travel on separate stacks and live in separate
+// frames, so nothing is boxed while a program runs.
+public final class Opcode {
+
+    private Opcode() {
+    }
+
+    public static final int NCONST = 0;         // k     push numbers[k]
+    public static final int SCONST = 1;         // k     push constants[k]
+    public static final int NLOAD = 2;          // s     push local number slot s
+    public static final int NSTORE = 3;         // s     pop into local number slot s
+    public static final int OLOAD = 4;          // s     push local object slot s
+    public static final int OSTORE = 5;         // s     pop into local object slot s
+    public static final int NLOAD_G = 6;        // s     same four for the global frame
+    public static final int NSTORE_G = 7;       // s
+    public static final int OLOAD_G = 8;        // s
+    public static final int OSTORE_G = 9;       // s
+    public static final int NEW_NUM_ARRAY = 10; // n     pop n numbers into a new number array
+    public static final int NEW_STR_ARRAY = 11; // n     pop n strings into a new Alphan array
+    public static final int NUM_ARRAY_CONST = 12; // k     push a copy of the double[] in constants[k]
+    public static final int STR_ARRAY_CONST = 13; // k     push a copy of the String[] in constants[k]
+    public static final int NELEM = 14;         // k     pop index and number array, push element; constants[k] names the array
+    public static final int SELEM = 15;         // k     same for an Alphan array
+    public static final int ADD = 16;
+    public static final int SUB = 17;
+    public static final int MUL = 18;
+    public static final int DIV = 19;
+    public static final int NEG = 20;
+    public static final int NPUBLISH = 21;      //       pop a number and print it
+    public static final int SPUBLISH = 22;      //       pop a string and print it
+    public static final int CALL = 23;          // f     call function f, arguments are on the stacks
+    public static final int RETURN = 24;
+    public static final int HALT = 25;
+    public static final int JUMP = 26;          // t     continue at t
+    public static final int JLT = 27;           // t     pop right and left numbers, jump to t if left < right
+    public static final int JLE = 28;           // t     ... if left <= right
+    public static final int JGT = 29;           // t     ... if left > right
+    public static final int JGE = 30;           // t     ... if left >= right
+    public static final int JEQ = 31;           // t     ... if left == right
+    public static final int JNE = 32;           // t     ... if left != right
+    public static final int JNLT = 33;          // t     ... unless left < right, so also when either is NaN
+    public static final int JNLE = 34;          // t
+    public static final int JNGT = 35;          // t
+    public static final int JNGE = 36;          // t
+    public static final int STEP = 37;          //       one loop iteration against the ExecutionBudget
+    public static final int WADD = 38;          //       ADD, SUB, MUL and NEG on whole numbers: an error
+    public static final int WSUB = 39;          //       once the result is outside the range of a long
+    public static final int WMUL = 40;
+    public static final int WNEG = 41;
+
+    static final String[] NAMES = {
+        "NCONST", "SCONST", "NLOAD", "NSTORE", "OLOAD", "OSTORE", "NLOAD_G", "NSTORE_G", "OLOAD_G", "OSTORE_G",
+        "NEW_NUM_ARRAY", "NEW_STR_ARRAY", "NUM_ARRAY_CONST", "STR_ARRAY_CONST", "NELEM", "SELEM", "ADD", "SUB", "MUL", "DIV", "NEG",
+        "NPUBLISH", "SPUBLISH", "CALL", "RETURN", "HALT",
+        "JUMP", "JLT", "JLE", "JGT", "JGE", "JEQ", "JNE", "JNLT", "JNLE", "JNGT", "JNGE", "STEP",
+        "WADD", "WSUB", "WMUL", "WNEG"
+    };
+
+    static final int[] OPERANDS = {
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0,
+        0, 0, 1, 0, 0,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0,
+        0, 0, 0, 0
+    };
+}
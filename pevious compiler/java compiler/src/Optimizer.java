@@ -0,0 +1,456 @@
+import java.util.*;
+
+// Source-level optimizer run between HtParser and the compilers, in two
+// passes over main and every function body:
+//
+//  1. Constant propagation and folding, forwards. A variable declared with a
+//     value known at compile time is replaced by that value wherever it is
+//     read, arithmetic on literals is computed, and elements of arrays built
+//     only from literals are read out at compile time. A division whose
+//     divisor folds to 0 is reported as a compile-time error instead of
+//     failing when it runs. After a suppose only the values both branches
+//     agree on stay known; a loopwhile forgets everything its body declares,
+//     since that can change from one iteration to the next. A condition that
+//     folds to a constant leaves only the branch that runs.
+//  2. Dead-store elimination, backwards. A declaration is dropped when
+//     nothing after it reads the variable before it is declared again. Inside
+//     a loop, "after" includes the next iterations, so the names live at the
+//     loop test are found by iterating over the body until nothing changes.
+//     A function may read any global, so a global that some function reads is
+//     never dropped. Neither is a declaration whose value could still fail at
+//     run time, e.g. an element read with an index only known when running,
+//     or whole-number arithmetic that could overflow (see TypeInference).
+//
+// The input must already resolve without errors; the output is a new
+// Ast.Program that the compilers resolve again.
+public class Optimizer implements Ast.ExprVisitor<Ast.Expr> {
+
+    public static final class Result {
+        public final Ast.Program original;
+        public final Ast.Program program;
+        public final int folded;        // expressions replaced by a literal
+        public final int removed;       // declarations dropped as dead stores
+
+        Result(Ast.Program original, Ast.Program program, int folded, int removed) {
+            this.original = original;
+            this.program = program;
+            this.folded = folded;
+            this.removed = removed;
+        }
+
+        // Optimized: 48 -> 19 instructions (12 expressions folded, 7 dead stores removed)
+        public String summary() {
+            int before = BytecodeCompiler.compile(original).instructionCount();
+            int after = BytecodeCompiler.compile(program).instructionCount();
+            return "Optimized: " + before + " -> " + after + " instructions ("
+                    + folded + " expressions folded, " + removed + " dead stores removed)";
+        }
+    }
+
+    // Known values of the variables in scope: Double, String, double[] or String[]
+    private Map<String, Object> known = new HashMap<>();
+    private Set<String> scope = new HashSet<>();      // same block scoping as the Resolver
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private int folded;
+    private int removed;
+
+    private Optimizer() {
+    }
+
+    // Throws CompileException if the program has errors, including divisions by a constant 0
+    public static Result optimize(Ast.Program program) {
+        Resolver.resolve(program);
+        return new Optimizer().run(program);
+    }
+
+    // Parses a source file for the compilers, optimized when asked, and
+    // traces the instruction counts before and after to out
+    public static Ast.Program parse(SourceText source, boolean optimize, OutputSink out) {
+        Ast.Program program = HtParser.parse(source);
+        if (!optimize) return program;
+        Result result = optimize(program);
+        if (out != null && out.isTracing()) out.trace(result.summary());
+        return result.program;
+    }
+
+    private Result run(Ast.Program program) {
+        // Globals read by any function must keep a declaration in main
+        Set<String> readByFunctions = new HashSet<>();
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Ast.Function f : program.functions) {
+            Set<String> params = new HashSet<>();
+            for (Ast.Param p : f.params) params.add(p.name);
+            globalReads(f.body, new HashSet<>(params), readByFunctions);
+
+            known = new HashMap<>();
+            scope = params;
+            List<Ast.Stmt> body = sweep(propagate(f.body), new HashSet<>(), Set.of());
+            functions.add(new Ast.Function(f.line, f.column, f.name, f.params, body));
+        }
+
+        known = new HashMap<>();
+        scope = new HashSet<>();
+        List<Ast.Stmt> main = sweep(propagate(program.statements), new HashSet<>(readByFunctions), readByFunctions);
+
+        if (!diagnostics.isEmpty()) {
+            diagnostics.sort(Comparator.comparingInt((Diagnostic d) -> d.line).thenComparingInt(d -> d.column));
+            throw new CompileException(diagnostics);
+        }
+        return new Result(program, new Ast.Program(functions, main), folded, removed);
+    }
+
+    // ------------------------------------------------------------- pass 1
+
+    private List<Ast.Stmt> propagate(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> out = new ArrayList<>(statements.size());
+        for (Ast.Stmt s : statements) {
+            if (s instanceof Ast.Declare d) {
+                Ast.Expr value = d.value.accept(this);
+                Object constant = valueOf(value);
+                if (constant != null) known.put(d.name, constant);
+                else known.remove(d.name);
+                scope.add(d.name);
+                out.add(value == d.value ? d : new Ast.Declare(d.line, d.column, d.type, d.name, value));
+            } else if (s instanceof Ast.DeclareArray d) {
+                List<Ast.Expr> elements = new ArrayList<>(d.elements.size());
+                boolean changed = false;
+                for (Ast.Expr e : d.elements) {
+                    Ast.Expr element = e.accept(this);
+                    changed |= element != e;
+                    elements.add(element);
+                }
+                Ast.DeclareArray array = changed ? new Ast.DeclareArray(d.line, d.column, d.type, d.name, elements) : d;
+                Object literals = array.literals();
+                if (literals != null) known.put(d.name, literals);
+                else known.remove(d.name);
+                scope.add(d.name);
+                out.add(array);
+            } else if (s instanceof Ast.If b) {
+                out.add(propagateIf(b));
+            } else if (s instanceof Ast.While w) {
+                Ast.Stmt loop = propagateWhile(w);
+                if (loop != null) out.add(loop);
+            } else if (s instanceof Ast.Publish p) {
+                Ast.Expr value = p.value.accept(this);
+                out.add(value == p.value ? p : new Ast.Publish(p.line, p.column, value));
+            } else {
+                Ast.Call c = (Ast.Call) s;
+                List<Ast.Expr> args = new ArrayList<>(c.args.size());
+                boolean changed = false;
+                for (Ast.Expr e : c.args) {
+                    Ast.Expr arg = e.accept(this);
+                    changed |= arg != e;
+                    args.add(arg);
+                }
+                out.add(changed ? new Ast.Call(c.line, c.column, c.name, args) : c);
+            }
+        }
+        return out;
+    }
+
+    // A block's own declarations go out of scope at its end, and with them
+    // whatever is known about them
+    private List<Ast.Stmt> block(List<Ast.Stmt> statements) {
+        Set<String> outer = new HashSet<>(scope);
+        List<Ast.Stmt> out = propagate(statements);
+        scope = outer;
+        known.keySet().retainAll(outer);
+        return out;
+    }
+
+    private Ast.Stmt propagateIf(Ast.If s) {
+        Ast.Condition condition = fold(s.condition);
+        Map<String, Object> before = new HashMap<>(known);
+        List<Ast.Stmt> then = block(s.then);
+        Map<String, Object> afterThen = known;
+        known = before;
+        List<Ast.Stmt> otherwise = block(s.otherwise);
+
+        // Both branches are folded either way, so errors in one that never
+        // runs are still reported
+        Boolean constant = condition.constant();
+        if (constant == null) {
+            known.entrySet().retainAll(afterThen.entrySet());
+        } else if (constant) {
+            known = afterThen;
+            otherwise = List.of();
+        } else {
+            then = List.of();
+        }
+        if (condition == s.condition && then.equals(s.then) && otherwise.equals(s.otherwise)) return s;
+        return new Ast.If(s.line, s.column, condition, then, otherwise);
+    }
+
+    // Returns null for a loop whose body never runs
+    private Ast.Stmt propagateWhile(Ast.While s) {
+        Set<String> changing = new HashSet<>();
+        declared(s.body, changing);
+        known.keySet().removeAll(changing);
+        Ast.Condition condition = fold(s.condition);
+        Map<String, Object> before = new HashMap<>(known);
+        List<Ast.Stmt> body = block(s.body);
+        known = before;
+
+        if (condition.constant() == Boolean.FALSE) return null;
+        if (condition == s.condition && body.equals(s.body)) return s;
+        return new Ast.While(s.line, s.column, condition, body);
+    }
+
+    private Ast.Condition fold(Ast.Condition c) {
+        Ast.Expr left = c.left.accept(this);
+        Ast.Expr right = c.right.accept(this);
+        return left == c.left && right == c.right ? c : new Ast.Condition(c.line, c.column, c.op, left, right);
+    }
+
+    private static Object valueOf(Ast.Expr e) {
+        if (e instanceof Ast.NumberLiteral n) return n.value;
+        if (e instanceof Ast.StringLiteral s) return s.value;
+        return null;
+    }
+
+    private Ast.Expr literal(Ast.Expr at, double value) {
+        return literal(at, value, value != Math.rint(value));
+    }
+
+    // A folded expression stays fractional if it was, so TypeInference
+    // sees the same types with or without optimizing
+    private Ast.Expr literal(Ast.Expr at, double value, boolean decimal) {
+        folded++;
+        return new Ast.NumberLiteral(at.line, at.column, value, decimal);
+    }
+
+    public Ast.Expr visitNumber(Ast.NumberLiteral e) {
+        return e;
+    }
+
+    public Ast.Expr visitString(Ast.StringLiteral e) {
+        return e;
+    }
+
+    public Ast.Expr visitVariable(Ast.Variable e) {
+        Object value = known.get(e.name);
+        if (value instanceof Double d) return literal(e, d);
+        if (value instanceof String s) {
+            folded++;
+            return new Ast.StringLiteral(e.line, e.column, s);
+        }
+        return e;
+    }
+
+    public Ast.Expr visitIndex(Ast.Index e) {
+        Ast.Expr index = e.index.accept(this);
+        Object array = known.get(e.name);
+        if (index instanceof Ast.NumberLiteral n && array != null) {
+            // An index out of range or not whole stays a run-time error,
+            // raised where it always was
+            int i = (int) n.value;
+            boolean whole = i == n.value;
+            if (array instanceof double[] numbers && whole && i >= 0 && i < numbers.length) return literal(e, numbers[i]);
+            if (array instanceof String[] strings && whole && i >= 0 && i < strings.length) {
+                folded++;
+                return new Ast.StringLiteral(e.line, e.column, strings[i]);
+            }
+        }
+        return index == e.index ? e : new Ast.Index(e.line, e.column, e.name, index);
+    }
+
+    public Ast.Expr visitBinary(Ast.Binary e) {
+        Ast.Expr left = e.left.accept(this);
+        Ast.Expr right = e.right.accept(this);
+        if (e.op == '/' && right instanceof Ast.NumberLiteral r && r.value == 0) {
+            diagnostics.add(new Diagnostic("Error", e.line, e.column, "Division by zero."));
+        } else if (left instanceof Ast.NumberLiteral l && right instanceof Ast.NumberLiteral r) {
+            double value;
+            switch (e.op) {
+                case '+': value = l.value + r.value; break;
+                case '-': value = l.value - r.value; break;
+                case '*': value = l.value * r.value; break;
+                default: value = l.value / r.value; break;
+            }
+            // Overflow to Infinity is left for run time, which prints it the
+            // same way, and so is whole-number overflow, which is an error there
+            boolean whole = !l.decimal && !r.decimal && e.op != '/';
+            if (Double.isFinite(value) && !(whole && Math.abs(value) >= TypeInference.WHOLE_LIMIT)) return literal(e, value, !whole || value != Math.rint(value));
+        }
+        return left == e.left && right == e.right ? e : new Ast.Binary(e.line, e.column, e.op, left, right);
+    }
+
+    public Ast.Expr visitNegate(Ast.Negate e) {
+        Ast.Expr operand = e.operand.accept(this);
+        if (operand instanceof Ast.NumberLiteral n && (n.decimal || -n.value < TypeInference.WHOLE_LIMIT)) return literal(e, -n.value, n.decimal);
+        return operand == e.operand ? e : new Ast.Negate(e.line, e.column, operand);
+    }
+
+    // ------------------------------------------------------------- pass 2
+
+    // Backwards over a block. On entry live holds the names read after it, on
+    // return the names read before it; readAtCalls are read by every call.
+    private List<Ast.Stmt> sweep(List<Ast.Stmt> statements, Set<String> live, Set<String> readAtCalls) {
+        Deque<Ast.Stmt> kept = new ArrayDeque<>(statements.size());
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Ast.Stmt s = statements.get(i);
+            if (s instanceof Ast.If b) {
+                Set<String> otherwiseLive = new HashSet<>(live);
+                List<Ast.Stmt> otherwise = sweep(b.otherwise, otherwiseLive, readAtCalls);
+                List<Ast.Stmt> then = sweep(b.then, live, readAtCalls);
+                live.addAll(otherwiseLive);
+                reads(b.condition, live, Set.of());
+                boolean same = then.equals(b.then) && otherwise.equals(b.otherwise);
+                kept.addFirst(same ? b : new Ast.If(b.line, b.column, b.condition, then, otherwise));
+                continue;
+            }
+            if (s instanceof Ast.While w) {
+                Set<String> test = liveAtTest(w, live, readAtCalls);
+                List<Ast.Stmt> body = sweep(w.body, new HashSet<>(test), readAtCalls);
+                live.clear();
+                live.addAll(test);
+                kept.addFirst(body.equals(w.body) ? w : new Ast.While(w.line, w.column, w.condition, body));
+                continue;
+            }
+
+            String target = target(s);
+            if (target != null) {
+                if (!live.contains(target) && !readAtCalls.contains(target) && cannotFail(s)) {
+                    removed++;
+                    continue;
+                }
+                live.remove(target);
+            }
+            if (s instanceof Ast.Call) live.addAll(readAtCalls);
+            reads(s, live, Set.of());
+            kept.addFirst(s);
+        }
+        return new ArrayList<>(kept);
+    }
+
+    // Same as sweep, without removing anything
+    private static void liveness(List<Ast.Stmt> statements, Set<String> live, Set<String> readAtCalls) {
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Ast.Stmt s = statements.get(i);
+            if (s instanceof Ast.If b) {
+                Set<String> otherwiseLive = new HashSet<>(live);
+                liveness(b.otherwise, otherwiseLive, readAtCalls);
+                liveness(b.then, live, readAtCalls);
+                live.addAll(otherwiseLive);
+                reads(b.condition, live, Set.of());
+            } else if (s instanceof Ast.While w) {
+                Set<String> test = liveAtTest(w, live, readAtCalls);
+                live.clear();
+                live.addAll(test);
+            } else {
+                String target = target(s);
+                if (target != null) live.remove(target);
+                if (s instanceof Ast.Call) live.addAll(readAtCalls);
+                reads(s, live, Set.of());
+            }
+        }
+    }
+
+    // Names live each time the loop test runs: those read by the test, after
+    // the loop, or by the body before it declares them
+    private static Set<String> liveAtTest(Ast.While w, Set<String> after, Set<String> readAtCalls) {
+        Set<String> test = new HashSet<>(after);
+        reads(w.condition, test, Set.of());
+        while (true) {
+            Set<String> body = new HashSet<>(test);
+            liveness(w.body, body, readAtCalls);
+            if (!test.addAll(body)) return test;
+        }
+    }
+
+    private static String target(Ast.Stmt s) {
+        if (s instanceof Ast.Declare d) return d.name;
+        if (s instanceof Ast.DeclareArray a) return a.name;
+        return null;
+    }
+
+    // Every name declared in the statements, however deeply nested
+    private static void declared(List<Ast.Stmt> statements, Set<String> into) {
+        for (Ast.Stmt s : statements) {
+            String target = target(s);
+            if (target != null) into.add(target);
+            if (s instanceof Ast.If b) {
+                declared(b.then, into);
+                declared(b.otherwise, into);
+            }
+            if (s instanceof Ast.While w) declared(w.body, into);
+        }
+    }
+
+    // Globals a function body reads: names read where no parameter or local
+    // of that name is in scope
+    private static void globalReads(List<Ast.Stmt> statements, Set<String> locals, Set<String> into) {
+        for (Ast.Stmt s : statements) {
+            if (s instanceof Ast.If b) {
+                reads(b.condition, into, locals);
+                globalReads(b.then, new HashSet<>(locals), into);
+                globalReads(b.otherwise, new HashSet<>(locals), into);
+            } else if (s instanceof Ast.While w) {
+                reads(w.condition, into, locals);
+                globalReads(w.body, new HashSet<>(locals), into);
+            } else {
+                reads(s, into, locals);
+                String target = target(s);
+                if (target != null) locals.add(target);
+            }
+        }
+    }
+
+    private static void reads(Ast.Condition c, Set<String> into, Set<String> skip) {
+        reads(c.left, into, skip);
+        reads(c.right, into, skip);
+    }
+
+    // Adds the names a straight-line statement reads, other than those in skip
+    private static void reads(Ast.Stmt s, Set<String> into, Set<String> skip) {
+        if (s instanceof Ast.Declare d) reads(d.value, into, skip);
+        else if (s instanceof Ast.DeclareArray d) d.elements.forEach(e -> reads(e, into, skip));
+        else if (s instanceof Ast.Publish p) reads(p.value, into, skip);
+        else ((Ast.Call) s).args.forEach(e -> reads(e, into, skip));
+    }
+
+    private static void reads(Ast.Expr e, Set<String> into, Set<String> skip) {
+        if (e instanceof Ast.Variable v) {
+            if (!skip.contains(v.name)) into.add(v.name);
+        } else if (e instanceof Ast.Index x) {
+            if (!skip.contains(x.name)) into.add(x.name);
+            reads(x.index, into, skip);
+        } else if (e instanceof Ast.Binary b) {
+            reads(b.left, into, skip);
+            reads(b.right, into, skip);
+        } else if (e instanceof Ast.Negate n) {
+            reads(n.operand, into, skip);
+        }
+    }
+
+    private static boolean cannotFail(Ast.Stmt s) {
+        if (s instanceof Ast.Declare d) return cannotFail(d.value);
+        for (Ast.Expr e : ((Ast.DeclareArray) s).elements) {
+            if (!cannotFail(e)) return false;
+        }
+        return true;
+    }
+
+    // Element reads can be out of range and divisions can be by zero; what
+    // is left of either after folding is only known to be safe for a
+    // division by a non-zero literal. Arithmetic left after folding may be
+    // on whole numbers, which can overflow, unless a fraction takes part.
+    private static boolean cannotFail(Ast.Expr e) {
+        if (e instanceof Ast.Index) return false;
+        if (e instanceof Ast.Binary b) {
+            if (b.op == '/' && !(b.right instanceof Ast.NumberLiteral)) return false;
+            if (b.op != '/' && !fractional(b)) return false;
+            return cannotFail(b.left) && cannotFail(b.right);
+        }
+        if (e instanceof Ast.Negate n) return fractional(n) && cannotFail(n.operand);
+        return true;
+    }
+
+    // Fractional whatever the variables in it hold
+    private static boolean fractional(Ast.Expr e) {
+        if (e instanceof Ast.NumberLiteral n) return n.decimal;
+        if (e instanceof Ast.Binary b) return b.op == '/' || fractional(b.left) || fractional(b.right);
+        if (e instanceof Ast.Negate n) return fractional(n.operand);
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+// The legacy Parser + Lexer on a statement-heavy program, with its output
+// going to a file through each OutputSink: a write per line (what println
+// to System.out did), batched writes, publish-only, and in memory.
+public class OutputBenchmark {
+
+    static String[] program(int statements) {
+        String[] lines = new String[statements + 2];
+        lines[0] = "number x = 1;";
+        for (int i = 1; i <= statements; i++) {
+            lines[i] = i % 10 == 0 ? "publish(x);" : "number v" + i + " = " + i + ";";
+        }
+        lines[statements + 1] = "number y = x + x;";
+        return lines;
+    }
+
+    private static long run(String[] lines, OutputSink out) {
+        long start = System.nanoTime();
+        Parser parser = new Parser(out);
+        Lexer lexer = new Lexer(out);
+        for (int i = 0; i < lines.length; i++) {
+            parser.analyzeLine(lines[i], i + 1);
+            lexer.analyze(lines[i], i + 1);
+        }
+        out.flush();
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String[] lines = program(statements);
+        File file = File.createTempFile("ht-output", ".txt");
+        file.deleteOnExit();
+
+        String[] names = {"Line by line", "Buffered", "Quiet", "In memory"};
+        List<Function<PrintStream, OutputSink>> sinks = List.of(
+            out -> new BufferedSink(out, true),
+            BufferedSink::new,
+            QuietSink::new,
+            out -> new CollectingSink()
+        );
+
+        System.out.printf("Statements: %d, output to %s, best of %d rounds%n", statements, file, rounds);
+        for (int s = 0; s < sinks.size(); s++) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+                try (PrintStream stream = new PrintStream(new FileOutputStream(file), false)) {
+                    long time = run(lines, sinks.get(s).apply(stream));
+                    if (r > 0) best = Math.min(best, time);
+                }
+            }
+            System.out.printf("%-13s: %10.3f ms  %,12.0f statements/sec%n", names[s], best / 1e6, statements / (best / 1e9));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Where an engine's messages go. Engines say what kind of message they have
+// and the sink decides what to keep and how to write it, so nothing on the
+// hot path talks to System.out directly.
+public interface OutputSink {
+
+    // A value printed by publish, as the full console line
+    void publish(String text);
+
+    // Per-statement progress: assignments, declarations, function definitions.
+    // Engines skip building these messages when isTracing() is false.
+    void trace(String text);
+
+    // Syntax and runtime errors
+    void error(String text);
+
+    default boolean isTracing() {
+        return true;
+    }
+
+    default void flush() {
+    }
+
+    // Writes straight through to System.out, one line at a time; the default
+    // for engines created without a sink
+    static OutputSink console() {
+        return new BufferedSink(System.out, true);
+    }
+}
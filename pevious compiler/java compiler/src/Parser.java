@@ -1,56 +1,88 @@
 import java.util.*;
-import java.util.regex.*;
 
 public class Parser {
 
-   private static final Map<String, String> keywordMap = new HashMap<>();
-
-static {
-    keywordMap.put("print", "publish");
-    keywordMap.put("start", "begin");
-    keywordMap.put("end", "}");
-    keywordMap.put("boolean", "truf");
-    keywordMap.put("if", "suppose");
-    keywordMap.put("new", "create");
-    keywordMap.put("null", "empty");
-    keywordMap.put("private", "internal");
-    keywordMap.put("protected", "inheritable");
-    keywordMap.put("public", "global");
-    keywordMap.put("return", "giveback");
-    keywordMap.put("short", "smallnum");
-    keywordMap.put("static", "common");
-    keywordMap.put("strictfp", "fixedfloat");
-    keywordMap.put("super", "parent");
-    keywordMap.put("switch", "decide");
-    keywordMap.put("this", "self");
-    keywordMap.put("throw", "raise");
-    keywordMap.put("throws", "maygive");
-    keywordMap.put("transient", "skipstore");
-    keywordMap.put("try", "attemptblock");
-    keywordMap.put("void", "nothing");
-    keywordMap.put("volatile", "instable");
-    keywordMap.put("while", "loopwhile");
-    keywordMap.put("sealed", "lockedclass");
-    keywordMap.put("permits", "allows");
-}
+    // Built the first time it is asked for, by the JVM's lazy class
+    // initialization of the holder, and immutable after that, so Parsers on
+    // any number of threads can read it without locking. A run that never
+    // asks for it never builds it. Parser and Lexer instances themselves hold
+    // per-run state; use one per run.
+    private static final class Keywords {
+        static final Map<String, String> MAP = build();
+
+        private static Map<String, String> build() {
+            Map<String, String> keywords = new HashMap<>();
+            keywords.put("print", "publish");
+            keywords.put("start", "begin");
+            keywords.put("end", "}");
+            keywords.put("boolean", "truf");
+            keywords.put("if", "suppose");
+            keywords.put("else", "otherwise");
+            keywords.put("new", "create");
+            keywords.put("null", "empty");
+            keywords.put("private", "internal");
+            keywords.put("protected", "inheritable");
+            keywords.put("public", "global");
+            keywords.put("return", "giveback");
+            keywords.put("short", "smallnum");
+            keywords.put("static", "common");
+            keywords.put("strictfp", "fixedfloat");
+            keywords.put("super", "parent");
+            keywords.put("switch", "decide");
+            keywords.put("this", "self");
+            keywords.put("throw", "raise");
+            keywords.put("throws", "maygive");
+            keywords.put("transient", "skipstore");
+            keywords.put("try", "attemptblock");
+            keywords.put("void", "nothing");
+            keywords.put("volatile", "instable");
+            keywords.put("while", "loopwhile");
+            keywords.put("sealed", "lockedclass");
+            keywords.put("permits", "allows");
+            return Map.copyOf(keywords);
+        }
+    }
 
     public static Map<String, String> getKeywordMap() {
-        return keywordMap;
+        return Keywords.MAP;
+    }
+
+    private final OutputSink out;
+
+    public Parser() {
+        this(OutputSink.console());
+    }
+
+    public Parser(OutputSink out) {
+        this(out, Integer.MAX_VALUE);
+    }
+
+    // maxGlobals bounds each global and function table, as in Lexer.table()
+    public Parser(OutputSink out, int maxGlobals) {
+        this.out = out;
+        this.numberArrays = Lexer.table(maxGlobals);
+        this.stringArrays = Lexer.table(maxGlobals);
+        this.globalNumVars = Lexer.table(maxGlobals);
+        this.globalStrVars = Lexer.table(maxGlobals);
+        this.functionBodyMap = Lexer.table(maxGlobals);
+        this.functionParams = Lexer.table(maxGlobals);
     }
 
-    private final Map<String, List<String>> functionBodyMap = new HashMap<>();
-    private final Map<String, List<String>> functionParams = new HashMap<>();
+    // Function table: parameter names and the recognized body, built once at
+    // definition time so that calls never look at source text again
+    private final Map<String, List<Statement>> functionBodyMap;
+    private final Map<String, String[]> functionParams;
     private boolean insideFunction = false;
     private String currentFunction = "";
-    private final List<String> currentFunctionBody = new ArrayList<>();
+    private final List<Statement> currentFunctionBody = new ArrayList<>();
 private Map<String, Boolean> globalBoolVars = new HashMap<>();
 
-    private final Map<String, List<Double>> numberArrays = new HashMap<>();
-    private final Map<String, List<String>> stringArrays = new HashMap<>();
+    private final Map<String, double[]> numberArrays;
+    private final Map<String, String[]> stringArrays;
 
     // Global variables
-    private Map<String, Double> globalNumVars = new HashMap<>();
-    private Map<String, String> globalStrVars = new HashMap<>();
+    private final Map<String, Double> globalNumVars;
+    private final Map<String, String> globalStrVars;
 
 
     public void analyzeLine(String line) {
@@ -59,252 +91,221 @@ private Map<String, Boolean> globalBoolVars = new HashMap<>();
     }
 
     public void analyzeLine(String line, int lineNumber) {
+        if (!Instrumentation.isEnabled()) {
+            checkLine(line, lineNumber);
+            return;
+        }
+        long start = System.nanoTime();
+        checkLine(line, lineNumber);
+        Instrumentation.record(Instrumentation.Phase.PARSE, System.nanoTime() - start);
+    }
+
+    private void checkLine(String line, int lineNumber) {
         line = line.trim();
-        if (lineNumber != -1 && !line.matches("/\\*.*\\*/")) {
-            System.out.println("[Line " + lineNumber + "] " + line);
+        if (lineNumber != -1 && !(line.startsWith("/*") && line.endsWith("*/") && line.length() >= 4)) {
+            if (out.isTracing()) out.trace("[Line " + lineNumber + "] " + line);
         }
 
+        Statement statement = StatementRecognizer.recognize(line);
+
         //  Skip comments
-        if (line.startsWith("/\\") && line.endsWith("/\\")) return;
+        if (statement.kind == Statement.Kind.COMMENT) return;
 
         //  Function support
-        if (line.startsWith("func ")) {
-            parseFunctionDefinition(line, lineNumber);
+        if ("func".equals(statement.keyword)) {
+            parseFunctionDefinition(statement, line, lineNumber);
             insideFunction = true;
             return;
         }
 
-        if (line.equals("}")) {
+        if (statement.kind == Statement.Kind.BLOCK_END) {
             if (insideFunction) {
-                functionBodyMap.put(currentFunction, new ArrayList<>(currentFunctionBody));
+                functionBodyMap.put(currentFunction, List.copyOf(currentFunctionBody));
                 currentFunctionBody.clear();
                 insideFunction = false;
-                System.out.println("Function '" + currentFunction + "' body saved.");
+                if (out.isTracing()) out.trace("Function '" + currentFunction + "' body saved.");
                 currentFunction = "";
             }
             return;
         }
 
         if (insideFunction) {
-            currentFunctionBody.add(line);
+            currentFunctionBody.add(statement);
             return;
         }
 
-        if (line.startsWith("call ")) {
-            callFunction(line, lineNumber);
+        if ("call".equals(statement.keyword)) {
+            callFunction(statement, line, lineNumber);
             return;
         }
 
-        // ✅ Parse number variable assignment
-        Matcher m = Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\d+(\\.\\d+)?);").matcher(line);
-        if (m.matches()) {
-            String var = m.group(1);
-            double val = Double.parseDouble(m.group(2));
-            globalNumVars.put(var, val);
-            System.out.println("Assigned: " + var + " = " + val);
-            return;
+        // Every remaining statement must end with ';'
+        if (!statement.terminated) return;
+
+        switch (statement.kind) {
+            case NUMBER_ASSIGN:     assignNumber(statement); break;
+            case EXPRESSION:        evaluateExpression(statement); break;
+            case NUMBER_ARRAY:      storeNumberArray(statement); break;
+            case STRING_ARRAY:      storeStringArray(statement); break;
+            case PUBLISH:           if (statement.parenthesized) publish(statement); break;
+            case PUBLISH_INDEX:     if (statement.parenthesized) publishElement(statement); break;
+            default: break;
         }
 
-        // ✅ Parse arithmetic expression assignment
-        m = Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\w+)\\s*([+\\-*/])\\s*(\\w+);").matcher(line);
-        if (m.matches()) {
-            String var = m.group(1);
-            Double left = getValue(m.group(2), globalNumVars);
-            Double right = getValue(m.group(4), globalNumVars);
-            String op = m.group(3);
+     //   System.out.println("Syntax Error or unrecognized line: " + line);
+    }
 
-            if (left == null || right == null) {
-                System.out.println("Error: Undefined variable in expression.");
-                return;
-            }
+    // ✅ Parse number variable assignment
+    private void assignNumber(Statement statement) {
+        double val = Double.parseDouble(statement.value);
+        globalNumVars.put(statement.name, val);
+        if (out.isTracing()) out.trace("Assigned: " + statement.name + " = " + val);
+    }
 
-            double result = switch (op) {
-                case "+" -> left + right;
-                case "-" -> left - right;
-                case "*" -> left * right;
-                case "/" -> right != 0 ? left / right : Double.NaN;
-                default -> 0;
-            };
+    // ✅ Parse arithmetic expression assignment
+    private void evaluateExpression(Statement statement) {
+        evaluateInto(statement, globalNumVars);
+    }
 
-            globalNumVars.put(var, result);
-            System.out.println("Assigned: " + var + " = " + result);
-            return;
-        }
+    // ✅ Parse number array assignment
+    private void storeNumberArray(Statement statement) {
+        double[] values = statement.numbers;
+        numberArrays.put(statement.name, values);
+        if (out.isTracing()) out.trace("Stored array '" + statement.name + "' = " + Arrays.toString(values));
+    }
 
-        // ✅ Parse number array assignment
-        m = Pattern.compile("number\\[\\]\\s+(\\w+)\\s*=\\s*\\{([^}]*)\\};").matcher(line);
-        if (m.matches()) {
-            String name = m.group(1);
-            String[] nums = m.group(2).split(",");
-            List<Double> list = new ArrayList<>();
-            for (String n : nums) list.add(Double.valueOf(n.trim()));
-            numberArrays.put(name, list);
-            System.out.println("Stored array '" + name + "' = " + list);
-            return;
-        }
+    // Parse string array assignment
+    private void storeStringArray(Statement statement) {
+        String[] values = statement.items.toArray(new String[0]);
+        stringArrays.put(statement.name, values);
+        if (out.isTracing()) out.trace("Stored string array '" + statement.name + "' = " + Arrays.toString(values));
+    }
 
-        // Parse string array assignment
-        m = Pattern.compile("Alphan\\[\\]\\s+(\\w+)\\s*=\\s*\\{\\s*\"([^\"]+)\"(?:\\s*,\\s*\"([^\"]+)\")*\\s*\\};").matcher(line);
-        if (line.startsWith("Alphan[")) {
-            String[] parts = line.split("=", 2);
-            String name = parts[0].replace("Alphan[]", "").trim();
-            String content = parts[1].replaceAll("[{};]", "").trim();
-            String[] strings = content.split(",");
-            List<String> list = new ArrayList<>();
-            for (String s : strings) list.add(s.trim().replace("\"", ""));
-            stringArrays.put(name, list);
-            System.out.println("Stored string array '" + name + "' = " + list);
-            return;
+    // ✅ Handle publish(variable)
+    private void publish(Statement statement) {
+        String var = statement.name;
+        if (globalNumVars.containsKey(var)) {
+            out.publish("Output → " + globalNumVars.get(var));
+        } else {
+            out.error("Error: Variable '" + var + "' not found.");
         }
+    }
 
-        // ✅ Handle publish(variable)
-        m = Pattern.compile("publish\\((\\w+)\\);").matcher(line);
-        if (m.matches()) {
-            String var = m.group(1);
-            if (globalNumVars.containsKey(var)) {
-                System.out.println("Output → " + globalNumVars.get(var));
+    // Handle publish(array[index])
+    private void publishElement(Statement statement) {
+        String arr = statement.name;
+        int index = statement.index;
+        if (numberArrays.containsKey(arr)) {
+            double[] values = numberArrays.get(arr);
+            if (index < values.length) {
+                out.publish("Output : " + values[index]);
             } else {
-                System.out.println("Error: Variable '" + var + "' not found.");
+                out.error("Error: Index out of bounds for array '" + arr + "'");
             }
-            return;
-        }
-
-        // Handle publish(array[index])
-        m = Pattern.compile("publish\\((\\w+)\\[(\\d+)\\]\\);").matcher(line);
-        if (m.matches()) {
-            String arr = m.group(1);
-            int index = Integer.parseInt(m.group(2));
-            if (numberArrays.containsKey(arr)) {
-                List<Double> list = numberArrays.get(arr);
-                if (index < list.size()) {
-                    System.out.println("Output : " + list.get(index));
-                } else {
-                    System.out.println("Error: Index out of bounds for array '" + arr + "'");
-                }
-            } else if (stringArrays.containsKey(arr)) {
-                List<String> list = stringArrays.get(arr);
-                if (index < list.size()) {
-                    System.out.println("Output : " + list.get(index));
-                } else {
-                    System.out.println("Error: Index out of bounds for array '" + arr + "'");
-                }
+        } else if (stringArrays.containsKey(arr)) {
+            String[] values = stringArrays.get(arr);
+            if (index < values.length) {
+                out.publish("Output : " + values[index]);
             } else {
-                System.out.println("Error: Array '" + arr + "' not found.");
+                out.error("Error: Index out of bounds for array '" + arr + "'");
             }
+        } else {
+            out.error("Error: Array '" + arr + "' not found.");
         }
-
-     //   System.out.println("Syntax Error or unrecognized line: " + line);
     }
 
-    private void parseFunctionDefinition(String line, int lineNumber) {
-        Pattern pattern = Pattern.compile("func\\s+(\\w+)\\s*\\((.*?)\\)\\s*\\{");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            currentFunction = matcher.group(1).trim();
-            String paramsStr = matcher.group(2).trim();
-            List<String> params = new ArrayList<>();
-            if (!paramsStr.isEmpty()) {
-                for (String p : paramsStr.split(",")) {
-                    params.add(p.trim());
-                }
+    private void parseFunctionDefinition(Statement statement, String line, int lineNumber) {
+        if (statement.kind == Statement.Kind.FUNC_DEF) {
+            currentFunction = statement.name;
+            List<String> params = statement.items;
+            String[] names = new String[params.size()];
+            for (int i = 0; i < names.length; i++) {
+                String param = params.get(i);
+                names[i] = param.substring(param.indexOf(' ') + 1).trim();
             }
-            functionParams.put(currentFunction, params);
-            System.out.println("Function '" + currentFunction + "' defined with parameters " + params);
+            functionParams.put(currentFunction, names);
+            if (out.isTracing()) out.trace("Function '" + currentFunction + "' defined with parameters " + params);
         } else {
-            System.out.println("Syntax Error at line " + lineNumber + ": Invalid function declaration -> " + line);
+            out.error("Syntax Error at line " + lineNumber + ": Invalid function declaration -> " + line);
         }
     }
 
-    private void callFunction(String line, int lineNumber) {
-        Pattern pattern = Pattern.compile("call\\s+(\\w+)\\s*\\((.*?)\\);");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String funcName = matcher.group(1);
-            String argsStr = matcher.group(2);
-            List<String> args = new ArrayList<>();
-            if (!argsStr.isEmpty()) {
-                for (String a : argsStr.split(",")) {
-                    args.add(a.trim());
-                }
-            }
-            executeFunction(funcName, args, lineNumber);
+    private void callFunction(Statement statement, String line, int lineNumber) {
+        if (statement.kind == Statement.Kind.CALL && statement.terminated) {
+            executeFunction(statement.name, statement.items, lineNumber);
         } else {
-            System.out.println("Syntax Error at line " + lineNumber + ": Invalid call statement -> " + line);
+            out.error("Syntax Error at line " + lineNumber + ": Invalid call statement -> " + line);
         }
     }
 
     private void executeFunction(String funcName, List<String> args, int lineNumber) {
         if (!functionBodyMap.containsKey(funcName)) {
-            System.out.println("Error at line " + lineNumber + ": Function '" + funcName + "' not found.");
+            out.error("Error at line " + lineNumber + ": Function '" + funcName + "' not found.");
             return;
         }
 
-        List<String> params = functionParams.get(funcName);
-        if (params == null || args.size() != params.size()) {
-            System.out.println("Error at line " + lineNumber + ": Parameter count mismatch for function '" + funcName + "'");
+        String[] params = functionParams.get(funcName);
+        if (params == null || args.size() != params.length) {
+            out.error("Error at line " + lineNumber + ": Parameter count mismatch for function '" + funcName + "'");
             return;
         }
 
         Map<String, Double> localNumVars = new HashMap<>();
-        for (int i = 0; i < params.size(); i++) {
-            String param = params.get(i).split(" ")[1];
+        for (int i = 0; i < params.length; i++) {
             try {
                 double val = Double.parseDouble(args.get(i));
-                localNumVars.put(param, val);
+                localNumVars.put(params[i], val);
             } catch (NumberFormatException e) {
-                System.out.println("Error: Invalid number '" + args.get(i) + "'");
+                out.error("Error: Invalid number '" + args.get(i) + "'");
                 return;
             }
         }
 
-        for (String line : functionBodyMap.get(funcName)) {
-            executeFunctionLine(line, localNumVars);
+        for (Statement statement : functionBodyMap.get(funcName)) {
+            executeFunctionLine(statement, localNumVars);
         }
     }
 
-    private void executeFunctionLine(String line, Map<String, Double> localNumVars) {
-        line = line.trim();
-
-        Pattern assign = Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\w+)\\s*([+\\-*/])\\s*(\\w+);");
-        Matcher matcher = assign.matcher(line);
-        if (matcher.find()) {
-            String var = matcher.group(1);
-            Double left = getValue(matcher.group(2), localNumVars);
-            Double right = getValue(matcher.group(4), localNumVars);
-            String op = matcher.group(3);
-
-            if (left == null || right == null) {
-                System.out.println("Error: Undefined variable in expression.");
-                return;
-            }
-
-            double result = switch (op) {
-                case "+" -> left + right;
-                case "-" -> left - right;
-                case "*" -> left * right;
-                case "/" -> right != 0 ? left / right : Double.NaN;
-                default -> 0;
-            };
-
-            localNumVars.put(var, result);
-            System.out.println("Assigned: " + var + " = " + result);
+    private void executeFunctionLine(Statement statement, Map<String, Double> localNumVars) {
+        if (statement.kind == Statement.Kind.EXPRESSION) {
+            evaluateInto(statement, localNumVars);
             return;
         }
 
-        Pattern pub = Pattern.compile("publish\\s+(\\w+);");
-        matcher = pub.matcher(line);
-        if (matcher.find()) {
-            String var = matcher.group(1);
+        if (statement.kind == Statement.Kind.PUBLISH) {
+            String var = statement.name;
             Double val = localNumVars.get(var);
             if (val != null) {
-                System.out.println("Output : " + val);
+                out.publish("Output : " + val);
             } else {
-                System.out.println("Error: Variable '" + var + "' not found.");
+                out.error("Error: Variable '" + var + "' not found.");
             }
             return;
         }
 
-        System.out.println("Syntax Error: Unrecognized line in function: " + line);
+        out.error("Syntax Error: Unrecognized line in function: " + statement.text);
+    }
+
+    private void evaluateInto(Statement statement, Map<String, Double> numVars) {
+        String var = statement.name;
+        Double left = getValue(statement.left, numVars);
+        Double right = getValue(statement.right, numVars);
+
+        if (left == null || right == null) {
+            out.error("Error: Undefined variable in expression.");
+            return;
+        }
+
+        double result = switch (statement.operator) {
+            case '+' -> left + right;
+            case '-' -> left - right;
+            case '*' -> left * right;
+            case '/' -> right != 0 ? left / right : Double.NaN;
+            default -> 0;
+        };
+
+        numVars.put(var, result);
+        if (out.isTracing()) out.trace("Assigned: " + var + " = " + result);
     }
 
     private Double getValue(String var, Map<String, Double> numVars) {
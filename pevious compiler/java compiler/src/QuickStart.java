@@ -0,0 +1,181 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+
+// Runs one script with as little start-up work as possible. MainCompiler
+// lists and sorts a folder, builds its batch task from lambdas and sets up
+// instrumentation before the first line runs; here the file goes straight
+// to its engine, and what an engine needs (Parser keywords, latency
+// histograms, the jvm engine's class loader) is only initialized when
+// something first uses it.
+//
+// What is left is the JVM loading and linking classes. --train packs the
+// class path into a jar and runs a workload that touches every engine in a
+// child JVM, which dumps every class it loaded into a class data sharing
+// archive. Runs that map the archive skip most of that work:
+//
+//   java -cp out QuickStart --train=ht.jsa
+//   java -XX:SharedArchiveFile=ht.jsa -jar ht.jar hello.ht
+//
+// Usage: QuickStart [--engine=legacy|vm|jvm] [--quiet] FILE.ht
+//        QuickStart --train[=ARCHIVE]     (default ht.jsa, jar next to it)
+public class QuickStart {
+
+    static final String DEFAULT_ARCHIVE = "ht.jsa";
+    private static final String WORKLOAD = "--workload";   // what the training JVM runs
+
+    // Scripts for the training run: hello.ht, the legacy samples' statements
+    // and control flow for the compiled engines
+    static final String HELLO = String.join("\n",
+        "begin main {",
+        "    Alphan name = \"Ali\";",
+        "    publish(name);",
+        "    number age = 25;",
+        "    publish(age);",
+        "}",
+        "");
+    private static final String[] TRAINING = {
+        HELLO,
+        String.join("\n",
+            "func sum(number a, number b) {",
+            "    number result = a + b;",
+            "    publish result;",
+            "}",
+            "begin main {",
+            "    number x = 20;",
+            "    number y = 4;",
+            "    Alphan[] students = { \"Ali\", \"Sara\", \"Zara\" };",
+            "    number[] scores = { 98, 85.5, 74, 90 };",
+            "    publish(students[1]);",
+            "    publish(scores[2]);",
+            "    number quotient = x / y;",
+            "    publish(quotient - x * y);",
+            "    call sum(10, 5);",
+            "}",
+            ""),
+        String.join("\n",
+            "number i = 0;",
+            "number total = 0;",
+            "loopwhile (i < 100) {",
+            "    suppose (i > 50) { number total = total + i; } otherwise { number total = total - 1; }",
+            "    number i = i + 1;",
+            "}",
+            "publish(total);",
+            ""),
+    };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String engine = "legacy";
+        boolean quiet = false;
+        String file = null;
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.equals("--quiet")) {
+                quiet = true;
+            } else if (arg.equals("--train")) {
+                train(Path.of(DEFAULT_ARCHIVE));
+                return;
+            } else if (arg.startsWith("--train=")) {
+                train(Path.of(arg.substring("--train=".length())));
+                return;
+            } else if (arg.equals(WORKLOAD)) {
+                workload();
+                return;
+            } else if (arg.startsWith("--") || file != null) {
+                System.out.println("Unknown option: " + arg);
+                return;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: QuickStart [--engine=legacy|vm|jvm] [--quiet] FILE.ht | --train[=ARCHIVE]");
+            return;
+        }
+        if (!engine.equals("legacy") && !engine.equals("vm") && !engine.equals("jvm")) {
+            System.out.println("Unknown engine '" + engine + "', expected legacy, vm or jvm.");
+            return;
+        }
+        run(new File(file), engine, quiet ? new QuietSink(System.out) : new BufferedSink(System.out));
+    }
+
+    // The same path MainCompiler takes for one file, without anything around it
+    static void run(File file, String engine, OutputSink out) {
+        MainCompiler.processFile(file, out, engine, false, null, null, false, ExecutionBudget.defaults());
+        out.flush();
+    }
+
+    // Every training script on every engine, through the same code as a real run
+    private static void workload() throws IOException {
+        Path dir = Files.createTempDirectory("ht-train");
+        OutputSink out = new QuietSink(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < TRAINING.length; i++) {
+                Path script = Files.writeString(dir.resolve("train" + i + ".ht"), TRAINING[i]);
+                for (String engine : new String[] {"legacy", "vm", "jvm"}) run(script.toFile(), engine, out);
+                Files.delete(script);
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    // Writes the archive and, unless this JVM already runs from one, the jar
+    // it belongs to, and returns the jar. Class data sharing only takes
+    // classes from jars, and checks at start-up that the jar is the one the
+    // archive was made from.
+    public static Path train(Path archive) throws IOException, InterruptedException {
+        String classPath = System.getProperty("java.class.path");
+        Path jar;
+        if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+            jar = Path.of(classPath);
+        } else {
+            String name = archive.getFileName().toString();
+            jar = archive.resolveSibling(name.replaceFirst("\\.jsa$", "") + ".jar");
+            System.out.println("Packed " + writeJar(jar) + " classes into " + jar);
+        }
+        Files.deleteIfExists(archive);
+
+        List<String> command = List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-XX:ArchiveClassesAtExit=" + archive,
+            "-cp", jar.toString(),
+            "QuickStart", WORKLOAD);
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0 || !Files.exists(archive)) {
+            System.out.println("❌ Training run failed; no archive written to " + archive);
+            return jar;
+        }
+        System.out.println("Archived the training run in " + archive + " (" + Files.size(archive) / 1024 + " KB)");
+        System.out.println("Run scripts with: java -XX:SharedArchiveFile=" + archive + " -jar " + jar + " FILE.ht");
+        return jar;
+    }
+
+    // Every class file of the class path directories, runnable with -jar
+    private static int writeJar(Path jar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "QuickStart");
+        int count = 0;
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                Path root = Path.of(entry);
+                if (!Files.isDirectory(root)) continue;
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "*.class")) {
+                    for (Path file : stream) files.add(file);
+                }
+                Collections.sort(files);
+                for (Path file : files) {
+                    out.putNextEntry(new JarEntry(file.getFileName().toString()));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.*;
+
+// Keeps only publish output; traces and errors are dropped
+// before any message text is built.
+public class QuietSink extends BufferedSink {
+
+    public QuietSink(PrintStream out) {
+        super(out);
+    }
+
+    @Override
+    public void trace(String text) {
+    }
+
+    @Override
+    public void error(String text) {
+    }
+
+    @Override
+    public boolean isTracing() {
+        return false;
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.*;
+
+// Name resolution and type checking over an Ast.Program. Every variable gets
+// a fixed slot: numbers are numbered in a double frame, strings and arrays in
+// an Object frame, separately for the globals and for each function. The
+// backends read these slots instead of looking names up while running, and
+// every undefined name or type mismatch is reported here, before anything runs.
+//
+// A suppose or loopwhile body is a block: a name first declared inside it
+// goes out of scope at its closing brace, while declaring a name that is
+// already in scope assigns to that variable, as everywhere else.
+public class Resolver implements Ast.StmtVisitor<Void>, Ast.ExprVisitor<ValueType> {
+
+    public static final class Binding {
+        public final String name;
+        public final ValueType type;
+        public final boolean global;
+        public final int slot;      // index into the double frame or the Object frame, by type
+
+        Binding(String name, ValueType type, boolean global, int slot) {
+            this.name = name;
+            this.type = type;
+            this.global = global;
+            this.slot = slot;
+        }
+    }
+
+    // Frame layout of the globals or of one function
+    public static final class Frame {
+        public final Map<String, Binding> bindings = new LinkedHashMap<>();
+        public final List<Binding> params = new ArrayList<>();
+        public int numberSlots = 0;
+        public int objectSlots = 0;
+
+        Binding add(String name, ValueType type, boolean global) {
+            int slot = type.isNumber() ? numberSlots++ : objectSlots++;
+            Binding binding = new Binding(name, type, global, slot);
+            bindings.put(name, binding);
+            return binding;
+        }
+    }
+
+    public static final class Result {
+        public final Ast.Program program;
+        public final Frame globals;
+        public final Map<String, Integer> functionIndex = new HashMap<>();
+        public final List<Frame> functionFrames = new ArrayList<>();
+        private final Map<Ast.Node, Binding> bindings = new IdentityHashMap<>();
+        private final Map<Ast.Expr, ValueType> types = new IdentityHashMap<>();
+
+        Result(Ast.Program program, Frame globals) {
+            this.program = program;
+            this.globals = globals;
+        }
+
+        // Variable, Index, Declare and DeclareArray nodes resolve to the variable they touch
+        public Binding binding(Ast.Node node) {
+            return bindings.get(node);
+        }
+
+        public ValueType type(Ast.Expr e) {
+            return types.get(e);
+        }
+
+        public Frame frame(Ast.Function f) {
+            return functionFrames.get(functionIndex.get(f.name));
+        }
+    }
+
+    private final Result result;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private Frame frame;                 // the frame being filled in
+    private boolean inFunction;
+    private Set<String> scope;           // names declared so far that are still in scope
+
+    private Resolver(Ast.Program program) {
+        result = new Result(program, new Frame());
+    }
+
+    public static Result resolve(Ast.Program program) {
+        return new Resolver(program).run();
+    }
+
+    private Result run() {
+        Ast.Program program = result.program;
+        for (int i = 0; i < program.functions.size(); i++) {
+            Ast.Function f = program.functions.get(i);
+            if (result.functionIndex.putIfAbsent(f.name, i) != null) {
+                error(f, "Function '" + f.name + "' is already defined");
+            }
+            result.functionFrames.add(new Frame());
+        }
+
+        // Globals are the variables declared in main. Functions may use any of them,
+        // while main itself may only use a variable after its declaration.
+        Frame globals = result.globals;
+        Map<String, ValueType> globalTypes = new LinkedHashMap<>();
+        collectGlobals(program.statements, globalTypes);
+        for (Map.Entry<String, ValueType> g : globalTypes.entrySet()) globals.add(g.getKey(), g.getValue(), true);
+
+        inFunction = false;
+        scope = new HashSet<>();
+        for (Ast.Stmt s : program.statements) s.accept(this);
+
+        inFunction = true;
+        for (int i = 0; i < program.functions.size(); i++) {
+            Ast.Function f = program.functions.get(i);
+            if (result.functionIndex.get(f.name) != i) continue;
+            frame = result.functionFrames.get(i);
+            scope = new HashSet<>();
+            for (Ast.Param p : f.params) {
+                if (frame.bindings.containsKey(p.name)) error(p, "Duplicate parameter '" + p.name + "'");
+                frame.params.add(frame.add(p.name, ValueType.of(p.type, false), false));
+                scope.add(p.name);
+            }
+            for (Ast.Stmt s : f.body) s.accept(this);
+        }
+
+        if (!diagnostics.isEmpty()) {
+            diagnostics.sort(Comparator.comparingInt((Diagnostic d) -> d.line).thenComparingInt(d -> d.column));
+            throw new CompileException(diagnostics);
+        }
+        return result;
+    }
+
+    // Every declaration in main is a global, however deeply it is nested
+    private void collectGlobals(List<Ast.Stmt> statements, Map<String, ValueType> globalTypes) {
+        for (Ast.Stmt s : statements) {
+            if (s instanceof Ast.Declare d) declareGlobal(globalTypes, s, d.name, ValueType.of(d.type, false));
+            if (s instanceof Ast.DeclareArray d) declareGlobal(globalTypes, s, d.name, ValueType.of(d.type, true));
+            if (s instanceof Ast.If b) {
+                collectGlobals(b.then, globalTypes);
+                collectGlobals(b.otherwise, globalTypes);
+            }
+            if (s instanceof Ast.While w) collectGlobals(w.body, globalTypes);
+        }
+    }
+
+    private void declareGlobal(Map<String, ValueType> globalTypes, Ast.Node node, String name, ValueType type) {
+        ValueType previous = globalTypes.putIfAbsent(name, type);
+        if (previous != null && previous != type) {
+            error(node, "Variable '" + name + "' is already declared as " + previous.describe());
+        }
+    }
+
+    private Binding lookup(String name) {
+        if (inFunction) {
+            Binding local = scope.contains(name) ? frame.bindings.get(name) : null;
+            return local != null ? local : result.globals.bindings.get(name);
+        }
+        return scope.contains(name) ? result.globals.bindings.get(name) : null;
+    }
+
+    private void declare(Ast.Node node, String name, ValueType type) {
+        Binding binding;
+        if (inFunction) {
+            // A name keeps one slot and one type for the whole function, even
+            // when a later block declares it again
+            binding = frame.bindings.get(name);
+            if (binding == null) binding = frame.add(name, type, false);
+        } else {
+            binding = result.globals.bindings.get(name);
+        }
+        scope.add(name);
+        if (inFunction && binding.type != type) {
+            error(node, "Variable '" + name + "' is already declared as " + binding.type.describe());
+        }
+        result.bindings.put(node, binding);
+    }
+
+    // ------------------------------------------------------------- statements
+
+    public Void visitDeclare(Ast.Declare s) {
+        ValueType type = ValueType.of(s.type, false);
+        expect(s.value, type);
+        declare(s, s.name, type);
+        return null;
+    }
+
+    public Void visitDeclareArray(Ast.DeclareArray s) {
+        ValueType element = ValueType.of(s.type, false);
+        for (Ast.Expr e : s.elements) expect(e, element);
+        declare(s, s.name, ValueType.of(s.type, true));
+        return null;
+    }
+
+    public Void visitPublish(Ast.Publish s) {
+        ValueType type = s.value.accept(this);
+        if (type == ValueType.NUMBER_ARRAY || type == ValueType.STRING_ARRAY) error(s, "Cannot publish a whole array");
+        return null;
+    }
+
+    public Void visitCall(Ast.Call s) {
+        Integer index = result.functionIndex.get(s.name);
+        if (index == null) {
+            error(s, "Function '" + s.name + "' not defined");
+            return null;
+        }
+        Ast.Function f = result.program.functions.get(index);
+        if (f.params.size() != s.args.size()) {
+            error(s, "Argument count mismatch for function '" + s.name + "': expected "
+                    + f.params.size() + ", got " + s.args.size());
+            return null;
+        }
+        for (int i = 0; i < s.args.size(); i++) {
+            expect(s.args.get(i), ValueType.of(f.params.get(i).type, false));
+        }
+        return null;
+    }
+
+    public Void visitIf(Ast.If s) {
+        condition(s.condition);
+        block(s.then);
+        block(s.otherwise);
+        return null;
+    }
+
+    public Void visitWhile(Ast.While s) {
+        condition(s.condition);
+        block(s.body);
+        return null;
+    }
+
+    private void block(List<Ast.Stmt> statements) {
+        Set<String> outer = new HashSet<>(scope);
+        for (Ast.Stmt s : statements) s.accept(this);
+        scope.retainAll(outer);
+    }
+
+    private void condition(Ast.Condition c) {
+        expect(c.left, ValueType.NUMBER);
+        expect(c.right, ValueType.NUMBER);
+    }
+
+    // ------------------------------------------------------------ expressions
+
+    private void expect(Ast.Expr e, ValueType type) {
+        ValueType actual = e.accept(this);
+        if (actual != type) error(e, "Expected " + type.describe() + " but found " + actual.describe());
+    }
+
+    private ValueType typed(Ast.Expr e, ValueType type) {
+        result.types.put(e, type);
+        return type;
+    }
+
+    public ValueType visitNumber(Ast.NumberLiteral e) {
+        return typed(e, ValueType.NUMBER);
+    }
+
+    public ValueType visitString(Ast.StringLiteral e) {
+        return typed(e, ValueType.STRING);
+    }
+
+    public ValueType visitVariable(Ast.Variable e) {
+        Binding binding = lookup(e.name);
+        if (binding == null) {
+            error(e, "Variable '" + e.name + "' not found");
+            return typed(e, ValueType.NUMBER);
+        }
+        result.bindings.put(e, binding);
+        return typed(e, binding.type);
+    }
+
+    public ValueType visitIndex(Ast.Index e) {
+        Binding binding = lookup(e.name);
+        expect(e.index, ValueType.NUMBER);
+        if (binding == null) {
+            error(e, "Array '" + e.name + "' not found");
+            return typed(e, ValueType.NUMBER);
+        }
+        result.bindings.put(e, binding);
+        if (binding.type == ValueType.NUMBER_ARRAY) return typed(e, ValueType.NUMBER);
+        if (binding.type == ValueType.STRING_ARRAY) return typed(e, ValueType.STRING);
+        error(e, "'" + e.name + "' is not an array");
+        return typed(e, ValueType.NUMBER);
+    }
+
+    public ValueType visitBinary(Ast.Binary e) {
+        expect(e.left, ValueType.NUMBER);
+        expect(e.right, ValueType.NUMBER);
+        return typed(e, ValueType.NUMBER);
+    }
+
+    public ValueType visitNegate(Ast.Negate e) {
+        expect(e.operand, ValueType.NUMBER);
+        return typed(e, ValueType.NUMBER);
+    }
+
+    private void error(Ast.Node node, String message) {
+        diagnostics.add(new Diagnostic("Error", node.line, node.column, message));
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Source lines for the benchmark mains: the non-blank lines of the .ht files
+// in programs/, in file order, or FALLBACK when there are none, e.g. when a
+// benchmark is started outside "pevious compiler".
+final class SampleLines {
+
+    // One line of every statement kind the benchmarks tell apart
+    static final List<String> FALLBACK = List.of(
+        "func sum(number a, number b) {",
+        "    number result = a + b;",
+        "    publish(result);",
+        "}",
+        "/\\ sample program /\\",
+        "number x = 20;",
+        "number y = 4;",
+        "number total = x + y;",
+        "number[] scores = { 98, 85.5, 74, 90 };",
+        "Alphan[] students = { \"Ali\", \"Sara\", \"Zara\" };",
+        "publish(scores[2]);",
+        "call sum(10, 5);"
+    );
+
+    private SampleLines() {
+    }
+
+    static List<String> sample() throws IOException {
+        List<String> sample = new ArrayList<>();
+        File[] files = new File("programs").listFiles((dir, name) -> name.endsWith(".ht"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                for (String line : Files.readAllLines(file.toPath())) {
+                    if (!line.isBlank()) sample.add(line);
+                }
+            }
+        }
+        return sample.isEmpty() ? FALLBACK : sample;
+    }
+
+    // The sample repeated until there are count lines
+    static List<String> load(int count) throws IOException {
+        List<String> sample = sample();
+        List<String> lines = new ArrayList<>(count);
+        while (lines.size() < count) lines.add(sample.get(lines.size() % sample.size()));
+        return lines;
+    }
+}
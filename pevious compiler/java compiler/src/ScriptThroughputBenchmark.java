@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Service-style throughput of one HtScript shared by many threads: the
+// script is compiled once per engine, then every thread runs it back to back
+// for a fixed time, each run with its own sink. Every run's output is
+// checked against a single-threaded run, so a race between runs shows up as
+// a failure instead of a better score.
+//
+// Usage: ScriptThroughputBenchmark [MAX_THREADS] [SECONDS_PER_STEP]
+public class ScriptThroughputBenchmark {
+
+    // A small request handler: a function, a literal table and a loop
+    static final String SCRIPT = String.join("\n",
+        "func tax(number amount) {",
+        "    number due = amount * 0.2;",
+        "    suppose (due > 100) { number due = 100; }",
+        "    publish(due);",
+        "}",
+        "number[] prices = { 12.5, 99, 430, 18.25, 75, 1200 };",
+        "Alphan[] names = { \"tea\", \"desk\", \"chair\", \"pen\", \"lamp\", \"sofa\" };",
+        "number total = 0;",
+        "number i = 0;",
+        "loopwhile (i < 6) {",
+        "    number total = total + prices[i];",
+        "    number i = i + 1;",
+        "}",
+        "publish(names[2]);",
+        "publish(total);",
+        "call tax(total);",
+        "");
+
+    // Hashes what a run publishes; allocation-free apart from the texts the
+    // engine builds anyway
+    private static final class ChecksumSink implements OutputSink {
+        long hash = 17;
+
+        public void publish(String text) {
+            hash = hash * 31 + text.hashCode();
+        }
+
+        public void trace(String text) {
+        }
+
+        public void error(String text) {
+            hash = hash * 31 - text.hashCode();
+        }
+
+        public boolean isTracing() {
+            return false;
+        }
+    }
+
+    private static long expected(HtScript script) {
+        ChecksumSink out = new ChecksumSink();
+        script.run(out);
+        return out.hash;
+    }
+
+    // Returns runs per second over all threads
+    private static double measure(HtScript script, int threads, long millis, long expected) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicLong runs = new AtomicLong();
+        AtomicLong wrong = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                ready.countDown();
+                go.await();
+                long deadline = System.nanoTime() + millis * 1_000_000;
+                long count = 0;
+                do {
+                    ChecksumSink out = new ChecksumSink();
+                    script.run(out);
+                    if (out.hash != expected) wrong.incrementAndGet();
+                    count++;
+                } while (System.nanoTime() < deadline);
+                runs.addAndGet(count);
+                return null;
+            }));
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> worker : workers) worker.get();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        if (wrong.get() != 0) {
+            throw new IllegalStateException(wrong.get() + " of " + runs.get() + " runs on " + threads + " threads printed the wrong output");
+        }
+        return runs.get() / (elapsed / 1e9);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? (long) (Double.parseDouble(args[1]) * 1000) : 1000;
+
+        System.out.printf("%-7s %8s %14s %9s%n", "Engine", "Threads", "Runs/s", "Scaling");
+        for (String engine : new String[] {"vm", "jvm"}) {
+            long compileStart = System.nanoTime();
+            HtScript script = HtScript.compile(SCRIPT, engine);
+            double compileMillis = (System.nanoTime() - compileStart) / 1e6;
+            long expected = expected(script);
+            measure(script, maxThreads, millis, expected);   // warm-up
+
+            double single = 0;
+            for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads) : threads + 1) {
+                double rate = measure(script, threads, millis, expected);
+                if (threads == 1) single = rate;
+                System.out.printf("%-7s %8d %,14.0f %8.2fx%n", engine, threads, rate, rate / single);
+            }
+            System.out.printf("%-7s compiled once in %.3f ms%n", engine, compileMillis);
+        }
+    }
+}
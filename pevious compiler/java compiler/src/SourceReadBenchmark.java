@@ -0,0 +1,93 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Input throughput on a large generated .ht file: the BufferedReader +
+// readLine + trim path MainCompiler used, against SourceText lines over the
+// mapped bytes. Each is measured reading lines alone and reading plus
+// tokenizing every line.
+public class SourceReadBenchmark {
+
+    private static Path generate(int megabytes) throws IOException {
+        Path file = Files.createTempFile("ht-large", ".ht");
+        file.toFile().deleteOnExit();
+        // A blank line after each round of the sample, for the readers to skip
+        List<String> sample = new ArrayList<>(SampleLines.FALLBACK);
+        sample.add("");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            long target = (long) megabytes << 20, written = 0;
+            for (int i = 0; written < target; i++) {
+                String line = sample.get(i % sample.size());
+                writer.write(line);
+                writer.write('\n');
+                written += line.length() + 1;
+            }
+        }
+        return file;
+    }
+
+    private static long readerLines(Path file, boolean scan, TokenBuffer tokens) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (scan) {
+                    Tokenizer.scan(line, number, tokens);
+                    count += tokens.size();
+                } else {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long sourceLines(Path file, boolean scan, TokenBuffer tokens) throws IOException {
+        long count = 0;
+        SourceText.Lines lines = SourceText.read(file).lines();
+        while (lines.next()) {
+            if (lines.isEmpty()) continue;
+            if (scan) {
+                Tokenizer.scan(lines, lines.number(), tokens);
+                count += tokens.size();
+            } else {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path file = generate(megabytes);
+        double size = Files.size(file) / (1024.0 * 1024.0);
+        TokenBuffer tokens = new TokenBuffer();
+
+        if (readerLines(file, true, tokens) != sourceLines(file, true, tokens)) {
+            throw new IllegalStateException("Both readers must see the same tokens");
+        }
+
+        String[] names = {"BufferedReader lines", "SourceText lines", "BufferedReader + scan", "SourceText + scan"};
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+            for (int i = 0; i < names.length; i++) {
+                boolean scan = i >= 2;
+                long start = System.nanoTime();
+                if (i % 2 == 0) readerLines(file, scan, tokens);
+                else sourceLines(file, scan, tokens);
+                long time = System.nanoTime() - start;
+                if (r > 0) best[i] = Math.min(best[i], time);
+            }
+        }
+
+        System.out.printf("File: %.1f MB, best of %d rounds (file in page cache)%n", size, rounds);
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("%-22s: %9.1f ms  %8.1f MB/s%n", names[i], best[i] / 1e6, size / (best[i] / 1e9));
+        }
+    }
+}
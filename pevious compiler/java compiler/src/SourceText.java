@@ -0,0 +1,156 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+
+// A .ht file as a CharSequence over its raw bytes. Large files are memory
+// mapped, small ones read into one heap buffer; either way the scanners read
+// bytes in place and no String is made per line. charAt widens each byte, so
+// ASCII source reads exactly as before and other bytes scan as "other"
+// characters. Only subSequence/toString decode, as UTF-8, when a String is
+// really needed.
+public final class SourceText implements CharSequence {
+
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer bytes;
+    private final byte[] array;   // backing array of a heap buffer, read directly
+    private final int offset;
+    private final int length;
+
+    private SourceText(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.array = bytes.hasArray() ? bytes.array() : null;
+        this.offset = bytes.hasArray() ? offset + bytes.arrayOffset() : offset;
+        this.length = length;
+    }
+
+    public static SourceText read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(path + " is larger than 2 GB");
+            if (size >= MAP_THRESHOLD) {
+                return new SourceText(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), 0, (int) size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the file is in
+            }
+            return new SourceText(buffer, 0, buffer.position());
+        }
+    }
+
+    public static SourceText of(byte[] bytes) {
+        return new SourceText(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (array != null) return (char) (array[offset + index] & 0xff);
+        return (char) (bytes.get(offset + index) & 0xff);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return decode(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return decode(0, length);
+    }
+
+    private String decode(int start, int end) {
+        if (array != null) return new String(array, offset + start, end - start, StandardCharsets.UTF_8);
+        byte[] copy = new byte[end - start];
+        bytes.get(offset + start, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    // Feeds the raw bytes to a digest without copying them
+    public void digest(MessageDigest digest) {
+        int start = array != null ? offset - bytes.arrayOffset() : offset;
+        ByteBuffer view = bytes.duplicate();
+        view.limit(start + length).position(start);
+        digest.update(view);
+    }
+
+    public Lines lines() {
+        return new Lines();
+    }
+
+    // Cursor over the lines of the text. The cursor itself is the current
+    // line, trimmed, as a CharSequence, so skipping blank or comment lines
+    // and scanning costs no allocation; toString() makes the String only
+    // for callers that need one. Each line is bulk-copied into one reused
+    // array so the scanner's charAt calls are plain array reads.
+    public final class Lines implements CharSequence {
+        private int next = 0;
+        private int start;
+        private int end;
+        private int number = 0;
+        private byte[] line = new byte[256];
+
+        public boolean next() {
+            if (next >= length) return false;
+            int lineEnd = next;
+            while (lineEnd < length && SourceText.this.charAt(lineEnd) != '\n') lineEnd++;
+            start = next;
+            end = lineEnd;
+            next = lineEnd + 1;
+            number++;
+            while (start < end && SourceText.this.charAt(start) <= ' ') start++;
+            while (end > start && SourceText.this.charAt(end - 1) <= ' ') end--;
+            if (end - start > line.length) line = new byte[Math.max(end - start, line.length * 2)];
+            if (array != null) System.arraycopy(array, offset + start, line, 0, end - start);
+            else bytes.get(offset + start, line, 0, end - start);
+            return true;
+        }
+
+        public int number() {
+            return number;
+        }
+
+        public boolean isEmpty() {
+            return start == end;
+        }
+
+        public boolean startsWith(String prefix) {
+            if (prefix.length() > end - start) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (charAt(i) != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        public boolean endsWith(String suffix) {
+            int from = end - start - suffix.length();
+            if (from < 0) return false;
+            for (int i = 0; i < suffix.length(); i++) {
+                if (charAt(from + i) != suffix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        public int length() {
+            return end - start;
+        }
+
+        public char charAt(int index) {
+            return (char) (line[index] & 0xff);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            return new String(line, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(line, 0, end - start, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Time from launching a fresh JVM to the first publish line of hello.ht
+// reaching its stdout, and to the JVM exiting, for QuickStart on every
+// engine, with and without the class data sharing archive from
+// QuickStart.train, and for MainCompiler running a folder with only
+// hello.ht in it. The forks write each line as soon as it is published, so
+// buffering does not hide when the first one was ready; MainCompiler writes
+// its output at the end, as it always does. Each row is the median and the
+// best of the timed runs, after one untimed run that warms the file cache.
+//
+// Usage: StartupBenchmark [--runs=N] [--script=FILE] [--archive=FILE]
+//   --archive  an archive trained before, with its jar next to it; without
+//              it one is trained in a temporary folder first
+public class StartupBenchmark {
+
+    private static final String CHILD = "--child=";   // what a fork runs: --child=ENGINE FILE
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 10;
+        Path script = null;
+        Path archive = null;
+        for (String arg : args) {
+            if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--script=")) {
+                script = Path.of(arg.substring("--script=".length()));
+            } else if (arg.startsWith("--archive=")) {
+                archive = Path.of(arg.substring("--archive=".length()));
+            } else if (arg.startsWith(CHILD) && args.length == 2) {
+                QuickStart.run(new File(args[1]), arg.substring(CHILD.length()), new BufferedSink(System.out, true));
+                return;
+            } else {
+                System.out.println("Unknown option: " + arg);
+                return;
+            }
+        }
+
+        Path dir = Files.createTempDirectory("ht-startup");
+        Path folder = Files.createDirectory(dir.resolve("programs"));
+        Path hello = folder.resolve(script == null ? "hello.ht" : script.getFileName().toString());
+        if (script == null) Files.writeString(hello, QuickStart.HELLO);
+        else Files.copy(script, hello);
+
+        Path jar;
+        if (archive == null) {
+            archive = dir.resolve(QuickStart.DEFAULT_ARCHIVE);
+            jar = QuickStart.train(archive);
+        } else {
+            String name = archive.getFileName().toString();
+            jar = archive.resolveSibling(name.replaceFirst("\\.jsa$", "") + ".jar");
+        }
+        if (!Files.exists(archive) || !Files.exists(jar)) {
+            System.out.println("❌ No archive at " + archive + " with " + jar + " next to it");
+            return;
+        }
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = System.getProperty("java.class.path");
+        // The archive only has to match the start of the class path, so the
+        // forks find this class even in a jar trained before it existed
+        Map<String, List<String>> configurations = new LinkedHashMap<>();
+        configurations.put("MainCompiler legacy",
+            List.of(java, "-cp", classPath, "MainCompiler", "--quiet", "--programs=" + folder));
+        for (String engine : new String[] {"legacy", "vm", "jvm"}) {
+            configurations.put("QuickStart " + engine,
+                List.of(java, "-cp", classPath, "StartupBenchmark", CHILD + engine, hello.toString()));
+        }
+        for (String engine : new String[] {"legacy", "vm", "jvm"}) {
+            configurations.put("QuickStart " + engine + " + CDS",
+                List.of(java, "-XX:SharedArchiveFile=" + archive, "-cp", jar + File.pathSeparator + classPath,
+                        "StartupBenchmark", CHILD + engine, hello.toString()));
+        }
+
+        System.out.printf("%s, %d runs per row, fresh JVM each%n", hello.getFileName(), runs);
+        System.out.printf("%-26s %22s %22s%n", "", "first publish (ms)", "exit (ms)");
+        System.out.printf("%-26s %11s %10s %11s %10s%n", "configuration", "median", "best", "median", "best");
+        rows:
+        for (Map.Entry<String, List<String>> entry : configurations.entrySet()) {
+            long[] first = new long[runs];
+            long[] exit = new long[runs];
+            for (int r = -1; r < runs; r++) {   // run -1 only warms the file cache
+                long[] times = launch(entry.getValue());
+                if (times == null) {
+                    System.out.printf("%-26s failed, no publish output%n", entry.getKey());
+                    continue rows;
+                }
+                if (r >= 0) {
+                    first[r] = times[0];
+                    exit[r] = times[1];
+                }
+            }
+            Arrays.sort(first);
+            Arrays.sort(exit);
+            System.out.printf(Locale.ROOT, "%-26s %11.1f %10.1f %11.1f %10.1f%n", entry.getKey(),
+                first[runs / 2] / 1e6, first[0] / 1e6, exit[runs / 2] / 1e6, exit[0] / 1e6);
+        }
+        Files.walk(dir).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+
+    // Nanoseconds from starting the process to its first publish line and
+    // to its exit, or null when it never published
+    private static long[] launch(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long first = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (first < 0 && line.contains("Output")) first = System.nanoTime() - start;
+            }
+        }
+        process.waitFor();
+        long exit = System.nanoTime() - start;
+        return first < 0 ? null : new long[] {first, exit};
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.*;
+
+// One source line after StatementRecognizer has classified it. Only the fields
+// that belong to the statement's kind are filled in.
+public class Statement {
+
+    public enum Kind {
+        EMPTY,           // blank line
+        COMMENT,         // /\ ... /\
+        MAIN_START,      // begin main {
+        BLOCK_END,       // }
+        FUNC_DEF,        // func name(number a, number b) {
+        CALL,            // call name(1, x);
+        NUMBER_ASSIGN,   // number x = 20;
+        EXPRESSION,      // number sum = x + y;
+        STRING_ASSIGN,   // Alphan name = "Ali";
+        NUMBER_ARRAY,    // number[] marks = {77, 88.5};
+        STRING_ARRAY,    // Alphan[] names = {"Ali", "Sara"};
+        PUBLISH,         // publish(x);  or  publish x;
+        PUBLISH_INDEX,   // publish(names[1]);
+        INVALID,         // starts with a known keyword but is malformed
+        UNKNOWN          // no known leading keyword
+    }
+
+    public Kind kind;
+    public String keyword;          // leading keyword, also set for INVALID lines
+    public String name;             // variable, array or function name
+    public String value;            // literal text of NUMBER_ASSIGN / STRING_ASSIGN
+    public String left;             // EXPRESSION operands and operator
+    public char operator;
+    public String right;
+    public int index;               // PUBLISH_INDEX
+    public List<String> items;      // Alphan array items, call arguments or function parameters
+    public double[] numbers;        // NUMBER_ARRAY literal values
+    public boolean terminated;      // line ends with ';' where one is expected
+    public boolean parenthesized;   // publish(x) rather than publish x
+    public String text;             // the trimmed source line
+
+    Statement(Kind kind, String keyword) {
+        this.kind = kind;
+        this.keyword = keyword;
+    }
+
+    @Override
+    public String toString() {
+        return kind + (name != null ? " " + name : "");
+    }
+}
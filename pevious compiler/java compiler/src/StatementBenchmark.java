@@ -0,0 +1,66 @@
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+public class StatementBenchmark {
+
+    // How Parser.analyzeLine used to classify a line: compile and try each pattern in turn.
+    static String regexClassify(String line) {
+        line = line.trim();
+        if (line.startsWith("/\\") && line.endsWith("/\\")) return "COMMENT";
+        if (line.startsWith("func ")) {
+            return Pattern.compile("func\\s+(\\w+)\\s*\\((.*?)\\)\\s*\\{").matcher(line).find() ? "FUNC_DEF" : "INVALID";
+        }
+        if (line.equals("}")) return "BLOCK_END";
+        if (line.startsWith("call ")) {
+            return Pattern.compile("call\\s+(\\w+)\\s*\\((.*?)\\);").matcher(line).find() ? "CALL" : "INVALID";
+        }
+        if (Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\d+(\\.\\d+)?);").matcher(line).matches()) return "NUMBER_ASSIGN";
+        if (Pattern.compile("number\\s+(\\w+)\\s*=\\s*(\\w+)\\s*([+\\-*/])\\s*(\\w+);").matcher(line).matches()) return "EXPRESSION";
+        if (Pattern.compile("number\\[\\]\\s+(\\w+)\\s*=\\s*\\{([^}]*)\\};").matcher(line).matches()) return "NUMBER_ARRAY";
+        Pattern.compile("Alphan\\[\\]\\s+(\\w+)\\s*=\\s*\\{\\s*\"([^\"]+)\"(?:\\s*,\\s*\"([^\"]+)\")*\\s*\\};").matcher(line);
+        if (line.startsWith("Alphan[")) return "STRING_ARRAY";
+        if (Pattern.compile("publish\\((\\w+)\\);").matcher(line).matches()) return "PUBLISH";
+        if (Pattern.compile("publish\\((\\w+)\\[(\\d+)\\]\\);").matcher(line).matches()) return "PUBLISH_INDEX";
+        return "UNKNOWN";
+    }
+
+    private static int runRegex(List<String> lines) {
+        int known = 0;
+        for (String line : lines) if (!regexClassify(line).equals("UNKNOWN")) known++;
+        return known;
+    }
+
+    private static int runRecognizer(List<String> lines) {
+        int known = 0;
+        for (String line : lines) if (StatementRecognizer.recognize(line).kind != Statement.Kind.UNKNOWN) known++;
+        return known;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> lines = SampleLines.load(lineCount);
+
+        runRegex(lines);
+        runRecognizer(lines);
+
+        long regexBest = Long.MAX_VALUE, recognizerBest = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            runRegex(lines);
+            regexBest = Math.min(regexBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            runRecognizer(lines);
+            recognizerBest = Math.min(recognizerBest, System.nanoTime() - start);
+        }
+
+        double regexRate = lines.size() / (regexBest / 1e9);
+        double recognizerRate = lines.size() / (recognizerBest / 1e9);
+        System.out.printf("Lines: %d, best of %d rounds%n", lines.size(), rounds);
+        System.out.printf("Regex cascade        : %,14.0f lines/sec%n", regexRate);
+        System.out.printf("Keyword dispatch     : %,14.0f lines/sec%n", recognizerRate);
+        System.out.printf("Speedup              : %.1fx%n", recognizerRate / regexRate);
+    }
+}
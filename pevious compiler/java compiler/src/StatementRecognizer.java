@@ -0,0 +1,336 @@
+import java.util.*;
+
+// Classifies a single line by reading its leading keyword once and handing the
+// rest of the line to the one parser for that statement form. Nothing here
+// uses regular expressions.
+public class StatementRecognizer {
+
+    private final String line;
+    private int pos;
+
+    private StatementRecognizer(String line) {
+        this.line = line;
+    }
+
+    public static Statement recognize(String line) {
+        String text = line.trim();
+        Statement statement = new StatementRecognizer(text).statement();
+        statement.text = text;
+        return statement;
+    }
+
+    private Statement statement() {
+        if (line.isEmpty()) return new Statement(Statement.Kind.EMPTY, null);
+        if (line.startsWith("/\\") && line.endsWith("/\\")) return new Statement(Statement.Kind.COMMENT, null);
+        if (line.equals("}")) return new Statement(Statement.Kind.BLOCK_END, null);
+
+        String keyword = word();
+        switch (keyword) {
+            case "number":
+                if (peek('[')) return array(keyword, Statement.Kind.NUMBER_ARRAY);
+                return numberAssignment(keyword);
+            case "Alphan":
+                if (peek('[')) return array(keyword, Statement.Kind.STRING_ARRAY);
+                return stringAssignment(keyword);
+            case "publish":
+                return publish(keyword);
+            case "func":
+                return functionDefinition(keyword);
+            case "call":
+                return call(keyword);
+            case "begin":
+                return mainStart(keyword);
+            default:
+                return new Statement(Statement.Kind.UNKNOWN, keyword.isEmpty() ? null : keyword);
+        }
+    }
+
+    // number x = 20;   number sum = x + y;
+    private Statement numberAssignment(String keyword) {
+        if (!space()) return invalid(keyword);
+        String name = word();
+        skipSpace();
+        if (name.isEmpty() || !accept('=')) return invalid(keyword);
+        skipSpace();
+        String first = operand();
+        if (first.isEmpty()) return invalid(keyword);
+        skipSpace();
+
+        Statement s;
+        if (peek(';') || atEnd()) {
+            if (!isNumber(first)) return invalid(keyword);
+            s = new Statement(Statement.Kind.NUMBER_ASSIGN, keyword);
+            s.value = first;
+        } else {
+            char op = pos < line.length() ? line.charAt(pos) : 0;
+            if (op != '+' && op != '-' && op != '*' && op != '/') return invalid(keyword);
+            pos++;
+            skipSpace();
+            String second = operand();
+            if (second.isEmpty()) return invalid(keyword);
+            skipSpace();
+            s = new Statement(Statement.Kind.EXPRESSION, keyword);
+            s.left = first;
+            s.operator = op;
+            s.right = second;
+        }
+        s.name = name;
+        return terminate(s);
+    }
+
+    // Alphan name = "Ali";
+    private Statement stringAssignment(String keyword) {
+        if (!space()) return invalid(keyword);
+        String name = word();
+        skipSpace();
+        if (name.isEmpty() || !accept('=')) return invalid(keyword);
+        skipSpace();
+        String value = quoted();
+        if (value == null) return invalid(keyword);
+        skipSpace();
+        Statement s = new Statement(Statement.Kind.STRING_ASSIGN, keyword);
+        s.name = name;
+        s.value = value;
+        return terminate(s);
+    }
+
+    // number[] marks = {77, 88};   Alphan[] names = {"Ali", "Sara"};
+    private Statement array(String keyword, Statement.Kind kind) {
+        accept('[');
+        if (!accept(']') || !space()) return invalid(keyword);
+        String name = word();
+        skipSpace();
+        if (name.isEmpty() || !accept('=')) return invalid(keyword);
+        skipSpace();
+        if (!accept('{')) return invalid(keyword);
+
+        Statement s = new Statement(kind, keyword);
+        s.name = name;
+        if (kind == Statement.Kind.NUMBER_ARRAY) {
+            s.numbers = numberItems();
+            if (s.numbers == null) return invalid(keyword);
+        } else {
+            s.items = stringItems();
+            if (s.items == null) return invalid(keyword);
+        }
+        skipSpace();
+        return terminate(s);
+    }
+
+    // {77, 88.5} parsed straight into a double[], with no String per element
+    private double[] numberItems() {
+        double[] values = new double[16];
+        int count = 0;
+        skipSpace();
+        while (!peek('}')) {
+            int end = Numbers.scan(line, pos);
+            if (end == pos || (end < line.length() && (isWordChar(line.charAt(end)) || line.charAt(end) == '.'))) return null;
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = Numbers.parse(line, pos, end);
+            pos = end;
+            if (!nextItem()) return null;
+        }
+        pos++;
+        return count == 0 ? null : Arrays.copyOf(values, count);
+    }
+
+    private List<String> stringItems() {
+        List<String> items = new ArrayList<>();
+        skipSpace();
+        while (!peek('}')) {
+            String item = quoted();
+            if (item == null) return null;
+            items.add(item);
+            if (!nextItem()) return null;
+        }
+        pos++;
+        return items.isEmpty() ? null : items;
+    }
+
+    // After an array item: a comma and the next item, or the closing brace
+    private boolean nextItem() {
+        skipSpace();
+        if (accept(',')) {
+            skipSpace();
+            return true;
+        }
+        return peek('}');
+    }
+
+    // publish(x);   publish(names[1]);   publish x;
+    private Statement publish(String keyword) {
+        boolean parenthesized;
+        if (accept('(')) {
+            parenthesized = true;
+            skipSpace();
+        } else if (space()) {
+            parenthesized = false;
+        } else {
+            return invalid(keyword);
+        }
+
+        String name = word();
+        if (name.isEmpty()) return invalid(keyword);
+        skipSpace();
+
+        Statement s;
+        if (accept('[')) {
+            skipSpace();
+            String index = word();
+            skipSpace();
+            if (!isDigits(index) || !accept(']')) return invalid(keyword);
+            s = new Statement(Statement.Kind.PUBLISH_INDEX, keyword);
+            s.index = Integer.parseInt(index);
+            skipSpace();
+        } else {
+            s = new Statement(Statement.Kind.PUBLISH, keyword);
+        }
+
+        if (parenthesized && !accept(')')) return invalid(keyword);
+        skipSpace();
+        s.name = name;
+        s.parenthesized = parenthesized;
+        return terminate(s);
+    }
+
+    // func sum(number a, number b) {
+    private Statement functionDefinition(String keyword) {
+        if (!space()) return invalid(keyword);
+        String name = word();
+        skipSpace();
+        if (name.isEmpty() || !accept('(')) return invalid(keyword);
+        List<String> params = list(')');
+        if (params == null) return invalid(keyword);
+        skipSpace();
+        if (!accept('{')) return invalid(keyword);
+        skipSpace();
+        if (!atEnd()) return invalid(keyword);
+
+        Statement s = new Statement(Statement.Kind.FUNC_DEF, keyword);
+        s.name = name;
+        s.items = params;
+        return s;
+    }
+
+    // call sum(10, 5);
+    private Statement call(String keyword) {
+        if (!space()) return invalid(keyword);
+        String name = word();
+        skipSpace();
+        if (name.isEmpty() || !accept('(')) return invalid(keyword);
+        List<String> args = list(')');
+        if (args == null) return invalid(keyword);
+        skipSpace();
+
+        Statement s = new Statement(Statement.Kind.CALL, keyword);
+        s.name = name;
+        s.items = args;
+        return terminate(s);
+    }
+
+    // begin main {
+    private Statement mainStart(String keyword) {
+        skipSpace();
+        if (!word().equals("main")) return invalid(keyword);
+        skipSpace();
+        if (!accept('{') || !atEnd()) return invalid(keyword);
+        return new Statement(Statement.Kind.MAIN_START, keyword);
+    }
+
+    // Accepts an optional ';' and requires that nothing else follows it
+    private Statement terminate(Statement s) {
+        s.terminated = accept(';');
+        if (!atEnd()) return invalid(s.keyword);
+        return s;
+    }
+
+    private Statement invalid(String keyword) {
+        return new Statement(Statement.Kind.INVALID, keyword);
+    }
+
+    // Comma separated items up to the closing character, each item trimmed
+    private List<String> list(char close) {
+        int end = line.indexOf(close, pos);
+        if (end < 0) return null;
+        List<String> items = new ArrayList<>();
+        int itemStart = pos;
+        for (int i = pos; i <= end; i++) {
+            if (i == end || line.charAt(i) == ',') {
+                String item = line.substring(itemStart, i).trim();
+                if (!item.isEmpty() || i != end || !items.isEmpty()) items.add(item);
+                itemStart = i + 1;
+            }
+        }
+        pos = end + 1;
+        return items;
+    }
+
+    private String word() {
+        int start = pos;
+        while (pos < line.length() && isWordChar(line.charAt(pos))) pos++;
+        return line.substring(start, pos);
+    }
+
+    // A word, or a decimal literal such as 85.5
+    private String operand() {
+        String text = word();
+        if (isDigits(text) && peek('.')) {
+            pos++;
+            text = text + "." + word();
+        }
+        return text;
+    }
+
+    private String quoted() {
+        if (!accept('"')) return null;
+        int end = line.indexOf('"', pos);
+        if (end < 0) return null;
+        String value = line.substring(pos, end);
+        pos = end + 1;
+        return value;
+    }
+
+    private boolean space() {
+        int start = pos;
+        skipSpace();
+        return pos > start;
+    }
+
+    private void skipSpace() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+    }
+
+    private boolean peek(char c) {
+        return pos < line.length() && line.charAt(pos) == c;
+    }
+
+    private boolean accept(char c) {
+        if (!peek(c)) return false;
+        pos++;
+        return true;
+    }
+
+    private boolean atEnd() {
+        return pos >= line.length();
+    }
+
+    static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    static boolean isDigits(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    // \d+(\.\d+)?
+    static boolean isNumber(String s) {
+        int dot = s.indexOf('.');
+        if (dot < 0) return isDigits(s);
+        return isDigits(s.substring(0, dot)) && isDigits(s.substring(dot + 1));
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// Streaming mode for the legacy line engine: reads .ht lines from stdin or
+// any other InputStream and runs each one as soon as it has arrived, so a
+// machine-generated statement stream can be piped straight in and never has
+// to end. Memory stays bounded however long the stream runs:
+//  - input goes through one fixed buffer, and a line longer than
+//    MAX_LINE_BYTES is reported and skipped instead of buffered;
+//  - given a maxGlobals, the Parser and Lexer keep at most that many names in
+//    each global and function table. A statement that would add one more is
+//    reported as an error and skipped, so a stream that keeps declaring new
+//    names cannot grow the heap, and no name it did store is ever lost.
+//    Integer.MAX_VALUE, the default, leaves the tables unbounded;
+//  - output is flushed whenever the input has nothing more waiting, so
+//    results show up while the producer is still writing.
+// The peak heap use of the run is reported with the other statistics.
+public final class StreamRunner {
+
+    static final int MAX_LINE_BYTES = 1 << 20;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    public static final class Stats {
+        public final long lines;
+        public final long bytes;
+        public final long nanos;
+        public final long peakHeapBytes;   // sum of the heap pools' peaks, an upper bound
+
+        Stats(long lines, long bytes, long nanos, long peakHeapBytes) {
+            this.lines = lines;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public String summary() {
+            double seconds = nanos / 1e9;
+            return String.format("Streamed %,d lines (%,d bytes) in %.3f s, %,.0f lines/s; peak heap %.1f MB",
+                lines, bytes, seconds, lines / Math.max(seconds, 1e-9), peakHeapBytes / 1048576.0);
+        }
+    }
+
+    private final InputStream in;
+    private final OutputSink out;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position, limit;
+    private byte[] line = new byte[256];
+    private long bytes;
+
+    private StreamRunner(InputStream in, OutputSink out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    public static Stats run(InputStream in, OutputSink out) throws IOException {
+        return run(in, out, Integer.MAX_VALUE, ExecutionBudget.defaults());
+    }
+
+    // Runs until the stream ends or the budget runs out
+    public static Stats run(InputStream in, OutputSink out, int maxGlobals, ExecutionBudget budget) throws IOException {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        StreamRunner reader = new StreamRunner(in, out);
+        Parser parser = new Parser(out, maxGlobals);
+        Lexer lexer = new Lexer(out, budget, maxGlobals);
+        long lineNumber = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = text.trim();
+            if (skipped(trimmed)) continue;
+            int number = (int) Math.min(lineNumber, Integer.MAX_VALUE);
+            if (!MainCompiler.runLegacyLine(parser, lexer, trimmed, number, "<stdin>", out)) break;
+        }
+        out.flush();
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return new Stats(lineNumber, reader.bytes, System.nanoTime() - start, peak);
+    }
+
+    // Empty lines and comments, as MainCompiler.runLegacy skips them
+    static boolean skipped(String line) {
+        return line.isEmpty() || line.startsWith("//") || (line.startsWith("/\\") && line.endsWith("/\\"));
+    }
+
+    // The next line without its terminator, or null at the end of the stream
+    private String readLine() throws IOException {
+        int length = 0;
+        boolean tooLong = false;
+        while (true) {
+            if (position == limit) {
+                // Nothing is waiting, so this read may block: let the
+                // output so far reach the consumer first
+                if (in.available() == 0) out.flush();
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (length == 0 && !tooLong) return null;
+                    break;
+                }
+                bytes += limit;
+            }
+            int start = position;
+            while (position < limit && buffer[position] != '\n') position++;
+            int count = position - start;
+            if (!tooLong && length + count > MAX_LINE_BYTES) {
+                tooLong = true;
+            } else if (!tooLong) {
+                if (length + count > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+                System.arraycopy(buffer, start, line, length, count);
+                length += count;
+            }
+            if (position < limit) {
+                position++;   // the '\n'
+                break;
+            }
+        }
+        if (tooLong) {
+            out.error("❌ Line longer than " + MAX_LINE_BYTES + " bytes skipped");
+            return "";
+        }
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.*;
+
+// Maps every distinct name in a token stream to one int id. Names are looked
+// up straight from the source characters, so a String is only created the
+// first time a name is seen.
+public class SymbolTable {
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int[] slots = new int[128];   // id + 1, 0 means empty
+    private int size = 0;
+    private final int reservedCount;
+
+    public SymbolTable(String... reserved) {
+        for (String name : reserved) intern(name);
+        reservedCount = size;
+    }
+
+    public int intern(CharSequence text) {
+        return intern(text, 0, text.length());
+    }
+
+    public int intern(CharSequence src, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + src.charAt(i);
+
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(names[id], src, start, end)) return id;
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = src.subSequence(start, end).toString();
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    // Returns the id of a name, or -1 when it was never interned
+    public int find(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) hash = 31 * hash + text.charAt(i);
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(names[id], text, 0, text.length())) return id;
+        }
+        return -1;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isReserved(int id) {
+        return id < reservedCount;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence src, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != src.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -1,10 +1,21 @@
+// Debugging view of one token. The scanner itself writes into a TokenBuffer.
 public class Token {
+    public TokenKind kind;
     public String type;
     public String value;
+    public int line;
+    public int column;
 
     public Token(String type, String value) {
-        this.type = type;
+        this(TokenKind.valueOf(type), value, 0, 0);
+    }
+
+    public Token(TokenKind kind, String value, int line, int column) {
+        this.kind = kind;
+        this.type = kind.name();
         this.value = value;
+        this.line = line;
+        this.column = column;
     }
 
     @Override
@@ -0,0 +1,94 @@
+import java.util.*;
+
+// Columnar token stream: one entry per token spread over parallel int arrays,
+// so scanning a large program does not create an object per token.
+//
+// symbol holds the SymbolTable id for keywords and identifiers, the character
+// itself for symbols, and -1 for everything else.
+public class TokenBuffer {
+    private int[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] symbol;
+    private int[] line;
+    private int[] column;
+    private int size = 0;
+
+    private CharSequence source = "";
+    private final SymbolTable symbols;
+
+    public TokenBuffer() {
+        this(Tokenizer.newSymbolTable());
+    }
+
+    public TokenBuffer(SymbolTable symbols) {
+        this(symbols, 256);
+    }
+
+    public TokenBuffer(SymbolTable symbols, int capacity) {
+        this.symbols = symbols;
+        kind = new int[capacity];
+        start = new int[capacity];
+        length = new int[capacity];
+        symbol = new int[capacity];
+        line = new int[capacity];
+        column = new int[capacity];
+    }
+
+    // Starts a new stream over the given source. Symbol ids are kept.
+    public void reset(CharSequence source) {
+        this.source = source;
+        size = 0;
+    }
+
+    void add(TokenKind tokenKind, int tokenStart, int tokenLength, int tokenSymbol, int tokenLine, int tokenColumn) {
+        if (size == kind.length) grow();
+        kind[size] = tokenKind.ordinal();
+        start[size] = tokenStart;
+        length[size] = tokenLength;
+        symbol[size] = tokenSymbol;
+        line[size] = tokenLine;
+        column[size] = tokenColumn;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, kind.length * 2);
+        kind = Arrays.copyOf(kind, capacity);
+        start = Arrays.copyOf(start, capacity);
+        length = Arrays.copyOf(length, capacity);
+        symbol = Arrays.copyOf(symbol, capacity);
+        line = Arrays.copyOf(line, capacity);
+        column = Arrays.copyOf(column, capacity);
+    }
+
+    public int size() { return size; }
+    public CharSequence source() { return source; }
+    public SymbolTable symbols() { return symbols; }
+
+    public TokenKind kind(int i) { return TokenKind.of(kind[i]); }
+    public int start(int i) { return start[i]; }
+    public int length(int i) { return length[i]; }
+    public int symbol(int i) { return symbol[i]; }
+    public int line(int i) { return line[i]; }
+    public int column(int i) { return column[i]; }
+
+    public boolean isSymbol(int i, char c) {
+        return kind[i] == TokenKind.SYMBOL.ordinal() && symbol[i] == c;
+    }
+
+    public String text(int i) {
+        return source.subSequence(start[i], start[i] + length[i]).toString();
+    }
+
+    // Debugging view of a single token
+    public Token token(int i) {
+        return new Token(kind(i), text(i), line[i], column[i]);
+    }
+
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) tokens.add(token(i));
+        return tokens;
+    }
+}
@@ -0,0 +1,14 @@
+public enum TokenKind {
+    KEYWORD,
+    IDENTIFIER,
+    NUMBER,
+    STRING,
+    SYMBOL,
+    UNKNOWN;
+
+    private static final TokenKind[] VALUES = values();
+
+    public static TokenKind of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -1,34 +1,191 @@
 import java.util.*;
 
 public class Tokenizer {
-    private static final Set<String> keywords = Set.of(
-        "func", "number", "publish", "call", "suppose", "begin", "end"
+    // Interned first in every symbol table, so a keyword is any id below KEYWORDS.length
+    static final String[] KEYWORDS = {
+        "func", "number", "publish", "call", "suppose", "begin", "end", "loopwhile", "otherwise"
         // Add other custom keywords here
-    );
+    };
+
+    // Character classes used by the scanner
+    private static final int C_SPACE = 0;
+    private static final int C_SYMBOL = 1;
+    private static final int C_LETTER = 2;
+    private static final int C_DIGIT = 3;
+    private static final int C_DOT = 4;
+    private static final int C_OTHER = 5;
+
+    // DFA states for the word being scanned. A word is any run of characters
+    // that are neither whitespace nor symbols, exactly like the old regex split.
+    private static final int S_START = 0;
+    private static final int S_IDENT = 1;   // [a-zA-Z_]\w*
+    private static final int S_INT = 2;     // \d+
+    private static final int S_DOT = 3;     // \d+\.
+    private static final int S_FRAC = 4;    // \d+\.\d+
+    private static final int S_BAD = 5;     // anything else
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+    private static final byte[] PROGRAM_CLASS = new byte[128];
+    private static final int[][] NEXT = {
+        //            SPACE    SYMBOL   LETTER   DIGIT    DOT      OTHER
+        /* START */ { S_START, S_START, S_IDENT, S_INT,   S_BAD,   S_BAD },
+        /* IDENT */ { S_START, S_START, S_IDENT, S_IDENT, S_BAD,   S_BAD },
+        /* INT   */ { S_START, S_START, S_BAD,   S_INT,   S_DOT,   S_BAD },
+        /* DOT   */ { S_START, S_START, S_BAD,   S_FRAC,  S_BAD,   S_BAD },
+        /* FRAC  */ { S_START, S_START, S_BAD,   S_FRAC,  S_BAD,   S_BAD },
+        /* BAD   */ { S_START, S_START, S_BAD,   S_BAD,   S_BAD,   S_BAD },
+    };
+
+    static {
+        Arrays.fill(CHAR_CLASS, (byte) C_OTHER);
+        for (char c : " \t\n\u000B\f\r".toCharArray()) CHAR_CLASS[c] = C_SPACE;
+        for (char c : "(){};,+-*/=".toCharArray()) CHAR_CLASS[c] = C_SYMBOL;
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = C_LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = C_LETTER;
+        CHAR_CLASS['_'] = C_LETTER;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = C_DIGIT;
+        CHAR_CLASS['.'] = C_DOT;
+
+        // Whole programs also need brackets, comparisons and string quotes
+        System.arraycopy(CHAR_CLASS, 0, PROGRAM_CLASS, 0, 128);
+        for (char c : "[]<>!\"".toCharArray()) PROGRAM_CLASS[c] = C_SYMBOL;
+    }
+
+    private static int classOf(byte[] table, char c) {
+        return c < 128 ? table[c] : C_OTHER;
+    }
+
+    public static SymbolTable newSymbolTable() {
+        return new SymbolTable(KEYWORDS);
+    }
 
     public static List<Token> tokenize(String line) {
-        List<Token> tokens = new ArrayList<>();
-
-        // Split by space and common symbols (basic version)
-        String[] parts = line.split("(?=[(){};,+\\-*/=])|(?<=[(){};,+\\-*/=])|\\s+");
-
-        for (String part : parts) {
-            if (part.isBlank()) continue;
-
-            if (keywords.contains(part)) {
-                tokens.add(new Token("KEYWORD", part));
-            } else if (part.matches("[a-zA-Z_]\\w*")) {
-                tokens.add(new Token("IDENTIFIER", part));
-            } else if (part.matches("\\d+(\\.\\d+)?")) {
-                tokens.add(new Token("NUMBER", part));
-            } else if (part.matches("[(){};,+\\-*/=]")) {
-                tokens.add(new Token("SYMBOL", part));
+        return tokenize(line, 1);
+    }
+
+    public static List<Token> tokenize(String line, int lineNumber) {
+        TokenBuffer buffer = new TokenBuffer(newSymbolTable(), 16);
+        scan(line, lineNumber, buffer);
+        return buffer.toTokens();
+    }
+
+    public static void scan(CharSequence source, TokenBuffer out) {
+        scan(source, 1, out);
+    }
+
+    public static void scan(CharSequence source, int lineNumber, TokenBuffer out) {
+        scan(source, lineNumber, out, CHAR_CLASS, false);
+    }
+
+    // Scans a whole .ht program for HtParser: brackets and comparison symbols,
+    // "..." string literals, and /\ ... /\ or // comments are recognised too.
+    public static void scanProgram(CharSequence source, TokenBuffer out) {
+        scan(source, 1, out, PROGRAM_CLASS, true);
+    }
+
+    // Single pass over the characters, no regex and no per-token objects.
+    // Newlines advance the line counter so a whole file can be scanned at once.
+    private static void scan(CharSequence source, int lineNumber, TokenBuffer out, byte[] table, boolean program) {
+        out.reset(source);
+        SymbolTable symbols = out.symbols();
+        int length = source.length();
+        int lineStart = 0;
+        int i = 0;
+
+        while (i < length) {
+            char c = source.charAt(i);
+            int cls = classOf(table, c);
+
+            if (cls == C_SPACE) {
+                if (c == '\n') {
+                    lineNumber++;
+                    lineStart = i + 1;
+                }
+                i++;
+                continue;
+            }
+
+            if (program && (c == '"' || c == '/')) {
+                int end = skipLiteral(source, i, out, lineNumber, i - lineStart + 1);
+                if (end > i) {
+                    for (int j = i; j < end; j++) {
+                        if (source.charAt(j) == '\n') {
+                            lineNumber++;
+                            lineStart = j + 1;
+                        }
+                    }
+                    i = end;
+                    continue;
+                }
+            }
+
+            if (cls == C_SYMBOL) {
+                out.add(TokenKind.SYMBOL, i, 1, c, lineNumber, i - lineStart + 1);
+                i++;
+                continue;
+            }
+
+            int start = i;
+            int state = S_START;
+            while (i < length) {
+                int next = classOf(table, source.charAt(i));
+                if (next == C_SPACE || next == C_SYMBOL) break;
+                state = NEXT[state][next];
+                i++;
+            }
+
+            int column = start - lineStart + 1;
+            switch (state) {
+                case S_IDENT:
+                    int id = symbols.intern(source, start, i);
+                    out.add(symbols.isReserved(id) ? TokenKind.KEYWORD : TokenKind.IDENTIFIER, start, i - start, id, lineNumber, column);
+                    break;
+                case S_INT:
+                case S_FRAC:
+                    out.add(TokenKind.NUMBER, start, i - start, -1, lineNumber, column);
+                    break;
+                default:
+                    out.add(TokenKind.UNKNOWN, start, i - start, -1, lineNumber, column);
+                    break;
+            }
+        }
+    }
+
+    // Handles a string literal or a comment starting at i and returns the index
+    // just past it, or i when the character is an ordinary symbol. A comment
+    // that is never closed runs to the end of the source and leaves an
+    // UNKNOWN token for its opening /\ behind, so the parser can report it.
+    private static int skipLiteral(CharSequence source, int i, TokenBuffer out, int lineNumber, int column) {
+        int length = source.length();
+        char c = source.charAt(i);
+        char next = i + 1 < length ? source.charAt(i + 1) : 0;
+
+        if (c == '"') {
+            int end = i + 1;
+            while (end < length && source.charAt(end) != '"' && source.charAt(end) != '\n') end++;
+            if (end < length && source.charAt(end) == '"') {
+                out.add(TokenKind.STRING, i, end + 1 - i, -1, lineNumber, column);
             } else {
-                tokens.add(new Token("UNKNOWN", part));
+                out.add(TokenKind.UNKNOWN, i, end - i, -1, lineNumber, column);
+            }
+            return end < length && source.charAt(end) == '"' ? end + 1 : end;
+        }
+
+        if (c == '/' && next == '/') {
+            int end = i;
+            while (end < length && source.charAt(end) != '\n') end++;
+            return end;
+        }
+
+        if (c == '/' && next == '\\') {
+            for (int end = i + 2; end + 1 < length; end++) {
+                if (source.charAt(end) == '/' && source.charAt(end + 1) == '\\') return end + 2;
             }
+            out.add(TokenKind.UNKNOWN, i, 2, -1, lineNumber, column);
+            return length;
         }
 
-        return tokens;
+        return i;
     }
 
     public static void main(String[] args) {
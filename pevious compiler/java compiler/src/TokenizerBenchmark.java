@@ -0,0 +1,102 @@
+import java.io.*;
+import java.util.*;
+
+public class TokenizerBenchmark {
+
+    // The regex based tokenizer this project used before the hand-written scanner.
+    static List<Token> regexTokenize(String line) {
+        Set<String> keywords = Set.of("func", "number", "publish", "call", "suppose", "begin", "end");
+        List<Token> tokens = new ArrayList<>();
+        String[] parts = line.split("(?=[(){};,+\\-*/=])|(?<=[(){};,+\\-*/=])|\\s+");
+
+        for (String part : parts) {
+            if (part.isBlank()) continue;
+
+            if (keywords.contains(part)) {
+                tokens.add(new Token("KEYWORD", part));
+            } else if (part.matches("[a-zA-Z_]\\w*")) {
+                tokens.add(new Token("IDENTIFIER", part));
+            } else if (part.matches("\\d+(\\.\\d+)?")) {
+                tokens.add(new Token("NUMBER", part));
+            } else if (part.matches("[(){};,+\\-*/=]")) {
+                tokens.add(new Token("SYMBOL", part));
+            } else {
+                tokens.add(new Token("UNKNOWN", part));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean sameTokens(List<Token> a, List<Token> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).type.equals(b.get(i).type) || !a.get(i).value.equals(b.get(i).value)) return false;
+        }
+        return true;
+    }
+
+    private static long runRegex(List<String> lines) {
+        long count = 0;
+        for (String line : lines) count += regexTokenize(line).size();
+        return count;
+    }
+
+    private static long runScanner(List<String> lines) {
+        long count = 0;
+        for (String line : lines) count += Tokenizer.tokenize(line).size();
+        return count;
+    }
+
+    private static long runBuffer(List<String> lines, TokenBuffer buffer) {
+        long count = 0;
+        for (String line : lines) {
+            Tokenizer.scan(line, buffer);
+            count += buffer.size();
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> lines = SampleLines.load(lineCount);
+
+        // The regex split leaves the whitespace after a symbol attached to the next
+        // word (", number" gives an UNKNOWN " number"), so a few sample lines differ.
+        int differing = 0;
+        for (String line : lines.subList(0, Math.min(lines.size(), 1000))) {
+            if (!sameTokens(regexTokenize(line), Tokenizer.tokenize(line))) differing++;
+        }
+
+        // Warm up both implementations before measuring
+        runRegex(lines);
+        runScanner(lines);
+        TokenBuffer buffer = new TokenBuffer();
+        runBuffer(lines, buffer);
+
+        long regexBest = Long.MAX_VALUE, scannerBest = Long.MAX_VALUE, bufferBest = Long.MAX_VALUE, tokens = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            tokens = runRegex(lines);
+            regexBest = Math.min(regexBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            runScanner(lines);
+            scannerBest = Math.min(scannerBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            runBuffer(lines, buffer);
+            bufferBest = Math.min(bufferBest, System.nanoTime() - start);
+        }
+
+        double regexRate = tokens / (regexBest / 1e9);
+        double scannerRate = tokens / (scannerBest / 1e9);
+        double bufferRate = tokens / (bufferBest / 1e9);
+        System.out.printf("Lines: %d, tokens per run: %d, best of %d rounds%n", lines.size(), tokens, rounds);
+        System.out.printf("Sample lines tokenized differently: %d%n", differing);
+        System.out.printf("Regex tokenizer : %,14.0f tokens/sec%n", regexRate);
+        System.out.printf("DFA scanner     : %,14.0f tokens/sec%n", scannerRate);
+        System.out.printf("Token buffer    : %,14.0f tokens/sec%n", bufferRate);
+        System.out.printf("Speedup         : %.1fx (objects), %.1fx (buffer)%n", scannerRate / regexRate, bufferRate / regexRate);
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.*;
+
+// Whole-number inference over a resolved program. A number variable is whole
+// when every value it is ever given is whole: a literal written without a
+// fractional part, a whole variable or element, or +, - or * of whole
+// operands. A division never is, so 'number avg = total / 3;' makes avg
+// fractional, and so does any fractional value flowing in anywhere in the
+// program. A number array is whole when all of its elements are, so
+// { 98, 85.5, 74 } is fractional, and a parameter is whole when its argument
+// is whole at every call.
+//
+// The compilers run whole arithmetic on longs (jvm) or check it (vm), and
+// both give the same results, because whole arithmetic is defined to agree
+// with double arithmetic: exact while the result is below 2^53 in
+// magnitude, rounded to the nearest double beyond that, and a run-time
+// error, "Whole number overflow.", once it reaches 2^63 and no longer fits
+// in a long. A fractional number is a plain double.
+public final class TypeInference {
+
+    public static final double WHOLE_LIMIT = 0x1p63;    // whole values lie in [-2^63, 2^63)
+
+    private final Resolver.Result resolved;
+    private final Set<Resolver.Binding> fractional = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean changed;
+
+    private TypeInference(Resolver.Result resolved) {
+        this.resolved = resolved;
+    }
+
+    public static TypeInference infer(Resolver.Result resolved) {
+        TypeInference types = new TypeInference(resolved);
+        // Everything starts out whole; a variable only ever becomes
+        // fractional, so this stops once a pass finds nothing new
+        do {
+            types.changed = false;
+            types.scan(resolved.program.statements);
+            for (Ast.Function f : resolved.program.functions) types.scan(f.body);
+        } while (types.changed);
+        return types;
+    }
+
+    // A number variable, or a number array whose elements are all whole
+    public boolean isWhole(Resolver.Binding b) {
+        return (b.type == ValueType.NUMBER || b.type == ValueType.NUMBER_ARRAY) && !fractional.contains(b);
+    }
+
+    public boolean isWhole(Ast.Expr e) {
+        if (e instanceof Ast.NumberLiteral n) return !n.decimal && Math.abs(n.value) < WHOLE_LIMIT;
+        if (e instanceof Ast.Variable || e instanceof Ast.Index) {
+            Resolver.Binding b = resolved.binding(e);
+            return b != null && isWhole(b);
+        }
+        if (e instanceof Ast.Binary b) return b.op != '/' && isWhole(b.left) && isWhole(b.right);
+        if (e instanceof Ast.Negate n) return isWhole(n.operand);
+        return false;
+    }
+
+    private void scan(List<Ast.Stmt> statements) {
+        for (Ast.Stmt s : statements) {
+            if (s instanceof Ast.Declare d) {
+                if (!isWhole(d.value)) demote(resolved.binding(d));
+            } else if (s instanceof Ast.DeclareArray d) {
+                for (Ast.Expr e : d.elements) {
+                    if (!isWhole(e)) demote(resolved.binding(d));
+                }
+            } else if (s instanceof Ast.Call c) {
+                Integer index = resolved.functionIndex.get(c.name);
+                List<Resolver.Binding> params = resolved.functionFrames.get(index).params;
+                for (int i = 0; i < params.size(); i++) {
+                    if (!isWhole(c.args.get(i))) demote(params.get(i));
+                }
+            } else if (s instanceof Ast.If b) {
+                scan(b.then);
+                scan(b.otherwise);
+            } else if (s instanceof Ast.While w) {
+                scan(w.body);
+            }
+        }
+    }
+
+    private void demote(Resolver.Binding b) {
+        if (isWhole(b)) {
+            fractional.add(b);
+            changed = true;
+        }
+    }
+}
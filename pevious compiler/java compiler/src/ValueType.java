@@ -0,0 +1,32 @@
+// Static type of a variable or expression after name resolution
+public enum ValueType {
+    NUMBER("D"),
+    STRING("Ljava/lang/String;"),
+    NUMBER_ARRAY("[D"),
+    STRING_ARRAY("[Ljava/lang/String;");
+
+    public final String descriptor;   // JVM field descriptor
+
+    ValueType(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    public static ValueType of(Ast.Type type, boolean array) {
+        if (type == Ast.Type.NUMBER) return array ? NUMBER_ARRAY : NUMBER;
+        return array ? STRING_ARRAY : STRING;
+    }
+
+    // Numbers live in double slots, everything else in Object slots
+    public boolean isNumber() {
+        return this == NUMBER;
+    }
+
+    public String describe() {
+        switch (this) {
+            case NUMBER: return "number";
+            case STRING: return "Alphan";
+            case NUMBER_ARRAY: return "number[]";
+            default: return "Alphan[]";
+        }
+    }
+}
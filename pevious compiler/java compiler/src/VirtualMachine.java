@@ -0,0 +1,311 @@
+import java.util.*;
+
+// Stack machine that runs a BytecodeProgram. Numbers stay in double arrays
+// (operand stack and frames) and strings/arrays in Object arrays, and every
+// variable access is a direct slot index, so the loop neither hashes nor boxes.
+// Each loop iteration (a STEP) and each call is a step of the ExecutionBudget,
+// counted down in a local and settled with the budget once per slice;
+// straight-line code pays nothing for it.
+public class VirtualMachine {
+
+    private final BytecodeProgram program;
+    private final OutputSink out;
+    private final ExecutionBudget budget;
+    private final double[] globalNumbers;
+    private final Object[] globalObjects;
+
+    private double[] numberStack = new double[64];
+    private Object[] objectStack = new Object[64];
+    private int nsp = 0;
+    private int osp = 0;
+
+    // Call stack. Every activation frame lives in one contiguous array per kind,
+    // addressed from a base pointer, and the saved caller state is three ints,
+    // so a call allocates nothing once the arrays have grown to the deepest call.
+    private double[] frameNumbers = new double[256];
+    private Object[] frameObjects = new Object[256];
+    private int[] callStack = new int[3 * 64];   // return pc, caller number base, caller object base
+    private int csp = 0;
+
+    public VirtualMachine(BytecodeProgram program) {
+        this(program, OutputSink.console());
+    }
+
+    public VirtualMachine(BytecodeProgram program, OutputSink out) {
+        this(program, out, ExecutionBudget.defaults());
+    }
+
+    public VirtualMachine(BytecodeProgram program, OutputSink out, ExecutionBudget budget) {
+        this.program = program;
+        this.out = out;
+        this.budget = budget;
+        this.globalNumbers = new double[program.globalNumberSlots];
+        this.globalObjects = new Object[program.globalObjectSlots];
+    }
+
+    public void run() {
+        budget.start();
+        if (!Instrumentation.isEnabled()) {
+            interpret();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            interpret();
+        } finally {
+            Instrumentation.record(Instrumentation.Phase.EXECUTE, System.nanoTime() - start);
+        }
+    }
+
+    private void interpret() {
+        final int[] code = program.code;
+        final double[] constNumbers = program.numbers;
+        final Object[] constants = program.constants;
+        final double[] gn = globalNumbers;
+        final Object[] go = globalObjects;
+        final int[] lines = program.lines;
+        final ExecutionBudget budget = this.budget;
+        int fuel = 0;         // steps left in the current slice
+        double[] ln = frameNumbers;
+        Object[] lo = frameObjects;
+        int nb = 0, ob = 0;   // base of the running function's frame; main only uses globals
+        int ntop = 0, otop = 0;
+        int pc = 0;
+
+        while (true) {
+            int op = code[pc];
+            switch (op) {
+                case Opcode.NCONST:
+                    pushNumber(constNumbers[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.SCONST:
+                    pushObject(constants[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.NLOAD:
+                    pushNumber(ln[nb + code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.NSTORE:
+                    ln[nb + code[pc + 1]] = numberStack[--nsp];
+                    pc += 2;
+                    break;
+                case Opcode.OLOAD:
+                    pushObject(lo[ob + code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.OSTORE:
+                    lo[ob + code[pc + 1]] = popObject();
+                    pc += 2;
+                    break;
+                case Opcode.NLOAD_G:
+                    pushNumber(gn[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.NSTORE_G:
+                    gn[code[pc + 1]] = numberStack[--nsp];
+                    pc += 2;
+                    break;
+                case Opcode.OLOAD_G:
+                    pushObject(go[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.OSTORE_G:
+                    go[code[pc + 1]] = popObject();
+                    pc += 2;
+                    break;
+                case Opcode.NEW_NUM_ARRAY: {
+                    int n = code[pc + 1];
+                    budget.allocate(n, lines[pc]);
+                    nsp -= n;
+                    pushObject(Arrays.copyOfRange(numberStack, nsp, nsp + n));
+                    pc += 2;
+                    break;
+                }
+                case Opcode.NEW_STR_ARRAY: {
+                    int n = code[pc + 1];
+                    budget.allocate(n, lines[pc]);
+                    String[] values = new String[n];
+                    for (int i = n - 1; i >= 0; i--) values[i] = (String) popObject();
+                    pushObject(values);
+                    pc += 2;
+                    break;
+                }
+                case Opcode.NUM_ARRAY_CONST:
+                    budget.allocate(((double[]) constants[code[pc + 1]]).length, lines[pc]);
+                    pushObject(((double[]) constants[code[pc + 1]]).clone());
+                    pc += 2;
+                    break;
+                case Opcode.STR_ARRAY_CONST:
+                    budget.allocate(((String[]) constants[code[pc + 1]]).length, lines[pc]);
+                    pushObject(((String[]) constants[code[pc + 1]]).clone());
+                    pc += 2;
+                    break;
+                case Opcode.NELEM: {
+                    double index = numberStack[--nsp];
+                    pushNumber(HtRuntime.element((double[]) popObject(), index, (String) constants[code[pc + 1]], program.lines[pc]));
+                    pc += 2;
+                    break;
+                }
+                case Opcode.SELEM: {
+                    double index = numberStack[--nsp];
+                    pushObject(HtRuntime.element((String[]) popObject(), index, (String) constants[code[pc + 1]], program.lines[pc]));
+                    pc += 2;
+                    break;
+                }
+                case Opcode.ADD:
+                    nsp--;
+                    numberStack[nsp - 1] += numberStack[nsp];
+                    pc++;
+                    break;
+                case Opcode.SUB:
+                    nsp--;
+                    numberStack[nsp - 1] -= numberStack[nsp];
+                    pc++;
+                    break;
+                case Opcode.MUL:
+                    nsp--;
+                    numberStack[nsp - 1] *= numberStack[nsp];
+                    pc++;
+                    break;
+                case Opcode.DIV:
+                    nsp--;
+                    numberStack[nsp - 1] = HtRuntime.divide(numberStack[nsp - 1], numberStack[nsp], program.lines[pc]);
+                    pc++;
+                    break;
+                case Opcode.NEG:
+                    numberStack[nsp - 1] = -numberStack[nsp - 1];
+                    pc++;
+                    break;
+                case Opcode.WADD:
+                    nsp--;
+                    numberStack[nsp - 1] = HtRuntime.whole(numberStack[nsp - 1] + numberStack[nsp], program.lines[pc]);
+                    pc++;
+                    break;
+                case Opcode.WSUB:
+                    nsp--;
+                    numberStack[nsp - 1] = HtRuntime.whole(numberStack[nsp - 1] - numberStack[nsp], program.lines[pc]);
+                    pc++;
+                    break;
+                case Opcode.WMUL:
+                    nsp--;
+                    numberStack[nsp - 1] = HtRuntime.whole(numberStack[nsp - 1] * numberStack[nsp], program.lines[pc]);
+                    pc++;
+                    break;
+                case Opcode.WNEG:
+                    numberStack[nsp - 1] = HtRuntime.whole(-numberStack[nsp - 1], program.lines[pc]);
+                    pc++;
+                    break;
+                case Opcode.NPUBLISH:
+                    HtRuntime.publish(out, numberStack[--nsp]);
+                    pc++;
+                    break;
+                case Opcode.SPUBLISH:
+                    HtRuntime.publish(out, (String) popObject());
+                    pc++;
+                    break;
+                case Opcode.CALL: {
+                    BytecodeProgram.FunctionInfo f = program.functions[code[pc + 1]];
+                    if (--fuel < 0) fuel = budget.grant(lines[pc]) - 1;
+                    budget.enter(lines[pc]);
+                    if (ntop + f.numberSlots > ln.length) ln = frameNumbers = Arrays.copyOf(ln, Math.max(ln.length * 2, ntop + f.numberSlots));
+                    if (otop + f.objectSlots > lo.length) lo = frameObjects = Arrays.copyOf(lo, Math.max(lo.length * 2, otop + f.objectSlots));
+                    if (csp + 3 > callStack.length) callStack = Arrays.copyOf(callStack, callStack.length * 2);
+                    callStack[csp++] = pc + 2;
+                    callStack[csp++] = nb;
+                    callStack[csp++] = ob;
+                    nb = ntop;
+                    ob = otop;
+                    ntop += f.numberSlots;
+                    otop += f.objectSlots;
+                    for (int i = f.paramSlots.length - 1; i >= 0; i--) {
+                        if (f.paramIsNumber[i]) ln[nb + f.paramSlots[i]] = numberStack[--nsp];
+                        else lo[ob + f.paramSlots[i]] = popObject();
+                    }
+                    pc = f.entry;
+                    break;
+                }
+                case Opcode.RETURN: {
+                    // Number slots are always stored before they are read, so only
+                    // references need clearing to let the callee's strings be collected
+                    Arrays.fill(lo, ob, otop, null);
+                    budget.leave();
+                    ntop = nb;
+                    otop = ob;
+                    ob = callStack[--csp];
+                    nb = callStack[--csp];
+                    pc = callStack[--csp];
+                    break;
+                }
+                case Opcode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.JLT:
+                    nsp -= 2;
+                    pc = numberStack[nsp] < numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JLE:
+                    nsp -= 2;
+                    pc = numberStack[nsp] <= numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JGT:
+                    nsp -= 2;
+                    pc = numberStack[nsp] > numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JGE:
+                    nsp -= 2;
+                    pc = numberStack[nsp] >= numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JEQ:
+                    nsp -= 2;
+                    pc = numberStack[nsp] == numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JNE:
+                    nsp -= 2;
+                    pc = numberStack[nsp] != numberStack[nsp + 1] ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JNLT:
+                    nsp -= 2;
+                    pc = !(numberStack[nsp] < numberStack[nsp + 1]) ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JNLE:
+                    nsp -= 2;
+                    pc = !(numberStack[nsp] <= numberStack[nsp + 1]) ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JNGT:
+                    nsp -= 2;
+                    pc = !(numberStack[nsp] > numberStack[nsp + 1]) ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.JNGE:
+                    nsp -= 2;
+                    pc = !(numberStack[nsp] >= numberStack[nsp + 1]) ? code[pc + 1] : pc + 2;
+                    break;
+                case Opcode.STEP:
+                    if (--fuel < 0) fuel = budget.grant(lines[pc]) - 1;
+                    pc++;
+                    break;
+                case Opcode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Bad opcode " + op + " at " + pc);
+            }
+        }
+    }
+
+    private void pushNumber(double value) {
+        if (nsp == numberStack.length) numberStack = Arrays.copyOf(numberStack, nsp * 2);
+        numberStack[nsp++] = value;
+    }
+
+    private void pushObject(Object value) {
+        if (osp == objectStack.length) objectStack = Arrays.copyOf(objectStack, osp * 2);
+        objectStack[osp++] = value;
+    }
+
+    private Object popObject() {
+        Object value = objectStack[--osp];
+        objectStack[osp] = null;
+        return value;
+    }
+}
@@ -0,0 +1,86 @@
+import java.io.*;
+import java.util.*;
+
+// Call-heavy workload: one small function called many times from main.
+// Compares the line-by-line Parser + Lexer pair with parse + compile + VM.
+public class VmBenchmark {
+
+    static String callHeavyProgram(int calls) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("func work(number a, number b) {\n");
+        sb.append("    number r = a * b;\n");
+        sb.append("    number s = r + a;\n");
+        sb.append("}\n");
+        sb.append("begin main {\n");
+        sb.append("    number x = 3;\n");
+        for (int i = 0; i < calls; i++) {
+            sb.append("    call work(").append(i % 100).append(", 2);\n");
+        }
+        sb.append("    publish(x);\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void runLegacy(String[] lines) {
+        Parser parser = new Parser();
+        Lexer lexer = new Lexer();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+            parser.analyzeLine(line, i + 1);
+            lexer.analyze(line, i + 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String source = callHeavyProgram(calls);
+        String[] lines = source.split("\n");
+
+        PrintStream console = System.out;
+        PrintStream consoleErr = System.err;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        long legacyBest = Long.MAX_VALUE, compileBest = Long.MAX_VALUE, runBest = Long.MAX_VALUE, jvmBest = Long.MAX_VALUE;
+        JvmProgram jvm = JvmProgram.compile(HtParser.parse(source));
+
+        try {
+            System.setOut(sink);
+            System.setErr(sink);
+            for (int r = 0; r <= rounds; r++) {   // round 0 is warm-up
+                long start = System.nanoTime();
+                runLegacy(lines);
+                long legacy = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BytecodeProgram program = BytecodeCompiler.compile(HtParser.parse(source));
+                long compile = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                new VirtualMachine(program).run();
+                long run = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                jvm.run();
+                long jvmRun = System.nanoTime() - start;
+
+                if (r > 0) {
+                    jvmBest = Math.min(jvmBest, jvmRun);
+                    legacyBest = Math.min(legacyBest, legacy);
+                    compileBest = Math.min(compileBest, compile);
+                    runBest = Math.min(runBest, run);
+                }
+            }
+        } finally {
+            System.setOut(console);
+            System.setErr(consoleErr);
+        }
+
+        System.out.printf("Calls: %d, best of %d rounds, console output discarded%n", calls, rounds);
+        System.out.printf("Legacy Parser + Lexer   : %10.3f ms  %,14.0f calls/sec%n", legacyBest / 1e6, calls / (legacyBest / 1e9));
+        System.out.printf("Parse + compile         : %10.3f ms%n", compileBest / 1e6);
+        System.out.printf("VM execution            : %10.3f ms  %,14.0f calls/sec%n", runBest / 1e6, calls / (runBest / 1e9));
+        System.out.printf("JVM hidden class        : %10.3f ms  %,14.0f calls/sec%n", jvmBest / 1e6, calls / (jvmBest / 1e9));
+        System.out.printf("Speedup (compile + run) : %.1fx%n", legacyBest / (double) (compileBest + runBest));
+    }
+}
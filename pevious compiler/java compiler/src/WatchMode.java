@@ -0,0 +1,207 @@
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Long-running mode for MainCompiler. The programs folder is watched and
+// only .ht files whose content actually changed are compiled and run again.
+// Compiled programs are kept in memory keyed by a hash of the source bytes,
+// so saving a file without changes costs nothing and reverting an edit
+// reuses the program built for the earlier content. The options of a batch
+// run apply here as well: an on-disk CompileCache, the Optimizer and the
+// ExecutionBudget each run gets.
+public class WatchMode {
+
+    // A file ready to run: a VM or JVM program, the legacy interpreter over
+    // the source, or the diagnostics of a compile that failed
+    private interface Compiled {
+        void run(OutputSink out);
+    }
+
+    private static final int MAX_CACHED = 256;
+
+    // Editors often write a file in several steps; events that arrive this
+    // soon after the first one are folded into the same rebuild
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Path folder;
+    private final String engine;
+    private final boolean quiet;
+    private final CompileCache compileCache;   // null when there is none
+    private final boolean optimize;
+    private final ExecutionBudget limits;
+    private final Map<Path, String> hashes = new HashMap<>();
+    private final Map<String, Compiled> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Compiled> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+    private final MessageDigest digest;
+    private int rebuilds;
+
+    public WatchMode(Path folder, String engine, boolean quiet) {
+        this(folder, engine, quiet, null, false, ExecutionBudget.defaults());
+    }
+
+    // limits is copied for every run, so each run gets the whole budget
+    public WatchMode(Path folder, String engine, boolean quiet, CompileCache compileCache,
+                     boolean optimize, ExecutionBudget limits) {
+        this.folder = folder;
+        this.engine = engine;
+        this.quiet = quiet;
+        this.compileCache = compileCache;
+        this.optimize = optimize;
+        this.limits = limits;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Builds every file once, then rebuilds whatever changes until interrupted
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watcher = folder.getFileSystem().newWatchService()) {
+            folder.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+            rebuild(listPrograms());
+            System.out.println("Watching '" + folder + "/' for changes (Ctrl+C to stop)");
+
+            while (true) {
+                WatchKey key = watcher.take();
+                Set<Path> changed = new TreeSet<>();
+                boolean overflow = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path name = (Path) event.context();
+                        if (name.toString().endsWith(".ht")) changed.add(folder.resolve(name));
+                    }
+                    if (!key.reset()) {
+                        System.out.println("❌ '" + folder + "/' is no longer accessible, stopping.");
+                        return;
+                    }
+                    key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                // Events were lost, so compare every file against its last hash
+                if (overflow) {
+                    changed.addAll(listPrograms());
+                    changed.addAll(hashes.keySet());
+                }
+                if (!changed.isEmpty()) rebuild(changed);
+            }
+        }
+    }
+
+    private Set<Path> listPrograms() throws IOException {
+        Set<Path> files = new TreeSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.ht")) {
+            for (Path file : stream) files.add(file);
+        }
+        return files;
+    }
+
+    private void rebuild(Set<Path> files) {
+        long start = System.nanoTime();
+        long compileNanos = 0, runNanos = 0;
+        int compiled = 0, reused = 0, unchanged = 0, removed = 0;
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                if (hashes.remove(file) != null) {
+                    removed++;
+                    if (!quiet) System.out.println("\n=== Removed file: " + name + " ===");
+                }
+                continue;
+            } catch (IOException e) {
+                System.out.println("❌ Failed to read file '" + name + "': " + e.getMessage());
+                continue;
+            }
+
+            String hash = hash(bytes);
+            if (hash.equals(hashes.put(file, hash))) {
+                unchanged++;
+                continue;
+            }
+
+            Compiled program = cache.get(hash);
+            if (program == null) {
+                long compileStart = System.nanoTime();
+                program = compile(SourceText.of(bytes), name);
+                compileNanos += System.nanoTime() - compileStart;
+                cache.put(hash, program);
+                compiled++;
+            } else {
+                reused++;
+            }
+
+            if (!quiet) System.out.println("\n=== Processing file: " + name + " ===");
+            long runStart = System.nanoTime();
+            OutputSink out = quiet ? new QuietSink(System.out) : new BufferedSink(System.out);
+            try {
+                program.run(out);
+            } catch (HtRuntimeException e) {
+                out.error("❌ " + name + ": " + e.getMessage());
+            }
+            out.flush();
+            runNanos += System.nanoTime() - runStart;
+        }
+
+        // A save that left every file's content the same is not reported
+        if (compiled + reused + removed == 0) return;
+        rebuilds++;
+        System.out.printf("%nRebuild #%d: %d compiled, %d reused, %d unchanged, %d removed"
+                + " - compile %.3f ms, run %.3f ms, total %.3f ms%n",
+            rebuilds, compiled, reused, unchanged, removed,
+            compileNanos / 1e6, runNanos / 1e6, (System.nanoTime() - start) / 1e6);
+    }
+
+    private Compiled compile(SourceText source, String name) {
+        if (engine.equals("legacy")) {
+            // The line engine has nothing to compile ahead of time, so the
+            // cached entry is the source it interprets on each run
+            return out -> MainCompiler.runLegacy(source, name, out, limits.copy());
+        }
+        // What the compiler traces, such as the Optimizer's summary, is
+        // shown again on every run, as a batch run shows it for every file
+        CollectingSink notes = new CollectingSink();
+        try {
+            if (engine.equals("jvm")) {
+                JvmProgram program = compileCache != null ? compileCache.jvm(source, notes)
+                    : JvmProgram.compile(Optimizer.parse(source, optimize, notes));
+                return out -> {
+                    for (String note : notes.traces()) out.trace(note);
+                    program.run(out, limits.copy());
+                };
+            }
+            BytecodeProgram bytecode = compileCache != null ? compileCache.bytecode(source, notes)
+                : BytecodeCompiler.compile(Optimizer.parse(source, optimize, notes));
+            return out -> {
+                for (String note : notes.traces()) out.trace(note);
+                new VirtualMachine(bytecode, out, limits.copy()).run();
+            };
+        } catch (CompileException e) {
+            List<Diagnostic> diagnostics = e.getDiagnostics();
+            return out -> {
+                for (Diagnostic d : diagnostics) out.error("❌ " + d);
+            };
+        }
+    }
+
+    private String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(digest.digest(bytes));
+    }
+}
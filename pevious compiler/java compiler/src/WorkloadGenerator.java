@@ -0,0 +1,272 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Writes synthetic .ht programs for scaling tests, from a few kilobytes up
+// to multi-gigabyte corpora. Every program parses, resolves and runs
+// without errors on the vm and jvm engines: variables and arrays are
+// declared up front, array indexes are literals inside the array, and
+// divisions are by non-zero literals. Expressions average their terms, so
+// values stay bounded however long the program is. The same seed always
+// gives the same corpus. Programs are streamed to disk, so memory use does
+// not grow with the size of the corpus.
+//
+// Usage: WorkloadGenerator [--out=DIR] [--files=N] [--size=BYTES[K|M|G]]
+//                          [--statements=N] [--variables=N] [--arrays=N]
+//                          [--array-size=N] [--functions=N] [--call-depth=N]
+//                          [--operands=N] [--mix=declare:55,publish:20,array:10,call:15]
+//                          [--operators=add:4,sub:3,mul:2,div:1] [--seed=N] [--legacy]
+//   --size    keep writing files of --statements statements until the corpus
+//             reaches this size; overrides --files
+//   --legacy  only statements the legacy line engine understands: whole-number
+//             literals, two-operand + and - declarations, literal arrays,
+//             publish of a variable or element, and calls with literal
+//             arguments to functions that call nothing else
+public class WorkloadGenerator {
+
+    public static final class Config {
+        public Path out = Path.of("generated");
+        public int files = 1;
+        public long size = 0;
+        public int statements = 1000;
+        public int variables = 50;
+        public int arrays = 4;
+        public int arraySize = 16;
+        public int functions = 10;
+        public int callDepth = 3;
+        public int operands = 4;
+        public int[] mix = {55, 20, 10, 15};       // declare, publish, array, call
+        public int[] operators = {4, 3, 2, 1};     // + - * /
+        public long seed = 42;
+        public boolean legacy = false;
+    }
+
+    private static final int DECLARE = 0, PUBLISH = 1, ARRAY = 2, CALL = 3;
+    private static final String[] MIX_NAMES = {"declare", "publish", "array", "call"};
+    private static final String[] OPERATOR_NAMES = {"add", "sub", "mul", "div"};
+    private static final String[] WORDS = {"Ali", "Sara", "Zara", "Omar", "Hina", "Bilal"};
+
+    private final Config config;
+    private final Random random;
+    private final Writer out;
+    private final int[] arity;
+    private final String[] globals;
+
+    private WorkloadGenerator(Config config, long seed, Writer out) {
+        this.config = config;
+        this.random = new Random(seed);
+        this.out = out;
+        this.arity = new int[config.functions];
+        for (int f = 0; f < arity.length; f++) arity[f] = 1 + random.nextInt(3);
+        this.globals = new String[config.variables];
+        for (int v = 0; v < globals.length; v++) globals[v] = "v" + v;
+    }
+
+    // Writes one program and returns the number of statements written
+    public static long write(Config config, long seed, Writer out) throws IOException {
+        return new WorkloadGenerator(config, seed, out).program();
+    }
+
+    private long program() throws IOException {
+        long count = 0;
+        for (int f = 0; f < config.functions; f++) count += function(f);
+
+        for (int v = 0; v < config.variables; v++) {
+            out.write("number v" + v + " = " + literal() + ";\n");
+        }
+        for (int a = 0; a < config.arrays; a++) {
+            out.write(arrayLiteral("a" + a));
+        }
+        out.write("Alphan[] names = { ");
+        for (int i = 0; i < WORDS.length; i++) out.write((i > 0 ? ", " : "") + "\"" + WORDS[i] + "\"");
+        out.write(" };\n");
+        count += config.variables + config.arrays + 1;
+
+        for (int s = 0; s < config.statements; s++) {
+            switch (pick(config.mix)) {
+                case DECLARE: {
+                    String target = "v" + random.nextInt(config.variables);
+                    out.write("number " + target + " = " + expression(globals) + ";\n");
+                    break;
+                }
+                case PUBLISH:
+                    out.write("publish(" + publishable() + ");\n");
+                    break;
+                case ARRAY:
+                    if (config.arrays > 0) {
+                        out.write(arrayLiteral("a" + random.nextInt(config.arrays)));
+                        break;
+                    }
+                    out.write("publish(" + publishable() + ");\n");
+                    break;
+                default:
+                    if (config.functions > 0) {
+                        out.write(call(random.nextInt(config.functions), globals));
+                        break;
+                    }
+                    out.write("publish(" + publishable() + ");\n");
+                    break;
+            }
+        }
+        return count + config.statements;
+    }
+
+    // A function's body works on its parameters, its local and the global
+    // arrays. Functions form chains of --call-depth, each calling the next
+    // one in its chain; main only calls them once the globals are declared.
+    private long function(int f) throws IOException {
+        String[] locals = new String[arity[f] + 1];
+        StringBuilder header = new StringBuilder("func f" + f + "(");
+        for (int p = 0; p < arity[f]; p++) {
+            header.append(p > 0 ? ", " : "").append("number p").append(p);
+            locals[p] = "p" + p;
+        }
+        out.write(header.append(") {\n").toString());
+
+        String[] params = Arrays.copyOf(locals, arity[f]);
+        locals[arity[f]] = "r";
+        out.write("    number r = " + expression(params) + ";\n");
+        out.write("    publish(r);\n");
+        long count = 3;
+        if (!config.legacy && config.callDepth > 1 && (f + 1) % config.callDepth != 0 && f + 1 < config.functions) {
+            out.write("    " + call(f + 1, locals));
+            count++;
+        }
+        out.write("}\n");
+        return count;
+    }
+
+    private String call(int f, String[] scope) {
+        StringBuilder sb = new StringBuilder("call f" + f + "(");
+        for (int p = 0; p < arity[f]; p++) {
+            sb.append(p > 0 ? ", " : "");
+            sb.append(config.legacy ? literal() : expression(scope));
+        }
+        return sb.append(");\n").toString();
+    }
+
+    // The mean of up to --operands terms, each a variable, literal or array
+    // element, optionally scaled by a literal: |result| never exceeds the
+    // largest literal the generator writes
+    private String expression(String[] scope) {
+        if (config.legacy) {
+            String a = scope[random.nextInt(scope.length)];
+            String b = scope[random.nextInt(scope.length)];
+            return a + (random.nextBoolean() ? " + " : " - ") + b;
+        }
+        int terms = 1 + random.nextInt(Math.max(1, config.operands));
+        StringBuilder sb = new StringBuilder(terms > 1 ? "(" : "");
+        for (int t = 0; t < terms; t++) {
+            int op = pick(config.operators);
+            if (t > 0) sb.append(op == 1 ? " - " : " + ");
+            sb.append(operand(scope));
+            if (op == 2) sb.append(" * 0.").append(1 + random.nextInt(9));
+            if (op == 3) sb.append(" / ").append(2 + random.nextInt(8));
+        }
+        if (terms > 1) sb.append(") / ").append(terms);
+        return sb.toString();
+    }
+
+    private String operand(String[] scope) {
+        int kind = random.nextInt(4);
+        if (kind == 0 || scope.length == 0) return literal();
+        if (kind == 1 && config.arrays > 0) {
+            return "a" + random.nextInt(config.arrays) + "[" + random.nextInt(config.arraySize) + "]";
+        }
+        return scope[random.nextInt(scope.length)];
+    }
+
+    private String publishable() {
+        int kind = random.nextInt(4);
+        if (kind == 0 && config.arrays > 0) return "a" + random.nextInt(config.arrays) + "[" + random.nextInt(config.arraySize) + "]";
+        if (kind == 1) return "names[" + random.nextInt(WORDS.length) + "]";
+        return "v" + random.nextInt(config.variables);
+    }
+
+    private String arrayLiteral(String name) {
+        StringBuilder sb = new StringBuilder("number[] " + name + " = { ");
+        for (int i = 0; i < config.arraySize; i++) sb.append(i > 0 ? ", " : "").append(literal());
+        return sb.append(" };\n").toString();
+    }
+
+    // The legacy Parser only accepts whole numbers outside array literals
+    private String literal() {
+        return !config.legacy && random.nextInt(4) == 0
+            ? random.nextInt(1000) + "." + (1 + random.nextInt(99))
+            : String.valueOf(random.nextInt(1000));
+    }
+
+    private int pick(int[] weights) {
+        int total = 0;
+        for (int w : weights) total += w;
+        int r = random.nextInt(Math.max(1, total));
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return 0;
+    }
+
+    private static int[] weights(String spec, String[] names) {
+        int[] weights = new int[names.length];
+        for (String part : spec.split(",")) {
+            String[] pair = part.split(":");
+            int index = Arrays.asList(names).indexOf(pair[0].trim());
+            if (index < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Expected " + String.join("|", names) + ":WEIGHT but found '" + part + "'");
+            }
+            weights[index] = Integer.parseInt(pair[1].trim());
+        }
+        return weights;
+    }
+
+    private static long bytes(String spec) {
+        char unit = Character.toUpperCase(spec.charAt(spec.length() - 1));
+        int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+        return Long.parseLong(shift == 0 ? spec : spec.substring(0, spec.length() - 1)) << shift;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Config config = new Config();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--out=")) config.out = Path.of(value);
+            else if (arg.startsWith("--files=")) config.files = Integer.parseInt(value);
+            else if (arg.startsWith("--size=")) config.size = bytes(value);
+            else if (arg.startsWith("--statements=")) config.statements = Integer.parseInt(value);
+            else if (arg.startsWith("--variables=")) config.variables = Math.max(1, Integer.parseInt(value));
+            else if (arg.startsWith("--arrays=")) config.arrays = Integer.parseInt(value);
+            else if (arg.startsWith("--array-size=")) config.arraySize = Math.max(1, Integer.parseInt(value));
+            else if (arg.startsWith("--functions=")) config.functions = Integer.parseInt(value);
+            else if (arg.startsWith("--call-depth=")) config.callDepth = Integer.parseInt(value);
+            else if (arg.startsWith("--operands=")) config.operands = Integer.parseInt(value);
+            else if (arg.startsWith("--mix=")) config.mix = weights(value, MIX_NAMES);
+            else if (arg.startsWith("--operators=")) config.operators = weights(value, OPERATOR_NAMES);
+            else if (arg.startsWith("--seed=")) config.seed = Long.parseLong(value);
+            else if (arg.equals("--legacy")) config.legacy = true;
+            else {
+                System.out.println("Unknown option: " + arg);
+                return;
+            }
+        }
+
+        Files.createDirectories(config.out);
+        long start = System.nanoTime();
+        long bytes = 0, statements = 0;
+        int files = 0;
+        int digits = config.size > 0 ? 6 : Math.max(1, String.valueOf(config.files - 1).length());
+        while (config.size > 0 ? bytes < config.size : files < config.files) {
+            Path file = config.out.resolve(String.format("workload%0" + digits + "d.ht", files));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                statements += write(config, config.seed + files, writer);
+            }
+            bytes += Files.size(file);
+            files++;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %d file(s) to %s: %,d statements, %,d bytes in %.2f s (%.1f MB/s)%n",
+            files, config.out, statements, bytes, seconds, bytes / 1048576.0 / seconds);
+    }
+}
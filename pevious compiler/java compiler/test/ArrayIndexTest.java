@@ -0,0 +1,32 @@
+import org.junit.jupiter.api.Test;
+
+// Array indexes on the vm and jvm engines, with and without the Optimizer,
+// which folds reads of literal arrays at compile time
+class ArrayIndexTest {
+
+    @Test
+    void wholeIndexesReadTheirElement() {
+        EngineParityTest.expect("number[] a = { 10, 20, 30 };\nnumber i = 4 / 2;\npublish(a[0]);\npublish(a[i]);\n",
+            "Output → 10", "Output → 30");
+    }
+
+    @Test
+    void aFractionalLiteralIndexIsAnError() {
+        EngineParityTest.expect("number[] a = { 10, 20, 30 };\npublish(a[1]);\npublish(a[1.7]);\npublish(a[0]);\n",
+            "Output → 20", "Error on line 3: Index 1.7 for array 'a' is not a whole number.");
+    }
+
+    @Test
+    void aFractionalComputedIndexIsAnError() {
+        EngineParityTest.expect("number[] a = { 10, 20.5 };\nnumber i = 0 - 0.5;\npublish(a[i]);\n",
+            "Error on line 3: Index -0.5 for array 'a' is not a whole number.");
+    }
+
+    @Test
+    void indexesPastTheEndAreOutOfBounds() {
+        EngineParityTest.expect("Alphan[] s = { \"x\", \"y\" };\npublish(s[1]);\npublish(s[2]);\n",
+            "Output → y", "Error on line 3: Index out of bounds for array 's'.");
+        EngineParityTest.expect("number[] a = { 1 };\nnumber i = 0 - 1;\npublish(a[i]);\n",
+            "Error on line 3: Index out of bounds for array 'a'.");
+    }
+}
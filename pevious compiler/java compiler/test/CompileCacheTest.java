@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompileCacheTest {
+
+    static final SourceText FOLDABLE = source(
+        "begin main {",
+        "number x = 2 * 3;",
+        "number y = x + 1;",
+        "publish(y);",
+        "}");
+
+    @TempDir
+    Path directory;
+
+    static SourceText source(String... lines) {
+        return SourceText.of(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static List<String> traces(CompileCache cache, String engine, SourceText source) {
+        CollectingSink trace = new CollectingSink();
+        if (engine.equals("vm")) cache.bytecode(source, trace);
+        else cache.jvm(source, trace);
+        return trace.traces();
+    }
+
+    @Test
+    void aHitTracesTheOptimizerSummaryLikeTheMiss() throws IOException {
+        for (String engine : List.of("vm", "jvm")) {
+            CompileCache cache = new CompileCache(directory.resolve(engine), CompileCache.DEFAULT_MAX_BYTES, true);
+            List<String> miss = traces(cache, engine, FOLDABLE);
+            assertEquals(1, miss.size(), engine + ": " + miss);
+            assertTrue(miss.get(0).startsWith("Optimized: "), miss.get(0));
+
+            CompileCache reopened = new CompileCache(directory.resolve(engine), CompileCache.DEFAULT_MAX_BYTES, true);
+            assertEquals(miss, traces(reopened, engine, FOLDABLE), engine);
+            assertEquals(1, reopened.hits(), engine);
+            assertEquals(0, reopened.misses(), engine);
+        }
+    }
+
+    @Test
+    void withoutTheOptimizerNothingIsTraced() throws IOException {
+        CompileCache cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_BYTES);
+        assertEquals(List.of(), traces(cache, "vm", FOLDABLE));
+        assertEquals(List.of(), traces(cache, "vm", FOLDABLE));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void compileErrorsAreCachedAndThrownAgain() throws IOException {
+        SourceText broken = source("begin main {", "publish(missing);", "}");
+        CompileCache cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_BYTES);
+        CompileException first = assertThrows(CompileException.class, () -> cache.jvm(broken));
+        CompileException again = assertThrows(CompileException.class, () -> cache.jvm(broken));
+        assertEquals(first.getDiagnostics().toString(), again.getDiagnostics().toString());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void aClassTheJvmRejectsIsALoadFailure() {
+        CompileException e = assertThrows(JvmProgram.LoadFailure.class,
+            () -> JvmProgram.load("HtProgramBroken", new byte[] {(byte) 0xCA, (byte) 0xFE, 0, 1}));
+        assertTrue(e.getMessage().contains("run it with the vm engine"), e.getMessage());
+    }
+
+    @Test
+    void aDamagedClassEntryIsCompiledAgain() throws IOException {
+        CompileCache cache = new CompileCache(directory, CompileCache.DEFAULT_MAX_BYTES);
+        cache.jvm(FOLDABLE);
+        Path entry;
+        try (Stream<Path> entries = Files.list(directory)) {
+            entry = entries.filter(p -> p.toString().endsWith(".htc")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(entry);
+        Arrays.fill(bytes, bytes.length - 16, bytes.length, (byte) 0);
+        Files.write(entry, bytes);
+
+        CollectingSink out = new CollectingSink();
+        cache.jvm(FOLDABLE).run(out);
+        assertEquals(List.of("Output → 7"), out.published());
+        assertEquals(2, cache.misses());
+    }
+}
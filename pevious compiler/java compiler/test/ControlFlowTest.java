@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+// loopwhile and suppose/otherwise on the vm and jvm engines, with and
+// without the Optimizer
+class ControlFlowTest {
+
+    @Test
+    void aLoopWithABranchInItsBody() {
+        EngineParityTest.expect(String.join("\n",
+                "number i = 0;",
+                "number even = 0;",
+                "number odd = 0;",
+                "loopwhile (i < 10) {",
+                "    suppose (i - (i / 2) * 2 == 0) { number even = even + i; }",
+                "    otherwise { number odd = odd + i; }",
+                "    number i = i + 1;",
+                "}",
+                "publish(even);",
+                "publish(odd);"),
+            "Output → 45", "Output → 0");
+    }
+
+    @Test
+    void everyComparisonOperator() {
+        EngineParityTest.expect(String.join("\n",
+                "number a = 2;",
+                "suppose (a < 3) { publish(1); }",
+                "suppose (a <= 2) { publish(2); }",
+                "suppose (a > 2) { publish(0); } otherwise { publish(3); }",
+                "suppose (a >= 2) { publish(4); }",
+                "suppose (a == 2) { publish(5); }",
+                "suppose (a != 2) { publish(0); } otherwise { publish(6); }"),
+            "Output → 1", "Output → 2", "Output → 3", "Output → 4", "Output → 5", "Output → 6");
+    }
+
+    @Test
+    void aLoopWhoseConditionStartsFalseNeverRuns() {
+        EngineParityTest.expect("number i = 5;\nloopwhile (i < 5) {\n    number i = i + 1;\n    publish(i);\n}\npublish(i);\n",
+            "Output → 5");
+    }
+
+    @Test
+    void nestedLoopsAndLoopsInFunctions() {
+        EngineParityTest.expect(String.join("\n",
+                "func triangle(number n) {",
+                "    number total = 0;",
+                "    number i = 1;",
+                "    loopwhile (i <= n) {",
+                "        number j = 0;",
+                "        loopwhile (j < i) { number total = total + 1; number j = j + 1; }",
+                "        number i = i + 1;",
+                "    }",
+                "    publish total;",
+                "}",
+                "begin main {",
+                "    call triangle(4);",
+                "    call triangle(0);",
+                "}"),
+            "Output → 10", "Output → 0");
+    }
+
+    @Test
+    void aConstantConditionKeepsOnlyTheBranchThatRuns() {
+        String source = "number x = 1;\nsuppose (x == 1) { publish(10); } otherwise { publish(20); }\n";
+        Optimizer.Result result = Optimizer.optimize(HtParser.parse(SourceText.of(source.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(result.folded > 0, result.summary());
+        EngineParityTest.expect(source, "Output → 10");
+    }
+
+    @Test
+    void anEndlessLoopStopsAtTheStepLimit() {
+        String source = "number i = 0;\nloopwhile (i < 1) {\n    number i = i * 1;\n}\n";
+        for (String engine : EngineParityTest.ENGINES) {
+            HtScript script = HtScript.compile(SourceText.of(source.getBytes(StandardCharsets.UTF_8)), engine, false);
+            ExecutionBudget budget = new ExecutionBudget(10_000, ExecutionBudget.DEFAULT_MAX_CALL_DEPTH,
+                ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED);
+            BudgetExceededException e = assertThrows(BudgetExceededException.class,
+                () -> script.run(new CollectingSink(), budget), engine);
+            assertEquals("Error on line 2: Step limit of 10000 exceeded.", e.getMessage(), engine);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+// The vm and jvm engines, each with and without the Optimizer, must print the
+// same transcript for a program: its publish lines, then any compile or
+// run-time error. Other tests check their own scripts with expect().
+class EngineParityTest {
+
+    static final String[] ENGINES = {"vm", "jvm"};
+
+    // What a run printed: publish lines and errors, in order, without traces
+    static List<String> transcript(String source, String engine, boolean optimize) {
+        CollectingSink out = new CollectingSink() {
+            @Override
+            public boolean isTracing() {
+                return false;
+            }
+        };
+        List<String> lines = new ArrayList<>();
+        try {
+            HtScript.compile(SourceText.of(source.getBytes(StandardCharsets.UTF_8)), engine, optimize).run(out);
+            lines.addAll(out.published());
+            lines.addAll(out.errors());
+        } catch (CompileException e) {
+            for (Diagnostic d : e.getDiagnostics()) lines.add(d.toString());
+        } catch (HtRuntimeException e) {
+            lines.addAll(out.published());
+            lines.add(e.getMessage());
+        }
+        return lines;
+    }
+
+    // Checks that all four configurations print expected
+    static void expect(String source, String... expected) {
+        for (String engine : ENGINES) {
+            for (boolean optimize : new boolean[] {false, true}) {
+                assertEquals(List.of(expected), transcript(source, engine, optimize),
+                    engine + (optimize ? " --optimize" : ""));
+            }
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> everyProgramRunsTheSameEverywhere() throws IOException {
+        List<Path> programs;
+        try (Stream<Path> files = Files.list(LegacyGoldenTest.PROGRAMS)) {
+            programs = files.filter(p -> p.toString().endsWith(".ht")).sorted().collect(Collectors.toList());
+        }
+        return programs.stream().map(p -> DynamicTest.dynamicTest(p.getFileName().toString(), () -> {
+            String source = Files.readString(p);
+            expect(source, transcript(source, "vm", false).toArray(new String[0]));
+        }));
+    }
+
+    @Test
+    void functionsMayBeNamedLikeObjectMethods() {
+        expect(String.join("\n",
+                "func wait() { publish 1; }",
+                "func notify() { publish 2; }",
+                "func notifyAll() { publish 3; }",
+                "func finalize() { publish 4; }",
+                "func main() { publish 5; }",
+                "func hashCode(number x) { publish x; }",
+                "begin main {",
+                "    call wait();",
+                "    call notify();",
+                "    call notifyAll();",
+                "    call finalize();",
+                "    call main();",
+                "    call hashCode(6);",
+                "}"),
+            "Output → 1", "Output → 2", "Output → 3", "Output → 4", "Output → 5", "Output → 6");
+    }
+
+    @Test
+    void divisionByZeroInAFunctionFailsWhenItRuns() {
+        expect(String.join("\n",
+                "func divide(number a, number b) { publish a / b; }",
+                "begin main {",
+                "    call divide(7, 2);",
+                "    call divide(1, 0);",
+                "}"),
+            "Output → 3.5", "Error on line 1: Division by zero.");
+    }
+
+    @Test
+    void wholeNumbersRoundPastDoublePrecisionAndOverflowAtLongRange() {
+        expect(String.join("\n",
+                "number exact = 9007199254740991;",
+                "number big = 4611686018427387904;",
+                "publish(exact + 1);",
+                "publish(exact + 2);",
+                "publish(big * 2 - big);"),
+            "Output → 9.007199254740992E15", "Output → 9.007199254740992E15", "Error on line 5: Whole number overflow.");
+    }
+
+    @Test
+    void fractionalValuesStayDoubles() {
+        expect("number half = 0.5;\nnumber n = half * 4;\npublish(n);\npublish(n / 3);\n",
+            "Output → 2", "Output → 0.6666666666666666");
+    }
+
+    @Test
+    void blockCommentsMustBeClosed() {
+        expect("number x = 1; /\\ closed /\\ publish x;\n// to the end of the line\n", "Output → 1");
+        expect("number x = 1; /\\ never closed\npublish x;\n",
+            "Syntax Error at line 1, column 15: Unterminated comment");
+    }
+}
@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+// The legacy engine's console output for every program in ../programs, line
+// by line against test/golden/legacy. The golden files are what the original
+// MainCompiler printed, less its per-line timings; func.txt also has the
+// lines of the call, which the Lexer now runs once the body closes at its }.
+class LegacyGoldenTest {
+
+    static final Path PROGRAMS = Path.of("..", "programs");
+    static final Path GOLDEN = Path.of("test", "golden", "legacy");
+
+    @TestFactory
+    Stream<DynamicTest> everyProgramPrintsItsGoldenOutput() throws IOException {
+        List<Path> programs;
+        try (Stream<Path> files = Files.list(PROGRAMS)) {
+            programs = files.filter(p -> p.toString().endsWith(".ht")).sorted().collect(Collectors.toList());
+        }
+        assertFalse(programs.isEmpty(), "no programs in " + PROGRAMS.toAbsolutePath());
+        return programs.stream().map(p -> DynamicTest.dynamicTest(p.getFileName().toString(), () -> check(p)));
+    }
+
+    // A program without a golden file fails, so a new sample cannot go unchecked
+    private static void check(Path program) throws IOException {
+        String name = program.getFileName().toString();
+        Path golden = GOLDEN.resolve(name.substring(0, name.length() - ".ht".length()) + ".txt");
+        assertTrue(Files.exists(golden), "no golden output for " + name);
+        assertEquals(Files.readAllLines(golden), run(program));
+    }
+
+    private static List<String> run(Path program) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink out = new BufferedSink(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        MainCompiler.runLegacy(SourceText.read(program), program.getFileName().toString(), out);
+        out.flush();
+        return bytes.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    }
+}
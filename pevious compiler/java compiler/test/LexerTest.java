@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+class LexerTest {
+
+    // Each line goes to the Lexer alone, numbered from 1
+    static CollectingSink run(Lexer lexer, CollectingSink out, String... lines) {
+        for (int i = 0; i < lines.length; i++) lexer.analyze(lines[i], i + 1);
+        return out;
+    }
+
+    static CollectingSink run(String... lines) {
+        CollectingSink out = new CollectingSink();
+        return run(new Lexer(out), out, lines);
+    }
+
+    @Test
+    void functionBodiesPublishWithoutParentheses() {
+        CollectingSink out = run(
+            "func sum(number a, number b) {",
+            "number result = a + b;",
+            "publish result;",
+            "}",
+            "call sum(10, 5);");
+        assertEquals(List.of(), out.errors());
+        assertEquals(List.of("Line 5: Output → 15"), out.published());
+    }
+
+    @Test
+    void topLevelPublishStillNeedsParentheses() {
+        CollectingSink out = run("number x = 1;", "publish x;");
+        assertEquals(List.of("Syntax Error on line 2: Invalid publish statement."), out.errors());
+        assertEquals(List.of(), out.published());
+    }
+
+    @Test
+    void closingBraceEndsTheFunctionBody() {
+        CollectingSink out = run(
+            "func show(number a) {",
+            "publish a;",
+            "}",
+            "number y = 7;",
+            "publish(y);");
+        assertEquals(List.of(), out.errors());
+        assertEquals(List.of("Line 5: Output → 7"), out.published());
+    }
+
+    @Test
+    void boundedTablesRefuseNewNamesAndKeepTheOldOnes() {
+        CollectingSink out = new CollectingSink();
+        Lexer lexer = new Lexer(out, ExecutionBudget.defaults(), 2);
+        run(lexer, out, "number a = 1;", "number b = 2;");
+        assertThrows(IllegalStateException.class, () -> lexer.analyze("number c = 3;", 3));
+        run(lexer, out, "number a = 5;", "publish(a);", "publish(b);");
+        assertEquals(List.of("Line 2: Output → 5", "Line 3: Output → 2"), out.published());
+    }
+
+    @Test
+    void boundedFunctionTablesRefuseNewNames() {
+        CollectingSink out = new CollectingSink();
+        Lexer lexer = new Lexer(out, ExecutionBudget.defaults(), 1);
+        run(lexer, out, "func f(number x) {", "publish x;", "}");
+        assertThrows(IllegalStateException.class, () -> lexer.analyze("func g(number x) {", 4));
+        run(lexer, out, "call f(3);");
+        assertEquals(List.of("Line 1: Output → 3"), out.published());
+    }
+}
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+class OptimizerTest {
+
+    static Optimizer.Result optimize(String source) {
+        return Optimizer.optimize(HtParser.parse(SourceText.of(source.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void constantsAreFoldedAndPropagated() {
+        String source = "number x = 2 * 3;\nnumber y = x + 1;\npublish(y);\n";
+        Optimizer.Result result = optimize(source);
+        assertTrue(result.folded >= 2, "folded " + result.folded);
+        assertEquals(2, result.removed);
+        assertTrue(result.summary().startsWith("Optimized: "), result.summary());
+        EngineParityTest.expect(source, "Output → 7");
+    }
+
+    @Test
+    void aStoreOverwrittenBeforeItIsReadIsDropped() {
+        String source = "number n = 0;\nnumber x = n + 1;\nnumber x = n + 2;\npublish(x);\n";
+        assertTrue(optimize(source).removed >= 1);
+        EngineParityTest.expect(source, "Output → 2");
+    }
+
+    @Test
+    void aGlobalAFunctionReadsIsKept() {
+        String source = String.join("\n",
+            "func show() { publish g; }",
+            "begin main {",
+            "    number g = 5;",
+            "    call show();",
+            "}");
+        assertEquals(0, optimize(source).removed);
+        EngineParityTest.expect(source, "Output → 5");
+    }
+
+    @Test
+    void aDeadStoreThatWouldFailStillFails() {
+        EngineParityTest.expect("number[] a = { 1 };\nnumber i = 0 - 1;\nnumber unused = a[i];\npublish(i);\n",
+            "Error on line 3: Index out of bounds for array 'a'.");
+        EngineParityTest.expect("number big = 4611686018427387904;\nnumber unused = big * 2;\npublish(1);\n",
+            "Error on line 2: Whole number overflow.");
+    }
+
+    @Test
+    void divisionByALiteralZeroIsACompileError() {
+        String source = "number x = 1;\nnumber y = x / 0;\npublish(y);\n";
+        CompileException e = assertThrows(CompileException.class, () -> optimize(source));
+        assertEquals(1, e.getDiagnostics().size());
+        assertEquals(2, e.getDiagnostics().get(0).line);
+        assertTrue(e.getDiagnostics().get(0).message.contains("Division by zero"), e.getMessage());
+        // Unoptimized, the same division fails when it runs
+        for (String engine : EngineParityTest.ENGINES) {
+            assertEquals(List.of("Error on line 2: Division by zero."), EngineParityTest.transcript(source, engine, false));
+        }
+    }
+}
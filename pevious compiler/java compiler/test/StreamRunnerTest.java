@@ -0,0 +1,37 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+class StreamRunnerTest {
+
+    static CollectingSink stream(String input, int maxGlobals) throws IOException {
+        CollectingSink out = new CollectingSink();
+        InputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        StreamRunner.run(in, out, maxGlobals, ExecutionBudget.defaults());
+        return out;
+    }
+
+    @Test
+    void aNameOverTheCapIsAnErrorAndNothingIsEvicted() throws IOException {
+        CollectingSink out = stream("number a = 1;\nnumber b = 2;\nnumber c = 3;\npublish(a);\npublish(b);\n", 2);
+        assertEquals(List.of("❌ Error at line 3 in <stdin>: 'c' not stored, the table already holds the 2 names --max-globals allows."),
+            out.errors());
+        assertTrue(out.published().contains("Line 4: Output → 1"), out.published().toString());
+        assertTrue(out.published().contains("Line 5: Output → 2"), out.published().toString());
+    }
+
+    @Test
+    void tablesAreUnboundedByDefault() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) input.append("number v").append(i).append(" = ").append(i).append(";\n");
+        input.append("publish(v0);\n");
+        CollectingSink out = new CollectingSink();
+        StreamRunner.run(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), out);
+        assertEquals(List.of(), out.errors());
+        assertTrue(out.published().contains("Line 20001: Output → 0"), out.published().toString());
+    }
+}
@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatchModeTest {
+
+    @TempDir
+    Path folder;
+
+    // What watch mode prints up to the end of its first build; the watching
+    // thread is interrupted after that
+    static String firstBuild(WatchMode watch) throws InterruptedException {
+        PrintStream console = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        Thread thread = new Thread(() -> {
+            try {
+                watch.run();
+            } catch (IOException | InterruptedException e) {
+                // interrupted once the first build is in
+            }
+        });
+        try {
+            thread.start();
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (thread.isAlive() && !bytes.toString(StandardCharsets.UTF_8).contains("Watching '")
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            thread.interrupt();
+            thread.join(10_000);
+            System.setOut(console);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void everyRunGetsTheBudget() throws Exception {
+        Files.writeString(folder.resolve("spin.ht"), "number i = 0;\nloopwhile (i < 1) {\n    number i = i * 1;\n}\n");
+        ExecutionBudget limits = new ExecutionBudget(1000, ExecutionBudget.DEFAULT_MAX_CALL_DEPTH,
+            ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED);
+        for (String engine : new String[] {"vm", "jvm"}) {
+            String printed = firstBuild(new WatchMode(folder, engine, false, null, false, limits));
+            assertTrue(printed.contains("Watching '"), engine + ": " + printed);
+            assertTrue(printed.contains("Step limit of 1000 exceeded."), engine + ": " + printed);
+        }
+    }
+
+    @Test
+    void programsCompileThroughTheCacheAndTheOptimizer() throws Exception {
+        Files.writeString(folder.resolve("fold.ht"), "number x = 2 * 3;\npublish(x);\n");
+        Path cacheDir = Files.createDirectory(folder.resolve("cache"));
+        CompileCache cache = new CompileCache(cacheDir, CompileCache.DEFAULT_MAX_BYTES, true);
+        String printed = firstBuild(new WatchMode(folder, "vm", false, cache, true, ExecutionBudget.defaults()));
+        assertTrue(printed.contains("Optimized: "), printed);
+        assertTrue(printed.contains("Output → 6"), printed);
+        assertEquals(1, cache.misses());
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.filter(p -> p.toString().endsWith(".htc")).count());
+        }
+    }
+}